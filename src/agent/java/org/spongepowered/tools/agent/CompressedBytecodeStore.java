@@ -0,0 +1,186 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Store for the original bytecode of mixin target classes which keeps the
+ * bytecode deflated in direct (off-heap) buffers. The bytecode is only needed
+ * if a mixin is hot-swapped, so it is stored as compactly as possible and only
+ * inflated when it is requested. Entries are appended under a lock but can be
+ * read concurrently.
+ */
+class CompressedBytecodeStore {
+    
+    /**
+     * Location of a stored class in the segments
+     */
+    static final class Entry {
+        
+        final int segment;
+        
+        final int offset;
+        
+        final int compressedLength;
+        
+        final int length;
+
+        Entry(int segment, int offset, int compressedLength, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+        }
+        
+    }
+    
+    /**
+     * Size of each direct buffer segment, entries larger than this are stored
+     * in a segment of their own
+     */
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    
+    /**
+     * Stored classes by name
+     */
+    private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+    
+    /**
+     * Direct buffers containing deflated bytecode, segments are only ever
+     * appended and entries within them are never overwritten
+     */
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<ByteBuffer>();
+    
+    /**
+     * Reused deflater, only used while holding the lock on this store
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    
+    /**
+     * Segment currently being appended to
+     */
+    private ByteBuffer current;
+    
+    /**
+     * Get whether bytecode is stored for the specified class
+     * 
+     * @param name class name
+     * @return true if the class is stored
+     */
+    boolean contains(String name) {
+        return this.index.containsKey(name);
+    }
+    
+    /**
+     * Store the bytecode for the specified class. If the class is already
+     * stored then the existing entry is retained.
+     * 
+     * @param name class name
+     * @param bytes class bytecode
+     */
+    synchronized void put(String name, byte[] bytes) {
+        if (this.index.containsKey(name)) {
+            return;
+        }
+        
+        byte[] compressed = this.deflate(bytes);
+        if (this.current == null || this.current.remaining() < compressed.length) {
+            this.current = ByteBuffer.allocateDirect(Math.max(CompressedBytecodeStore.SEGMENT_SIZE, compressed.length));
+            this.segments.add(this.current);
+        }
+        
+        int offset = this.current.position();
+        this.current.put(compressed);
+        this.index.put(name, new Entry(this.segments.size() - 1, offset, compressed.length, bytes.length));
+    }
+    
+    /**
+     * Get the stored bytecode for the specified class
+     * 
+     * @param name class name
+     * @return inflated bytecode or null if the class is not stored
+     */
+    byte[] get(String name) {
+        Entry entry = this.index.get(name);
+        if (entry == null) {
+            return null;
+        }
+        
+        byte[] compressed = new byte[entry.compressedLength];
+        ByteBuffer segment = this.segments.get(entry.segment).duplicate();
+        segment.position(entry.offset);
+        segment.get(compressed);
+        
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] bytes = new byte[entry.length];
+            int length = 0;
+            while (length < bytes.length && !inflater.finished()) {
+                int read = inflater.inflate(bytes, length, bytes.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != bytes.length) {
+                throw new IllegalStateException("Stored bytecode for " + name + " is truncated");
+            }
+            return bytes;
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Stored bytecode for " + name + " is corrupt", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private byte[] deflate(byte[] bytes) {
+        this.deflater.reset();
+        this.deflater.setInput(bytes);
+        this.deflater.finish();
+        byte[] buffer = new byte[Math.max(64, bytes.length / 2)];
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == buffer.length) {
+                byte[] grown = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+            length += this.deflater.deflate(buffer, length, buffer.length - length);
+        }
+        byte[] compressed = new byte[length];
+        System.arraycopy(buffer, 0, compressed, 0, length);
+        return compressed;
+    }
+    
+}
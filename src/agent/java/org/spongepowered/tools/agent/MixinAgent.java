@@ -30,11 +30,22 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 import org.spongepowered.asm.mixin.transformer.ext.IHotSwap;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinReloadException;
@@ -54,6 +65,13 @@ public class MixinAgent implements IHotSwap {
      * mixin has been redefined.
      */
     class Transformer implements ClassFileTransformer {
+        
+        /**
+         * Bytecode most recently applied to each target class by this agent,
+         * targets whose transformed bytecode has not changed since they were
+         * last redefined are not redefined again
+         */
+        private final Map<String, byte[]> appliedBytecode = Collections.synchronizedMap(new HashMap<String, byte[]>());
 
         @Override
         public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain domain, byte[] classfileBuffer)
@@ -98,7 +116,10 @@ public class MixinAgent implements IHotSwap {
         }
 
         /**
-         * Re-apply all mixins to the supplied list of target classes.
+         * Re-apply all mixins to the supplied list of target classes. All
+         * targets are transformed before any are redefined, and the changed
+         * targets are then redefined in a single batch so that either all
+         * targets are updated or none are.
          * 
          * @param targets Target classes to re-transform
          * @return true if all targets were transformed, false if transformation
@@ -107,25 +128,117 @@ public class MixinAgent implements IHotSwap {
         private boolean reApplyMixins(List<String> targets) {
             IMixinService service = MixinService.getService();
             
+            List<String> targetNames = new ArrayList<String>(targets.size());
+            List<Class<?>> targetClasses = new ArrayList<Class<?>>(targets.size());
+            List<byte[]> targetBytecodes = new ArrayList<byte[]>(targets.size());
             for (String target : targets) {
                 String targetName = target.replace('/', '.');
-                MixinAgent.logger.debug("Re-transforming target class {}", target);
                 try {
-                    Class<?> targetClass = service.getClassProvider().findClass(targetName);
                     byte[] targetBytecode = MixinAgent.classLoader.getOriginalTargetBytecode(targetName);
                     if (targetBytecode == null) {
                         MixinAgent.logger.error("Target class {} bytecode is not registered", targetName);
                         return false;
                     }
-                    targetBytecode = MixinAgent.this.classTransformer.transformClassBytes(targetName, targetBytecode);
-                    MixinAgent.instrumentation.redefineClasses(new ClassDefinition(targetClass, targetBytecode));
+                    targetClasses.add(service.getClassProvider().findClass(targetName));
+                    targetNames.add(targetName);
+                    targetBytecodes.add(targetBytecode);
                 } catch (Throwable th) {
                     MixinAgent.logger.error("Error while re-transforming target class {}", target, th);
                     return false;
                 }
             }
+            
+            byte[][] transformed = this.transformTargets(targetNames, targetBytecodes);
+            if (transformed == null) {
+                return false;
+            }
+            
+            List<ClassDefinition> definitions = new ArrayList<ClassDefinition>();
+            List<String> changed = new ArrayList<String>();
+            for (int i = 0; i < transformed.length; i++) {
+                if (!Arrays.equals(transformed[i], this.appliedBytecode.get(targetNames.get(i)))) {
+                    definitions.add(new ClassDefinition(targetClasses.get(i), transformed[i]));
+                    changed.add(targetNames.get(i));
+                }
+            }
+            
+            if (definitions.isEmpty()) {
+                MixinAgent.logger.info("Re-applied mixins to {} target class(es), no target classes changed", targetNames.size());
+                return true;
+            }
+            
+            try {
+                MixinAgent.instrumentation.redefineClasses(definitions.toArray(new ClassDefinition[definitions.size()]));
+            } catch (Throwable th) {
+                MixinAgent.logger.error("Error while redefining target classes {}", changed, th);
+                return false;
+            }
+            
+            for (int i = 0; i < transformed.length; i++) {
+                this.appliedBytecode.put(targetNames.get(i), transformed[i]);
+            }
+            MixinAgent.logger.info("Re-applied mixins to {} target class(es), redefined {}", targetNames.size(), changed);
             return true;
         }
+        
+        /**
+         * Transform the supplied target classes, on multiple threads if
+         * {@link Option#CONCURRENT_APPLY concurrent application} is enabled
+         * 
+         * @param targetNames Target class names
+         * @param targetBytecodes Original bytecode of each target
+         * @return transformed bytecode of each target, or null if any target
+         *      failed to transform
+         */
+        private byte[][] transformTargets(List<String> targetNames, List<byte[]> targetBytecodes) {
+            byte[][] transformed = new byte[targetNames.size()][];
+            int threads = Math.min(targetNames.size(), Runtime.getRuntime().availableProcessors());
+            if (threads < 2 || !MixinEnvironment.getCurrentEnvironment().getOption(Option.CONCURRENT_APPLY)) {
+                for (int i = 0; i < transformed.length; i++) {
+                    MixinAgent.logger.debug("Re-transforming target class {}", targetNames.get(i));
+                    try {
+                        transformed[i] = MixinAgent.this.classTransformer.transformClassBytes(targetNames.get(i), targetBytecodes.get(i));
+                    } catch (Throwable th) {
+                        MixinAgent.logger.error("Error while re-transforming target class {}", targetNames.get(i), th);
+                        return null;
+                    }
+                }
+                return transformed;
+            }
+            
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<byte[]>> results = new ArrayList<Future<byte[]>>(transformed.length);
+                for (int i = 0; i < transformed.length; i++) {
+                    final String targetName = targetNames.get(i);
+                    final byte[] targetBytecode = targetBytecodes.get(i);
+                    results.add(executor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws Exception {
+                            MixinAgent.logger.debug("Re-transforming target class {}", targetName);
+                            return MixinAgent.this.classTransformer.transformClassBytes(targetName, targetBytecode);
+                        }
+                    }));
+                }
+                
+                boolean failed = false;
+                for (int i = 0; i < transformed.length; i++) {
+                    try {
+                        transformed[i] = results.get(i).get();
+                    } catch (ExecutionException ex) {
+                        MixinAgent.logger.error("Error while re-transforming target class {}", targetNames.get(i), ex.getCause());
+                        failed = true;
+                    }
+                }
+                return failed ? null : transformed;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                MixinAgent.logger.error("Interrupted while re-transforming target classes {}", targetNames);
+                return null;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
     }
 
     /**
@@ -34,6 +34,7 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Constants;
 
@@ -55,6 +56,17 @@ class MixinAgentClassLoader extends ClassLoader {
      * mixins
      */
     private Map<String, byte[]> targets = new HashMap<String, byte[]>();
+    
+    /**
+     * Compressed off-heap store used for target bytecode instead of
+     * {@link #targets} when {@link Option#HOT_SWAP_COMPRESS} is enabled
+     */
+    private volatile CompressedBytecodeStore compressedTargets;
+    
+    /**
+     * True once the store for target bytecode has been selected
+     */
+    private boolean targetStoreSelected;
 
     /**
      * Add a fake mixin class
@@ -83,13 +95,18 @@ class MixinAgentClassLoader extends ClassLoader {
      */
     void addTargetClass(String name, ClassNode classNode) {
         synchronized (this.targets) {
-            if (this.targets.containsKey(name)) {
+            CompressedBytecodeStore compressedTargets = this.getCompressedTargets();
+            if (compressedTargets != null ? compressedTargets.contains(name) : this.targets.containsKey(name)) {
                 return;
             }
             try {
                 ClassWriter cw = new ClassWriter(0);
                 classNode.accept(cw);
-                this.targets.put(name, cw.toByteArray());
+                if (compressedTargets != null) {
+                    compressedTargets.put(name, cw.toByteArray());
+                } else {
+                    this.targets.put(name, cw.toByteArray());
+                }
             } catch (Exception ex) {
                 MixinAgentClassLoader.logger.error("Error storing original class bytecode for {} in mixin hotswap agent. {}: {}",
                         name, ex.getClass().getName(), ex.getMessage());
@@ -115,10 +132,30 @@ class MixinAgentClassLoader extends ClassLoader {
      * @return Original bytecode
      */
     byte[] getOriginalTargetBytecode(String name) {
+        CompressedBytecodeStore compressedTargets = this.compressedTargets;
+        if (compressedTargets != null) {
+            return compressedTargets.get(name);
+        }
         synchronized (this.targets) {
             return this.targets.get(name);
         }
     }
+    
+    /**
+     * Get the compressed target store if compression is enabled, the store is
+     * selected when the first target is registered. Must be called while
+     * holding the lock on {@link #targets}.
+     */
+    private CompressedBytecodeStore getCompressedTargets() {
+        if (!this.targetStoreSelected) {
+            this.targetStoreSelected = true;
+            if (MixinEnvironment.getCurrentEnvironment().getOption(Option.HOT_SWAP_COMPRESS)) {
+                MixinAgentClassLoader.logger.debug("Storing original target class bytecode compressed off-heap");
+                this.compressedTargets = new CompressedBytecodeStore();
+            }
+        }
+        return this.compressedTargets;
+    }
 
     /**
      * Generates the simplest possible class that is instantiable
@@ -169,6 +169,13 @@ class AnnotatedMixin implements IMixinContext, IAnnotatedElement {
      * True once the FINAL 
      */
     private boolean validated = false;
+    
+    /**
+     * True if the refmap entries and mappings for this mixin were restored
+     * from a previous build, in which case the mixin's members are not
+     * processed again
+     */
+    private boolean restored = false;
 
     public AnnotatedMixin(IMixinAnnotationProcessor ap, TypeElement type) {
         this.typeProvider = ap.getTypeProvider();
@@ -358,6 +365,18 @@ class AnnotatedMixin implements IMixinContext, IAnnotatedElement {
         return this.targets.size() > 1;
     }
 
+    /**
+     * Get whether the output for this mixin was restored from a previous
+     * build
+     */
+    public boolean isRestored() {
+        return this.restored;
+    }
+    
+    void setRestored() {
+        this.restored = true;
+    }
+
     /**
      * Get whether to remap annotations in this mixin
      */
@@ -387,6 +406,15 @@ class AnnotatedMixin implements IMixinContext, IAnnotatedElement {
         }
     }
 
+    /**
+     * Called in place of registering an annotated method of a mixin whose
+     * output was restored, so that the method is still excluded from the
+     * merge checks made in the final validation pass
+     */
+    void registerRestoredMethod(ExecutableElement method) {
+        this.removeMethod(method);
+    }
+
     public void registerOverwrite(ExecutableElement method, AnnotationHandle overwrite, boolean shouldRemap) {
         this.removeMethod(method);
         this.overwrites.registerOverwrite(new AnnotatedElementOverwrite(method, overwrite, shouldRemap));
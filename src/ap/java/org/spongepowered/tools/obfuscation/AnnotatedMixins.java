@@ -34,6 +34,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +52,7 @@ import javax.lang.model.element.VariableElement;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
@@ -73,6 +76,7 @@ import org.spongepowered.tools.obfuscation.mirror.TypeHandle;
 import org.spongepowered.tools.obfuscation.mirror.TypeHandleASM;
 import org.spongepowered.tools.obfuscation.mirror.TypeHandleSimulated;
 import org.spongepowered.tools.obfuscation.mirror.TypeReference;
+import org.spongepowered.tools.obfuscation.mirror.TypeUtils;
 import org.spongepowered.tools.obfuscation.struct.InjectorRemap;
 import org.spongepowered.tools.obfuscation.validation.ParentValidator;
 import org.spongepowered.tools.obfuscation.validation.TargetValidator;
@@ -134,6 +138,18 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
      * Serialisable mixin target map
      */
     private final TargetMap targets;
+    
+    /**
+     * Persistent per-mixin output, null if incremental state is not enabled
+     */
+    private final IncrementalState state;
+    
+    /**
+     * True if errors were raised in any pass, either by this processor or as
+     * reported by the round environment, in which case incremental state
+     * is not saved
+     */
+    private boolean errorRaised;
 
     /**
      * Properties file used to specify options when AP options cannot be
@@ -149,7 +165,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
         this.processingEnv = processingEnv;
 
         MessageType.applyOptions(this.env, this);
-        MessageRouter.setMessager(processingEnv.getMessager());
+        MessageRouter.setMessager(this);
 
         String pluginVersion = this.checkPluginVersion(this.getOption(SupportedOptions.PLUGIN_VERSION));
         String pluginVersionString = pluginVersion != null ? String.format(" (MixinGradle Version=%s)", pluginVersion) : "";
@@ -158,6 +174,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
         this.targets = this.initTargetMap();
         this.obf = new ObfuscationManager(this);
         this.obf.init();
+        this.state = IncrementalState.create(this);
 
         this.validators = ImmutableList.<IMixinValidator>of(
             new ParentValidator(this),
@@ -399,6 +416,10 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.ACCESSOR_ON_NON_MIXIN_METHOD, "Found @Accessor annotation on a non-mixin method", method);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            mixinClass.registerRestoredMethod(method);
+            return;
+        }
 
         AnnotationHandle accessor = AnnotationHandle.of(method, Accessor.class);
         mixinClass.registerAccessor(method, accessor, AnnotatedMixins.shouldRemap(mixinClass, accessor));
@@ -416,6 +437,10 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.ACCESSOR_ON_NON_MIXIN_METHOD, "Found @Invoker annotation on a non-mixin method", method);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            mixinClass.registerRestoredMethod(method);
+            return;
+        }
 
         AnnotationHandle invoker = AnnotationHandle.of(method, Invoker.class);
         mixinClass.registerInvoker(method, invoker, AnnotatedMixins.shouldRemap(mixinClass, invoker));
@@ -433,6 +458,10 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.OVERWRITE_ON_NON_MIXIN_METHOD, "Found @Overwrite annotation on a non-mixin method", method);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            mixinClass.registerRestoredMethod(method);
+            return;
+        }
 
         AnnotationHandle overwrite = AnnotationHandle.of(method, Overwrite.class);
         mixinClass.registerOverwrite(method, overwrite, AnnotatedMixins.shouldRemap(mixinClass, overwrite));
@@ -451,6 +480,9 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.SHADOW_ON_NON_MIXIN_ELEMENT, "Found @Shadow annotation on a non-mixin field", field);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            return;
+        }
 
         mixinClass.registerShadow(field, shadow, AnnotatedMixins.shouldRemap(mixinClass, shadow));
     }
@@ -468,6 +500,10 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.SHADOW_ON_NON_MIXIN_ELEMENT, "Found @Shadow annotation on a non-mixin method", method);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            mixinClass.registerRestoredMethod(method);
+            return;
+        }
 
         mixinClass.registerShadow(method, shadow, AnnotatedMixins.shouldRemap(mixinClass, shadow));
     }
@@ -486,6 +522,10 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.INJECTOR_ON_NON_MIXIN_METHOD, "Found " + inject + " annotation on a non-mixin method", method);
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            mixinClass.registerRestoredMethod(method);
+            return;
+        }
 
         InjectorRemap remap = new InjectorRemap(AnnotatedMixins.shouldRemap(mixinClass, inject));
         mixinClass.registerInjector(method, inject, remap);
@@ -506,6 +546,9 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
             this.printMessage(MessageType.SOFT_IMPLEMENTS_ON_NON_MIXIN, "Found @Implements annotation on a non-mixin class");
             return;
         }
+        if (this.isRestored(mixinClass)) {
+            return;
+        }
 
         mixinClass.registerSoftImplements(implementsAnnotation);
     }
@@ -529,6 +572,79 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
         for (AnnotatedMixin mixin : roundEnv.processingOver() ? this.mixins.values() : this.mixinsForPass) {
             mixin.runValidators(roundEnv.processingOver() ? ValidationPass.FINAL : ValidationPass.LATE, this.validators);
         }
+        
+        this.errorRaised |= roundEnv.errorRaised();
+        if (this.state != null && roundEnv.processingOver()) {
+            if (this.errorRaised) {
+                this.state.invalidate();
+            } else {
+                Map<String, SortedMap<String, TypeElement>> dependencies = new HashMap<String, SortedMap<String, TypeElement>>();
+                for (AnnotatedMixin mixin : this.mixins.values()) {
+                    dependencies.put(mixin.getClassRef(), this.getDependencies(mixin));
+                }
+                this.state.write(this.mixins.values(), dependencies);
+            }
+        }
+    }
+    
+    /**
+     * Get whether the output for the specified mixin was restored from the
+     * incremental state, in which case its members do not need to be processed
+     */
+    private boolean isRestored(AnnotatedMixin mixin) {
+        return this.state != null && this.state.restore(mixin, this.getDependencies(mixin));
+    }
+    
+    /**
+     * Get the types which the output for the specified mixin depends on, this
+     * is the mixin's targets, all other mixins which target the same classes,
+     * and the superclasses and interfaces of the mixin and of its targets
+     * since these are searched when resolving shadows, overwrites and
+     * injection points. Classes named only by injection point targets are not
+     * included.
+     */
+    private SortedMap<String, TypeElement> getDependencies(AnnotatedMixin mixin) {
+        SortedMap<String, TypeElement> dependencies = new TreeMap<String, TypeElement>();
+        Elements elements = this.processingEnv.getElementUtils();
+        this.addSupertypes(dependencies, mixin.getMixinElement());
+        for (TypeHandle target : mixin.getTargets()) {
+            dependencies.put(target.getName(), target.getElement());
+            this.addSupertypes(dependencies, target.getElement());
+            for (TypeReference other : this.targets.getMixinsTargeting(target)) {
+                if (!dependencies.containsKey(other.getName())) {
+                    dependencies.put(other.getName(), elements.getTypeElement(other.getClassName()));
+                }
+            }
+        }
+        return dependencies;
+    }
+    
+    private void addSupertypes(SortedMap<String, TypeElement> dependencies, TypeElement type) {
+        if (type == null) {
+            return;
+        }
+        Types types = this.processingEnv.getTypeUtils();
+        for (TypeMirror superType : types.directSupertypes(type.asType())) {
+            Element element = types.asElement(superType);
+            if (element instanceof TypeElement) {
+                String name = TypeUtils.getInternalName((TypeElement)element);
+                if (!dependencies.containsKey(name)) {
+                    dependencies.put(name, (TypeElement)element);
+                    this.addSupertypes(dependencies, (TypeElement)element);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record an error raised by this processor. Errors raised in the final
+     * round are not reported by {@link RoundEnvironment#errorRaised} so they
+     * must be tracked here in order to discard the incremental state.
+     */
+    private void onMessage(Kind kind) {
+        if (kind == Kind.ERROR) {
+            this.errorRaised = true;
+        }
     }
 
     private static boolean shouldRemap(AnnotatedMixin mixinClass, AnnotationHandle annotation) {
@@ -560,6 +676,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
      */
     @Override
     public void printMessage(Kind kind, CharSequence msg) {
+        this.onMessage(kind);
         this.processingEnv.getMessager().printMessage(kind, msg);
     }
 
@@ -578,6 +695,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
      */
     @Override
     public void printMessage(Kind kind, CharSequence msg, Element element) {
+        this.onMessage(kind);
         this.processingEnv.getMessager().printMessage(kind, msg, element);
     }
     
@@ -597,6 +715,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
     @Override
     public void printMessage(Kind kind, CharSequence msg, Element element, SuppressedBy suppressedBy) {
         if (kind != Kind.WARNING || !AnnotatedMixins.shouldSuppress(element, suppressedBy)) {
+            this.onMessage(kind);
             this.processingEnv.getMessager().printMessage(kind, msg, element);
         }
     }
@@ -616,6 +735,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
      */
     @Override
     public void printMessage(Kind kind, CharSequence msg, Element element, AnnotationMirror annotation) {
+        this.onMessage(kind);
         this.processingEnv.getMessager().printMessage(kind, msg, element, annotation);
     }
 
@@ -635,6 +755,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
     @Override
     public void printMessage(Kind kind, CharSequence msg, Element element, AnnotationMirror annotation, SuppressedBy suppressedBy) {
         if (kind != Kind.WARNING || !AnnotatedMixins.shouldSuppress(element, suppressedBy)) {
+            this.onMessage(kind);
             this.processingEnv.getMessager().printMessage(kind, msg, element, annotation);
         }
     }
@@ -654,6 +775,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
      */
     @Override
     public void printMessage(Kind kind, CharSequence msg, Element element, AnnotationMirror annotation, AnnotationValue value) {
+        this.onMessage(kind);
         this.processingEnv.getMessager().printMessage(kind, msg, element, annotation, value);
     }
 
@@ -675,6 +797,7 @@ final class AnnotatedMixins implements IMixinAnnotationProcessor, ITokenProvider
     public void printMessage(Kind kind, CharSequence msg, Element element, AnnotationMirror annotation, AnnotationValue value,
             SuppressedBy suppressedBy) {
         if (kind != Kind.WARNING || !AnnotatedMixins.shouldSuppress(element, suppressedBy)) {
+            this.onMessage(kind);
             this.processingEnv.getMessager().printMessage(kind, msg, element, annotation, value);
         }
     }
@@ -0,0 +1,395 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.obfuscation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
+import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
+import org.spongepowered.tools.obfuscation.interfaces.IMixinAnnotationProcessor;
+import org.spongepowered.tools.obfuscation.interfaces.IReferenceManager;
+import org.spongepowered.tools.obfuscation.mapping.IMappingConsumer;
+import org.spongepowered.tools.obfuscation.mapping.IMappingConsumer.MappingSet.Pair;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Persistent per-mixin output of the annotation processor, used to support
+ * incremental builds. When the processor runs in Gradle's <em>aggregating</em>
+ * incremental mode every mixin is passed to the processor on each build, even
+ * though only changed mixins are recompiled. This state stores the refmap
+ * entries and generated mappings for each mixin along with a fingerprint of
+ * the mixin, its targets, the superclasses and interfaces of both, and any
+ * other mixins which target the same classes. Mixins whose fingerprint is
+ * unchanged have their previous output restored instead of having their
+ * members processed again, so that only changed mixins and their dependents
+ * are regenerated.
+ * 
+ * <p>The state is also keyed to the processor version, the processor options
+ * and the input mapping files, a change to any of these discards the entire
+ * state. State is not saved for builds which raise errors, so that the errors
+ * are raised again on the next build.</p>
+ * 
+ * <p>Classes which are referenced only by injection point targets, for
+ * example the owner of an invoked method, are not part of the fingerprint, so
+ * a change to such a class alone does not regenerate the mixin's output. The
+ * state file is also not a tracked output of the compile task and therefore
+ * survives a full recompile, it should be placed in the build directory so
+ * that it is deleted when the project is cleaned.</p>
+ */
+final class IncrementalState {
+    
+    /**
+     * Stored output for a single mixin
+     */
+    static final class Slice {
+        
+        /**
+         * Fingerprint of the mixin and the types it depends on
+         */
+        String fingerprint;
+        
+        /**
+         * Refmap entries, keyed by obfuscation type then by reference
+         */
+        Map<String, Map<String, String>> references = new LinkedHashMap<String, Map<String, String>>();
+        
+        /**
+         * Field mappings keyed by obfuscation type, each entry is the owner,
+         * name and descriptor of the source then the obfuscated field
+         */
+        Map<String, List<String[]>> fields = new LinkedHashMap<String, List<String[]>>();
+
+        /**
+         * Method mappings keyed by obfuscation type, each entry is the owner,
+         * name and descriptor of the source then the obfuscated method
+         */
+        Map<String, List<String[]>> methods = new LinkedHashMap<String, List<String[]>>();
+        
+    }
+    
+    /**
+     * Serialised form of the state
+     */
+    static final class Data {
+        
+        int version;
+        
+        String environment;
+        
+        Map<String, Slice> mixins = new TreeMap<String, Slice>();
+        
+    }
+    
+    private static final int VERSION = 1;
+    
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final IMixinAnnotationProcessor ap;
+    
+    private final File file;
+    
+    /**
+     * Slices from the previous build, loaded on first use
+     */
+    private Map<String, Slice> previous;
+    
+    /**
+     * Fingerprint of the processor environment, computed on first use
+     */
+    private String environment;
+    
+    /**
+     * Fingerprints of mixins processed in this build, keyed by class ref
+     */
+    private final Map<String, String> fingerprints = new HashMap<String, String>();
+    
+    /**
+     * Element hashes, keyed by class name
+     */
+    private final Map<String, String> elementHashes = new HashMap<String, String>();
+    
+    private IncrementalState(IMixinAnnotationProcessor ap, File file) {
+        this.ap = ap;
+        this.file = file;
+    }
+    
+    /**
+     * Create the incremental state for the specified processor, returns null
+     * if no state file was specified
+     */
+    static IncrementalState create(IMixinAnnotationProcessor ap) {
+        String fileName = ap.getOption(SupportedOptions.INCREMENTAL_STATE_FILE);
+        return fileName != null ? new IncrementalState(ap, new File(fileName)) : null;
+    }
+    
+    /**
+     * Restore the output for the specified mixin from the previous build if
+     * neither the mixin nor any of its dependencies have changed. The decision
+     * is made the first time this method is called for each mixin, subsequent
+     * calls return the same result.
+     * 
+     * @param mixin mixin to restore
+     * @param dependencies types the mixin depends on, keyed by name, with a
+     *      null value for types which are not available
+     * @return true if the output for the mixin was restored
+     */
+    boolean restore(AnnotatedMixin mixin, SortedMap<String, TypeElement> dependencies) {
+        String classRef = mixin.getClassRef();
+        if (this.fingerprints.containsKey(classRef)) {
+            return mixin.isRestored();
+        }
+        
+        String fingerprint = this.getFingerprint(mixin, dependencies);
+        this.fingerprints.put(classRef, fingerprint);
+        Slice slice = this.getPrevious().get(classRef);
+        if (slice == null || !fingerprint.equals(slice.fingerprint)) {
+            return false;
+        }
+        
+        IReferenceManager refs = this.ap.getObfuscationManager().getReferenceManager();
+        for (Map.Entry<String, Map<String, String>> references : slice.references.entrySet()) {
+            ObfuscationType type = ObfuscationType.get(references.getKey());
+            for (Map.Entry<String, String> reference : references.getValue().entrySet()) {
+                refs.addMapping(type, classRef, reference.getKey(), reference.getValue());
+            }
+        }
+        
+        IMappingConsumer mappings = mixin.getMappings();
+        for (Map.Entry<String, List<String[]>> fields : slice.fields.entrySet()) {
+            ObfuscationType type = ObfuscationType.get(fields.getKey());
+            for (String[] field : fields.getValue()) {
+                mappings.addFieldMapping(type, new MappingField(field[0], field[1], field[2]), new MappingField(field[3], field[4], field[5]));
+            }
+        }
+        for (Map.Entry<String, List<String[]>> methods : slice.methods.entrySet()) {
+            ObfuscationType type = ObfuscationType.get(methods.getKey());
+            for (String[] method : methods.getValue()) {
+                mappings.addMethodMapping(type, new MappingMethod(method[0], method[1], method[2]),
+                        new MappingMethod(method[3], method[4], method[5]));
+            }
+        }
+        
+        mixin.setRestored();
+        return true;
+    }
+    
+    /**
+     * Save the output of all mixins processed in this build
+     * 
+     * @param mixins mixins processed in this build
+     * @param dependencies dependencies of each mixin, keyed by class ref
+     */
+    void write(Iterable<AnnotatedMixin> mixins, Map<String, SortedMap<String, TypeElement>> dependencies) {
+        Data data = new Data();
+        data.version = IncrementalState.VERSION;
+        data.environment = this.getEnvironment();
+        
+        IReferenceManager refs = this.ap.getObfuscationManager().getReferenceManager();
+        for (AnnotatedMixin mixin : mixins) {
+            String classRef = mixin.getClassRef();
+            String fingerprint = this.fingerprints.get(classRef);
+            if (fingerprint == null) {
+                fingerprint = this.getFingerprint(mixin, dependencies.get(classRef));
+                this.fingerprints.put(classRef, fingerprint);
+            }
+            
+            Slice slice = new Slice();
+            slice.fingerprint = fingerprint;
+            for (Map.Entry<String, Map<String, String>> references : refs.getClassMappings(classRef).entrySet()) {
+                slice.references.put(references.getKey(), new LinkedHashMap<String, String>(references.getValue()));
+            }
+            for (ObfuscationEnvironment env : this.ap.getObfuscationManager().getEnvironments()) {
+                ObfuscationType type = env.getType();
+                List<String[]> fields = new ArrayList<String[]>();
+                for (Pair<MappingField> field : mixin.getMappings().getFieldMappings(type)) {
+                    fields.add(new String[] { field.from.getOwner(), field.from.getSimpleName(), field.from.getDesc(),
+                            field.to.getOwner(), field.to.getSimpleName(), field.to.getDesc() });
+                }
+                if (!fields.isEmpty()) {
+                    slice.fields.put(type.getKey(), fields);
+                }
+                List<String[]> methods = new ArrayList<String[]>();
+                for (Pair<MappingMethod> method : mixin.getMappings().getMethodMappings(type)) {
+                    methods.add(new String[] { method.from.getOwner(), method.from.getSimpleName(), method.from.getDesc(),
+                            method.to.getOwner(), method.to.getSimpleName(), method.to.getDesc() });
+                }
+                if (!methods.isEmpty()) {
+                    slice.methods.put(type.getKey(), methods);
+                }
+            }
+            data.mixins.put(classRef, slice);
+        }
+        
+        File dir = this.file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.file), StandardCharsets.UTF_8)) {
+            IncrementalState.GSON.toJson(data, writer);
+        } catch (Exception ex) {
+            this.ap.printMessage(Kind.WARNING, "Could not write incremental state to " + this.file + ": " + ex.getMessage());
+        }
+    }
+    
+    /**
+     * Discard the stored state, so that all mixins are processed on the next
+     * build
+     */
+    void invalidate() {
+        if (this.file.isFile() && !this.file.delete()) {
+            this.ap.printMessage(Kind.WARNING, "Could not delete incremental state " + this.file);
+        }
+    }
+    
+    private Map<String, Slice> getPrevious() {
+        if (this.previous == null) {
+            this.previous = new HashMap<String, Slice>();
+            Data data = this.read();
+            if (data != null && data.version == IncrementalState.VERSION && this.getEnvironment().equals(data.environment)
+                    && data.mixins != null) {
+                this.previous.putAll(data.mixins);
+            }
+        }
+        return this.previous;
+    }
+    
+    private Data read() {
+        if (!this.file.isFile()) {
+            return null;
+        }
+        try (Reader reader = new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8)) {
+            return IncrementalState.GSON.fromJson(reader, Data.class);
+        } catch (Exception ex) {
+            this.ap.printMessage(Kind.NOTE, "Discarding unreadable incremental state " + this.file + ": " + ex.getMessage());
+            return null;
+        }
+    }
+    
+    private String getEnvironment() {
+        if (this.environment == null) {
+            Hasher hasher = Hashing.sha1().newHasher();
+            IncrementalState.putString(hasher, MixinBootstrap.VERSION);
+            for (Map.Entry<String, String> option : new TreeMap<String, String>(this.ap.getProcessingEnvironment().getOptions()).entrySet()) {
+                IncrementalState.putString(hasher, option.getKey());
+                IncrementalState.putString(hasher, option.getValue());
+            }
+            for (ObfuscationEnvironment env : this.ap.getObfuscationManager().getEnvironments()) {
+                IncrementalState.putString(hasher, env.getType().getKey());
+                for (String inputFileName : env.getType().getInputFileNames()) {
+                    File inputFile = new File(inputFileName);
+                    IncrementalState.putString(hasher, inputFile.getAbsolutePath());
+                    hasher.putLong(inputFile.length()).putLong(inputFile.lastModified());
+                }
+            }
+            this.environment = hasher.hash().toString();
+        }
+        return this.environment;
+    }
+    
+    private String getFingerprint(AnnotatedMixin mixin, SortedMap<String, TypeElement> dependencies) {
+        Hasher hasher = Hashing.sha1().newHasher();
+        IncrementalState.putString(hasher, this.getElementHash(mixin.getMixinElement()));
+        if (dependencies != null) {
+            for (Map.Entry<String, TypeElement> dependency : dependencies.entrySet()) {
+                IncrementalState.putString(hasher, dependency.getKey());
+                IncrementalState.putString(hasher, dependency.getValue() != null ? this.getElementHash(dependency.getValue()) : "");
+            }
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * Hash the declaration of the specified type, including the signatures and
+     * annotations of its members but not their bodies or nested types
+     */
+    private String getElementHash(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        String hash = this.elementHashes.get(name);
+        if (hash == null) {
+            Hasher hasher = Hashing.sha1().newHasher();
+            IncrementalState.putElement(hasher, element);
+            IncrementalState.putString(hasher, element.getSuperclass().toString());
+            for (TypeMirror iface : element.getInterfaces()) {
+                IncrementalState.putString(hasher, iface.toString());
+            }
+            for (Element member : element.getEnclosedElements()) {
+                if (member instanceof TypeElement) {
+                    continue;
+                }
+                IncrementalState.putElement(hasher, member);
+                if (member instanceof ExecutableElement) {
+                    for (VariableElement parameter : ((ExecutableElement)member).getParameters()) {
+                        IncrementalState.putElement(hasher, parameter);
+                    }
+                }
+            }
+            hash = hasher.hash().toString();
+            this.elementHashes.put(name, hash);
+        }
+        return hash;
+    }
+    
+    private static void putElement(Hasher hasher, Element element) {
+        IncrementalState.putString(hasher, element.getKind().name());
+        IncrementalState.putString(hasher, element.getSimpleName().toString());
+        IncrementalState.putString(hasher, element.asType().toString());
+        IncrementalState.putString(hasher, element.getModifiers().toString());
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            IncrementalState.putString(hasher, annotation.toString());
+        }
+    }
+    
+    private static void putString(Hasher hasher, String value) {
+        hasher.putString(value, StandardCharsets.UTF_8).putByte((byte)0);
+    }
+    
+}
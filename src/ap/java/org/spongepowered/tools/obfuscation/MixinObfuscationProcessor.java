@@ -37,11 +37,25 @@ import javax.lang.model.element.TypeElement;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.tools.obfuscation.interfaces.IMessagerEx.MessageType;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Base class for mixin annotation processor modules
+ * 
+ * <p>Processors are registered with Gradle as <em>dynamic</em> incremental
+ * processors, and report themselves as <em>aggregating</em> unless the
+ * {@link SupportedOptions#DISABLE_INCREMENTAL} option is set. This allows
+ * Gradle to recompile only changed classes, all mixins are still passed to
+ * the processor so that the refmap and mappings are complete.</p>
  */
 abstract class MixinObfuscationProcessor extends AbstractProcessor {
     
+    /**
+     * Option which declares the processor to be an aggregating incremental
+     * processor when returned from {@link #getSupportedOptions}
+     */
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+    
     /**
      * Mixin info manager 
      */
@@ -86,7 +100,11 @@ abstract class MixinObfuscationProcessor extends AbstractProcessor {
     
     @Override
     public Set<String> getSupportedOptions() {
-        return SupportedOptions.getAllOptions();
+        Set<String> options = SupportedOptions.getAllOptions();
+        if (this.mixins == null || this.mixins.getOption(SupportedOptions.DISABLE_INCREMENTAL, false)) {
+            return options;
+        }
+        return ImmutableSet.<String>builder().addAll(options).add(MixinObfuscationProcessor.GRADLE_AGGREGATING).build();
     }
     
 }
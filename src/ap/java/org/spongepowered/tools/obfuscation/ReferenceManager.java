@@ -27,7 +27,11 @@ package org.spongepowered.tools.obfuscation;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
@@ -90,6 +94,12 @@ public class ReferenceManager implements IReferenceManager {
      */
     private final ReferenceMapper refMapper = new ReferenceMapper();
     
+    /**
+     * Mappings added for each class, keyed by class name then obfuscation type
+     * key, used to persist each mixin's part of the refmap between builds
+     */
+    private final Map<String, Map<String, Map<String, String>>> classMappings = new HashMap<String, Map<String, Map<String, String>>>();
+    
     private boolean allowConflicts;
     
     public ReferenceManager(IMixinAnnotationProcessor ap, List<ObfuscationEnvironment> environments) {
@@ -234,7 +244,36 @@ public class ReferenceManager implements IReferenceManager {
         }
     }
 
-    protected void addMapping(ObfuscationType type, String className, String reference, String newReference) {
+    /* (non-Javadoc)
+     * @see org.spongepowered.tools.obfuscation.interfaces.IReferenceManager
+     *      #getClassMappings(java.lang.String)
+     */
+    @Override
+    public Map<String, Map<String, String>> getClassMappings(String className) {
+        Map<String, Map<String, String>> mappings = this.classMappings.get(className);
+        return mappings != null ? Collections.<String, Map<String, String>>unmodifiableMap(mappings)
+                : Collections.<String, Map<String, String>>emptyMap();
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.tools.obfuscation.interfaces.IReferenceManager
+     *      #addMapping(org.spongepowered.tools.obfuscation.ObfuscationType,
+     *      java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void addMapping(ObfuscationType type, String className, String reference, String newReference) {
+        Map<String, Map<String, String>> mappings = this.classMappings.get(className);
+        if (mappings == null) {
+            mappings = new LinkedHashMap<String, Map<String, String>>();
+            this.classMappings.put(className, mappings);
+        }
+        Map<String, String> typeMappings = mappings.get(type.getKey());
+        if (typeMappings == null) {
+            typeMappings = new LinkedHashMap<String, String>();
+            mappings.put(type.getKey(), typeMappings);
+        }
+        typeMappings.put(reference, newReference);
+        
         String oldReference = this.refMapper.addMapping(type.getKey(), className, reference, newReference);
         if (type.isDefault()) {
             this.refMapper.addMapping(null, className, reference, newReference);
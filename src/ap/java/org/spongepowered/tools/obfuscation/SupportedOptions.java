@@ -50,6 +50,9 @@ public final class SupportedOptions {
     public static final String PLUGIN_VERSION            = "pluginVersion";
     public static final String QUIET                     = "quiet";
     public static final String SHOW_MESSAGE_TYPES        = "showMessageTypes";
+    public static final String MAPPING_CACHE_DIR         = "mappingCacheDir";
+    public static final String INCREMENTAL_STATE_FILE    = "incrementalStateFile";
+    public static final String DISABLE_INCREMENTAL       = "disableIncremental";
     
     private SupportedOptions() {}
 
@@ -70,7 +73,10 @@ public final class SupportedOptions {
             SupportedOptions.MAPPING_TYPES,
             SupportedOptions.PLUGIN_VERSION,
             SupportedOptions.QUIET,
-            SupportedOptions.SHOW_MESSAGE_TYPES
+            SupportedOptions.SHOW_MESSAGE_TYPES,
+            SupportedOptions.MAPPING_CACHE_DIR,
+            SupportedOptions.INCREMENTAL_STATE_FILE,
+            SupportedOptions.DISABLE_INCREMENTAL
         );
         options.addAll(
             ObfuscationServices.getInstance().getSupportedOptions()
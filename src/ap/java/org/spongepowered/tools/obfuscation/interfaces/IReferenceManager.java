@@ -24,11 +24,14 @@
  */
 package org.spongepowered.tools.obfuscation.interfaces;
 
+import java.util.Map;
+
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorRemappable;
 import org.spongepowered.asm.mixin.refmap.ReferenceMapper;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
 import org.spongepowered.tools.obfuscation.ObfuscationData;
+import org.spongepowered.tools.obfuscation.ObfuscationType;
 import org.spongepowered.tools.obfuscation.ReferenceManager.ReferenceConflictException;
 
 /**
@@ -108,4 +111,24 @@ public interface IReferenceManager {
      */
     public abstract void addClassMapping(String className, String reference, ObfuscationData<String> obfClassData);
 
+    /**
+     * Adds a raw mapping to the internal refmap for the specified obfuscation
+     * type, used to replay mappings which were generated previously
+     * 
+     * @param type Obfuscation type of the mapping
+     * @param className Mixin class name which owns the refmap entry
+     * @param reference Original reference, as it appears in the annotation
+     * @param newReference Remapped reference
+     */
+    public abstract void addMapping(ObfuscationType type, String className, String reference, String newReference);
+
+    /**
+     * Get all mappings which have been added for the specified class, keyed
+     * by obfuscation type key then by reference
+     * 
+     * @param className Mixin class name which owns the refmap entries
+     * @return mappings added for the class, empty if none have been added
+     */
+    public abstract Map<String, Map<String, String>> getClassMappings(String className);
+
 }
@@ -24,18 +24,45 @@
  */
 package org.spongepowered.tools.obfuscation.mapping.common;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.Messager;
+import javax.tools.Diagnostic.Kind;
 
 import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
+import org.spongepowered.tools.obfuscation.SupportedOptions;
+import org.spongepowered.tools.obfuscation.interfaces.IOptionProvider;
 import org.spongepowered.tools.obfuscation.mapping.IMappingProvider;
+import org.spongepowered.tools.obfuscation.mapping.common.MappingTable.Entry;
+import org.spongepowered.tools.obfuscation.mapping.common.MappingTable.Section;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
 
 /**
  * Base class for mapping providers
+ * 
+ * <p>Mapping files are read via {@link #readCached} which, when a mapping
+ * cache directory is specified with the <tt>mappingCacheDir</tt> option,
+ * stores the parsed mappings in a binary {@link MappingTable} in that
+ * directory, keyed by the hash of the mapping file and of every file read
+ * before it (since parsing a file may depend on the mappings which were
+ * already read). Subsequent
+ * runs of the annotation processor then map the table instead of parsing the
+ * mapping file again. When a provider reads a single mapping file lookups are
+ * answered directly from the mapped table, if more than one file is read then
+ * the mappings are copied into the mapping maps so that later files override
+ * earlier ones in the usual way.</p>
  */
 public abstract class MappingProvider implements IMappingProvider {
     
@@ -46,6 +73,17 @@ public abstract class MappingProvider implements IMappingProvider {
     protected final BiMap<String, String> classMap = HashBiMap.create();
     protected final BiMap<MappingField, MappingField> fieldMap = HashBiMap.create();
     protected final BiMap<MappingMethod, MappingMethod> methodMap = HashBiMap.create();
+    
+    /**
+     * Mapped table which lookups are delegated to, only set when the mappings
+     * were read from a single cached table and the maps are empty
+     */
+    private MappingTable table;
+    
+    /**
+     * Hash of the mapping files read so far, in order
+     */
+    private byte[] inputsHash;
 
     public MappingProvider(Messager messager, Filer filer) {
         this.messager = messager;
@@ -58,31 +96,246 @@ public abstract class MappingProvider implements IMappingProvider {
         this.classMap.clear();
         this.fieldMap.clear();
         this.methodMap.clear();
+        this.table = null;
+        this.inputsHash = null;
     }
 
     @Override
     public boolean isEmpty() {
-        return this.packageMap.isEmpty() && this.classMap.isEmpty() && this.fieldMap.isEmpty() && this.methodMap.isEmpty();
+        return this.packageMap.isEmpty() && this.classMap.isEmpty() && this.fieldMap.isEmpty() && this.methodMap.isEmpty()
+                && (this.table == null || this.table.isEmpty());
     }
 
     @Override
     public MappingMethod getMethodMapping(MappingMethod method) {
+        MappingTable table = this.table;
+        if (table != null) {
+            int index = table.find(table.methods, method.toString());
+            return index > -1 ? this.readMethod(table, index, 4) : null;
+        }
         return this.methodMap.get(method);
     }
 
     @Override
     public MappingField getFieldMapping(MappingField field) {
+        MappingTable table = this.table;
+        if (table != null) {
+            int index = table.find(table.fields, field.toString());
+            return index > -1 ? MappingProvider.readField(table, index, 4) : null;
+        }
         return this.fieldMap.get(field);
     }
 
     @Override
     public String getClassMapping(String className) {
+        MappingTable table = this.table;
+        if (table != null) {
+            int index = table.find(table.classes, className);
+            return index > -1 ? table.getString(table.get(table.classes, index, 1)) : null;
+        }
         return this.classMap.get(className);
     }
 
     @Override
     public String getPackageMapping(String packageName) {
+        MappingTable table = this.table;
+        if (table != null) {
+            int index = table.find(table.packages, packageName);
+            return index > -1 ? table.getString(table.get(table.packages, index, 1)) : null;
+        }
         return this.packageMap.get(packageName);
     }
+    
+    /**
+     * Read the specified mapping file, using the cached mapping table for the
+     * file if one exists. If there is no cached table, or caching is disabled,
+     * the file is parsed using {@link #parse} and a new table is written to the
+     * cache. Since the table for a file is keyed by the files which were read
+     * before it as well as by the file itself, a table is only reused when
+     * the file is read in the same position as when the table was written.
+     * 
+     * @param input mapping file to read
+     * @throws IOException if an error occurs reading the file
+     */
+    protected void readCached(File input) throws IOException {
+        File cacheDir = this.getCacheDir();
+        if (cacheDir == null) {
+            this.copyTable();
+            this.parse(input, this.packageMap, this.classMap, this.fieldMap, this.methodMap);
+            return;
+        }
+        
+        Hasher hasher = Hashing.sha1().newHasher();
+        if (this.inputsHash != null) {
+            hasher.putBytes(this.inputsHash);
+        }
+        byte[] hash = hasher.putBytes(Files.hash(input, Hashing.sha1()).asBytes()).hash().asBytes();
+        this.inputsHash = hash;
+        File cacheFile = new File(cacheDir, String.format("%s-%s.bin", this.getClass().getSimpleName(),
+                BaseEncoding.base16().lowerCase().encode(hash)));
+        MappingTable table = MappingTable.open(cacheFile, hash);
+        if (table != null) {
+            if (this.isEmpty()) {
+                this.table = table;
+            } else {
+                this.copyTable();
+                this.copyTable(table);
+            }
+            return;
+        }
+        
+        this.copyTable();
+        boolean empty = this.isEmpty();
+        BiMap<String, String> packageMap = empty ? this.packageMap : HashBiMap.<String, String>create();
+        BiMap<String, String> classMap = empty ? this.classMap : HashBiMap.<String, String>create();
+        BiMap<MappingField, MappingField> fieldMap = empty ? this.fieldMap : HashBiMap.<MappingField, MappingField>create();
+        BiMap<MappingMethod, MappingMethod> methodMap = empty ? this.methodMap : HashBiMap.<MappingMethod, MappingMethod>create();
+        this.parse(input, packageMap, classMap, fieldMap, methodMap);
+        
+        try {
+            this.writeTable(cacheFile, hash, packageMap, classMap, fieldMap, methodMap);
+        } catch (IOException ex) {
+            this.messager.printMessage(Kind.WARNING, "Could not write mapping cache " + cacheFile + ": " + ex.getMessage());
+        }
+        
+        if (!empty) {
+            MappingProvider.forcePutAll(this.packageMap, packageMap);
+            MappingProvider.forcePutAll(this.classMap, classMap);
+            MappingProvider.forcePutAll(this.fieldMap, fieldMap);
+            MappingProvider.forcePutAll(this.methodMap, methodMap);
+        }
+    }
+    
+    /**
+     * Parse the specified mapping file into the supplied maps
+     * 
+     * @param input mapping file to parse
+     * @param packageMap package mappings
+     * @param classMap class mappings
+     * @param fieldMap field mappings
+     * @param methodMap method mappings
+     * @throws IOException if an error occurs reading the file
+     */
+    protected abstract void parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+            BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException;
+    
+    /**
+     * Create a method mapping read from a cached table. If the mapping was
+     * stored with a deferred descriptor (see {@link #getDeferredDesc}) then the
+     * descriptor is the one which was returned by that method.
+     * 
+     * @param owner method owner
+     * @param simpleName method name
+     * @param desc method descriptor
+     * @param deferred true if the descriptor is a deferred descriptor
+     * @return new method mapping
+     */
+    protected MappingMethod createMethodMapping(String owner, String simpleName, String desc, boolean deferred) {
+        return new MappingMethod(owner, simpleName, desc);
+    }
+    
+    /**
+     * Get the descriptor to store in a cached table for a method mapping whose
+     * descriptor is computed from other mappings when it is used. Returns null
+     * if the descriptor of the mapping should be stored as-is.
+     * 
+     * @param method method mapping being stored
+     * @return descriptor to store or null
+     */
+    protected String getDeferredDesc(MappingMethod method) {
+        return null;
+    }
+    
+    /**
+     * Get the mapping cache directory, caching is disabled unless a directory
+     * is specified
+     */
+    private File getCacheDir() {
+        if (!(this.messager instanceof IOptionProvider)) {
+            return null;
+        }
+        String cacheDir = ((IOptionProvider)this.messager).getOption(SupportedOptions.MAPPING_CACHE_DIR);
+        return cacheDir != null && !cacheDir.isEmpty() ? new File(cacheDir) : null;
+    }
+
+    /**
+     * Copy the mapped table, if there is one, into the maps and stop using it
+     */
+    private void copyTable() {
+        MappingTable table = this.table;
+        if (table != null) {
+            this.table = null;
+            this.copyTable(table);
+        }
+    }
+    
+    private void copyTable(MappingTable table) {
+        for (int index = 0; index < table.packages.count; index++) {
+            this.packageMap.forcePut(table.getString(table.get(table.packages, index, 0)),
+                    table.getString(table.get(table.packages, index, 1)));
+        }
+        for (int index = 0; index < table.classes.count; index++) {
+            this.classMap.forcePut(table.getString(table.get(table.classes, index, 0)), table.getString(table.get(table.classes, index, 1)));
+        }
+        for (int index = 0; index < table.fields.count; index++) {
+            this.fieldMap.forcePut(MappingProvider.readField(table, index, 1), MappingProvider.readField(table, index, 4));
+        }
+        for (int index = 0; index < table.methods.count; index++) {
+            MappingMethod key = new MappingMethod(table.getString(table.get(table.methods, index, 1)),
+                    table.getString(table.get(table.methods, index, 2)), table.getString(table.get(table.methods, index, 3)));
+            this.methodMap.forcePut(key, this.readMethod(table, index, 4));
+        }
+    }
+    
+    private static MappingField readField(MappingTable table, int index, int field) {
+        Section section = table.fields;
+        return new MappingField(table.getString(table.get(section, index, field)), table.getString(table.get(section, index, field + 1)),
+                table.getString(table.get(section, index, field + 2)));
+    }
+    
+    private MappingMethod readMethod(MappingTable table, int index, int field) {
+        Section section = table.methods;
+        boolean deferred = (table.get(section, index, 7) & MappingTable.FLAG_DEFERRED_DESC) != 0;
+        return this.createMethodMapping(table.getString(table.get(section, index, field)), table.getString(table.get(section, index, field + 1)),
+                table.getString(table.get(section, index, field + 2)), deferred);
+    }
+    
+    private void writeTable(File cacheFile, byte[] hash, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+            BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
+        List<Entry> packages = new ArrayList<Entry>(packageMap.size());
+        for (Map.Entry<String, String> mapping : packageMap.entrySet()) {
+            packages.add(new Entry(mapping.getKey(), mapping.getValue()));
+        }
+        List<Entry> classes = new ArrayList<Entry>(classMap.size());
+        for (Map.Entry<String, String> mapping : classMap.entrySet()) {
+            classes.add(new Entry(mapping.getKey(), mapping.getValue()));
+        }
+        List<Entry> fields = new ArrayList<Entry>(fieldMap.size());
+        for (Map.Entry<MappingField, MappingField> mapping : fieldMap.entrySet()) {
+            MappingField from = mapping.getKey(), to = mapping.getValue();
+            fields.add(new Entry(from.toString(), from.getOwner(), from.getSimpleName(), from.getDesc(),
+                    to.getOwner(), to.getSimpleName(), to.getDesc()));
+        }
+        List<Entry> methods = new ArrayList<Entry>(methodMap.size());
+        for (Map.Entry<MappingMethod, MappingMethod> mapping : methodMap.entrySet()) {
+            MappingMethod from = mapping.getKey(), to = mapping.getValue();
+            String deferredDesc = this.getDeferredDesc(to);
+            methods.add(new Entry(from.toString(), deferredDesc != null ? MappingTable.FLAG_DEFERRED_DESC : 0, from.getOwner(),
+                    from.getSimpleName(), from.getDesc(), to.getOwner(), to.getSimpleName(), deferredDesc != null ? deferredDesc : to.getDesc()));
+        }
+        
+        List<List<Entry>> sections = new ArrayList<List<Entry>>();
+        sections.add(packages);
+        sections.add(classes);
+        sections.add(fields);
+        sections.add(methods);
+        MappingTable.write(cacheFile, hash, sections);
+    }
+    
+    private static <K, V> void forcePutAll(BiMap<K, V> to, BiMap<K, V> from) {
+        for (Map.Entry<K, V> mapping : from.entrySet()) {
+            to.forcePut(mapping.getKey(), mapping.getValue());
+        }
+    }
 
 }
@@ -0,0 +1,385 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.obfuscation.mapping.common;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the mappings read from a single mapping file, used as
+ * a cache so that large mapping files do not need to be parsed on every run of
+ * the annotation processor. Tables are written once after a mapping file is
+ * parsed and are then memory-mapped and queried in place.
+ * 
+ * <p>The table consists of a header containing the hash of the source file,
+ * an interned string table, and a section for each kind of mapping. Each
+ * section contains the hash codes of the mapping keys in sorted order followed
+ * by the entries in the same order, so that lookups are a binary search on the
+ * key hash followed by a comparison of the key bytes. Field and method entries
+ * store the components of the key as well as the value, so that the table can
+ * be copied back into a set of mapping maps if required. Keys are the
+ * <tt>toString()</tt> of the mapping, which is what mapping equality is based
+ * on, so lookups give the same answers as the maps the table was built from.
+ * </p>
+ */
+final class MappingTable {
+    
+    /**
+     * A mapping entry, used when building a table
+     */
+    static final class Entry {
+        
+        final String key;
+        
+        final String[] values;
+        
+        final int flags;
+        
+        Entry(String key, String... values) {
+            this(key, 0, values);
+        }
+
+        Entry(String key, int flags, String... values) {
+            this.key = key;
+            this.flags = flags;
+            this.values = values;
+        }
+        
+    }
+    
+    /**
+     * Section in the table, each section is a sorted array of key hashes
+     * followed by the entries as arrays of ints
+     */
+    static final class Section {
+        
+        /**
+         * Number of ints in each entry, the key followed by the values and,
+         * for methods, the flags
+         */
+        final int width;
+        
+        int count;
+        
+        int hashes;
+        
+        int entries;
+        
+        Section(int width) {
+            this.width = width;
+        }
+        
+    }
+    
+    /**
+     * Method entry flag indicating that the descriptor is the original
+     * descriptor and must be remapped when it is used
+     */
+    static final int FLAG_DEFERRED_DESC = 0x01;
+    
+    /**
+     * Index of the method section in the list of sections passed to
+     * {@link #write}
+     */
+    static final int METHODS = 3;
+    
+    private static final int MAGIC = 0x4D584D54; // MXMT
+    
+    private static final int VERSION = 1;
+    
+    private static final int HASH_LENGTH = 20;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int ha = a.key.hashCode(), hb = b.key.hashCode();
+            return ha < hb ? -1 : ha > hb ? 1 : 0;
+        }
+    };
+    
+    private final ByteBuffer buffer;
+    
+    private final int strings;
+    
+    private final int stringData;
+    
+    final Section packages = new Section(2);
+    
+    final Section classes = new Section(2);
+    
+    final Section fields = new Section(7);
+    
+    final Section methods = new Section(8);
+    
+    private MappingTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int pos = 8 + MappingTable.HASH_LENGTH;
+        int stringCount = buffer.getInt(pos);
+        this.strings = pos + 4;
+        this.stringData = this.strings + (stringCount + 1) * 4;
+        pos = this.stringData + buffer.getInt(this.strings + stringCount * 4);
+        for (Section section : this.getSections()) {
+            section.count = buffer.getInt(pos);
+            section.hashes = pos + 4;
+            section.entries = section.hashes + section.count * 4;
+            pos = section.entries + section.count * section.width * 4;
+        }
+        if (pos != buffer.limit()) {
+            throw new IllegalArgumentException("Mapping table size mismatch");
+        }
+    }
+    
+    private Section[] getSections() {
+        return new Section[] { this.packages, this.classes, this.fields, this.methods };
+    }
+    
+    /**
+     * Get whether this table contains no mappings
+     */
+    boolean isEmpty() {
+        return this.packages.count == 0 && this.classes.count == 0 && this.fields.count == 0 && this.methods.count == 0;
+    }
+    
+    /**
+     * Find the entry with the specified key
+     * 
+     * @param section section to search
+     * @param key mapping key
+     * @return entry index or -1 if not found
+     */
+    int find(Section section, String key) {
+        int hash = key.hashCode();
+        int low = 0, high = section.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midHash = this.buffer.getInt(section.hashes + mid * 4);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        
+        byte[] keyBytes = null;
+        for (int index = low; index < section.count && this.buffer.getInt(section.hashes + index * 4) == hash; index++) {
+            if (keyBytes == null) {
+                keyBytes = key.getBytes(MappingTable.UTF_8);
+            }
+            if (this.stringEquals(this.get(section, index, 0), keyBytes)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Get a value from an entry
+     * 
+     * @param section section containing the entry
+     * @param index entry index
+     * @param field field within the entry, 0 is the key
+     * @return raw int value of the field
+     */
+    int get(Section section, int index, int field) {
+        return this.buffer.getInt(section.entries + (index * section.width + field) * 4);
+    }
+    
+    /**
+     * Get a string from the string table
+     * 
+     * @param id string id
+     * @return string or null if the id is -1
+     */
+    String getString(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = this.buffer.getInt(this.strings + id * 4);
+        int end = this.buffer.getInt(this.strings + (id + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.buffer.get(this.stringData + start + i);
+        }
+        return new String(bytes, MappingTable.UTF_8);
+    }
+    
+    private boolean stringEquals(int id, byte[] bytes) {
+        int start = this.buffer.getInt(this.strings + id * 4);
+        int end = this.buffer.getInt(this.strings + (id + 1) * 4);
+        if (end - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (this.buffer.get(this.stringData + start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Map the specified table file, returns null if the file does not exist,
+     * is not a valid table or was not built from the source with the specified
+     * hash
+     * 
+     * @param file table file
+     * @param sourceHash hash of the mapping file the table should be built from
+     * @return mapped table or null
+     */
+    static MappingTable open(File file, byte[] sourceHash) {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 12 + MappingTable.HASH_LENGTH || buffer.getInt(0) != MappingTable.MAGIC
+                    || buffer.getInt(4) != MappingTable.VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[MappingTable.HASH_LENGTH];
+            buffer.position(8);
+            buffer.get(hash);
+            buffer.position(0);
+            if (!Arrays.equals(hash, sourceHash)) {
+                return null;
+            }
+            return new MappingTable(buffer);
+        } catch (IOException ex) {
+            return null;
+        } catch (RuntimeException ex) {
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write a table containing the supplied entries to the specified file. The
+     * table is written to a temporary file first and then moved into place so
+     * that concurrent builds never see a partial table.
+     * 
+     * @param file table file to write
+     * @param sourceHash hash of the mapping file the entries were read from
+     * @param sections entries for the package, class, field and method sections
+     * @throws IOException if the table cannot be written
+     */
+    static void write(File file, byte[] sourceHash, List<List<Entry>> sections) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        List<List<Entry>> sorted = new ArrayList<List<Entry>>();
+        for (List<Entry> section : sections) {
+            List<Entry> entries = new ArrayList<Entry>(section);
+            Collections.sort(entries, MappingTable.ENTRY_ORDER);
+            for (Entry entry : entries) {
+                MappingTable.intern(strings, entry.key);
+                for (String value : entry.values) {
+                    MappingTable.intern(strings, value);
+                }
+            }
+            sorted.add(entries);
+        }
+        
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create mapping cache directory " + dir);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MappingTable.MAGIC);
+            out.writeInt(MappingTable.VERSION);
+            out.write(sourceHash, 0, MappingTable.HASH_LENGTH);
+            
+            List<byte[]> stringBytes = new ArrayList<byte[]>(strings.size());
+            out.writeInt(strings.size());
+            int offset = 0;
+            for (String string : strings.keySet()) {
+                byte[] bytes = string.getBytes(MappingTable.UTF_8);
+                stringBytes.add(bytes);
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : stringBytes) {
+                out.write(bytes);
+            }
+            
+            for (int section = 0; section < sorted.size(); section++) {
+                List<Entry> entries = sorted.get(section);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    out.writeInt(entry.key.hashCode());
+                }
+                for (Entry entry : entries) {
+                    out.writeInt(strings.get(entry.key).intValue());
+                    for (String value : entry.values) {
+                        out.writeInt(value != null ? strings.get(value).intValue() : -1);
+                    }
+                    if (section == MappingTable.METHODS) {
+                        out.writeInt(entry.flags);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+        
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move mapping table into place at " + file);
+        }
+    }
+    
+    private static void intern(Map<String, Integer> strings, String value) {
+        if (value != null && !strings.containsKey(value)) {
+            strings.put(value, Integer.valueOf(strings.size()));
+        }
+    }
+    
+}
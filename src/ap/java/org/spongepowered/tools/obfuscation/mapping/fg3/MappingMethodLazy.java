@@ -51,6 +51,13 @@ public class MappingMethodLazy extends MappingMethod {
         this.mappingProvider = mappingProvider;
     }
     
+    /**
+     * Get the descriptor of this method before class names are remapped
+     */
+    public String getOriginalDesc() {
+        return this.originalDesc;
+    }
+    
     @Override
     public String getDesc() {
         if (this.newDesc == null) {
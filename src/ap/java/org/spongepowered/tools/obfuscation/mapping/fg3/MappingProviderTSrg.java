@@ -47,7 +47,7 @@ import com.google.common.io.Files;
  */
 public class MappingProviderTSrg extends MappingProvider {
     
-    private List<String> inputMappings = new ArrayList<String>();
+    private final List<File> inputFiles = new ArrayList<File>();
 
     public MappingProviderTSrg(Messager messager, Filer filer) {
         super(messager, filer);
@@ -55,16 +55,22 @@ public class MappingProviderTSrg extends MappingProvider {
 
     @Override
     public void read(final File input) throws IOException {
-        // Locally scoped to avoid synthetic accessor
-        final BiMap<String, String> packageMap = this.packageMap;
-        final BiMap<String, String> classMap = this.classMap;
-        final BiMap<MappingField, MappingField> fieldMap = this.fieldMap;
-        final BiMap<MappingMethod, MappingMethod> methodMap = this.methodMap;
-        
+        this.readCached(input);
+        this.inputFiles.add(input);
+    }
+    
+    @Override
+    public void clear() {
+        super.clear();
+        this.inputFiles.clear();
+    }
+    
+    @Override
+    protected void parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+            BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
         String fromClass = null, toClass = null;
-        this.inputMappings.addAll(Files.readLines(input, Charset.defaultCharset()));
         
-        for (String line : this.inputMappings) {
+        for (String line : Files.readLines(input, Charset.defaultCharset())) {
             if (Strings.isNullOrEmpty(line) || line.startsWith("#") || line.startsWith("tsrg2") || line.startsWith("\t\t")) {
                 continue;
             }
@@ -96,6 +102,10 @@ public class MappingProviderTSrg extends MappingProvider {
                     }
                 } else if (parts.length > 2) {
                     String to = classMap.get(from);
+                    if (to == null) {
+                        // Class may have been mapped by a previous input file
+                        to = this.getClassMapping(from);
+                    }
                     if (to == null) {
                         throw new IllegalStateException("Error parsing TSRG file, found inline member before class mapping: " + line);
                     }
@@ -120,11 +130,29 @@ public class MappingProviderTSrg extends MappingProvider {
         if (field.getDesc() != null) {
             field = new MappingFieldSrg(field);
         }
-        return this.fieldMap.get(field);
+        return super.getFieldMapping(field);
+    }
+    
+    @Override
+    protected MappingMethod createMethodMapping(String owner, String simpleName, String desc, boolean deferred) {
+        return deferred ? new MappingMethodLazy(owner, simpleName, desc, this) : super.createMethodMapping(owner, simpleName, desc, deferred);
+    }
+    
+    @Override
+    protected String getDeferredDesc(MappingMethod method) {
+        return method instanceof MappingMethodLazy ? ((MappingMethodLazy)method).getOriginalDesc() : null;
     }
 
-    List<String> getInputMappings() {
-        return this.inputMappings;
+    /**
+     * Get the lines of all input mapping files. The files are read on demand
+     * since mappings loaded from the mapping cache do not read them.
+     */
+    List<String> getInputMappings() throws IOException {
+        List<String> inputMappings = new ArrayList<String>();
+        for (File inputFile : this.inputFiles) {
+            inputMappings.addAll(Files.readLines(inputFile, Charset.defaultCharset()));
+        }
+        return inputMappings;
     }
     
 }
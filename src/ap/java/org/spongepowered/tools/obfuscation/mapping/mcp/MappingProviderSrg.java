@@ -55,12 +55,12 @@ public class MappingProviderSrg extends MappingProvider {
 
     @Override
     public void read(final File input) throws IOException {
-        // Locally scoped to avoid synthetic accessor
-        final BiMap<String, String> packageMap = this.packageMap;
-        final BiMap<String, String> classMap = this.classMap;
-        final BiMap<MappingField, MappingField> fieldMap = this.fieldMap;
-        final BiMap<MappingMethod, MappingMethod> methodMap = this.methodMap;
-
+        this.readCached(input);
+    }
+    
+    @Override
+    protected void parse(final File input, final BiMap<String, String> packageMap, final BiMap<String, String> classMap,
+            final BiMap<MappingField, MappingField> fieldMap, final BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
         Files.readLines(input, Charset.defaultCharset(), new LineProcessor<String>() {
             @Override
             public String getResult() {
@@ -99,6 +99,6 @@ public class MappingProviderSrg extends MappingProvider {
         if (field.getDesc() != null) {
             field = new MappingFieldSrg(field);
         }
-        return this.fieldMap.get(field);
+        return super.getFieldMapping(field);
     }
 }
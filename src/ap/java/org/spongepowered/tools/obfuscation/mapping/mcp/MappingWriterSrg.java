@@ -76,7 +76,7 @@ public class MappingWriterSrg extends MappingWriter {
         return this.openFileWriter(output, type + " output SRGs");
     }
 
-    protected void writeHeader(PrintWriter writer) {
+    protected void writeHeader(PrintWriter writer) throws IOException {
         // stub
     }
 
@@ -50,7 +50,10 @@ import org.spongepowered.asm.logging.ILogger;
 import org.spongepowered.asm.mixin.MixinEnvironment.CompatibilityLevel;
 import org.spongepowered.asm.mixin.MixinEnvironment.Phase;
 import org.spongepowered.asm.mixin.throwables.MixinException;
+import org.spongepowered.asm.service.CachingBytecodeProvider;
 import org.spongepowered.asm.service.IClassBytecodeProvider;
+import org.spongepowered.asm.service.IClassBytesProvider;
+import org.spongepowered.asm.service.IClassHeaderProvider;
 import org.spongepowered.asm.service.IClassProvider;
 import org.spongepowered.asm.service.IClassTracker;
 import org.spongepowered.asm.service.ILegacyClassTransformer;
@@ -76,7 +79,8 @@ import xyz.spruceloader.launchwrapper.api.LaunchTransformers;
 /**
  * Mixin service for launchwrapper
  */
-public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements IClassProvider, IClassBytecodeProvider, ITransformerProvider {
+public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements IClassProvider, IClassBytesProvider, IClassHeaderProvider,
+        ITransformerProvider {
     // Blackboard keys
     public static final Keys BLACKBOARD_KEY_TWEAKCLASSES = Keys.of("TweakClasses");
     public static final Keys BLACKBOARD_KEY_TWEAKS = Keys.of("Tweaks");
@@ -116,8 +120,16 @@ public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements I
      */
     private List<ILegacyClassTransformer> delegatedTransformers;
     
+    /**
+     * Cache of transformed class bytes, used to avoid re-running the delegated
+     * transformer chain every time class metadata is requested. Invalidated
+     * whenever the delegation list changes.
+     */
+    private final CachingBytecodeProvider bytecodeCache;
+    
     public MixinServiceLaunchWrapper() {
         this.classLoaderUtil = new LaunchClassLoaderUtil(Launch.getInstance().getClassLoader());
+        this.bytecodeCache = new CachingBytecodeProvider(this);
     }
     
     @Override
@@ -261,7 +273,7 @@ public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements I
      */
     @Override
     public IClassBytecodeProvider getBytecodeProvider() {
-        return this;
+        return this.bytecodeCache;
     }
     
     /* (non-Javadoc)
@@ -440,6 +452,9 @@ public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements I
         
         // Force rebuild of the list
         this.delegatedTransformers = null;
+        
+        // Bytes transformed by the old list are no longer valid
+        this.bytecodeCache.invalidate();
     }
 
     /**
@@ -485,7 +500,7 @@ public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements I
      * @return Transformed class bytecode for the specified class
      * @throws ClassNotFoundException if the specified class could not be loaded
      */
-    @Deprecated
+    @Override
     public byte[] getClassBytes(String className, boolean runTransformers) throws ClassNotFoundException {
         Profiler profiler = Profiler.getProfiler("mixin");
         Section loadTime = profiler.begin(Profiler.ROOT, "class.load");
@@ -560,6 +575,15 @@ public class MixinServiceLaunchWrapper extends MixinServiceAbstract implements I
     public ClassNode getClassNode(String className, boolean runTransformers) throws ClassNotFoundException, IOException {
         return this.getClassNode(className, this.getClassBytes(className, true), ClassReader.EXPAND_FRAMES);
     }
+    
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassHeaderProvider#getClassHeader(
+     *      java.lang.String)
+     */
+    @Override
+    public ClassNode getClassHeader(String className) throws ClassNotFoundException, IOException {
+        return this.getClassNode(className, this.getClassBytes(className, true), ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    }
 
     /**
      * Gets an ASM Tree for the supplied class bytecode
@@ -57,6 +57,7 @@ import org.spongepowered.asm.util.JavaVersion;
 import org.spongepowered.asm.util.LanguageFeatures;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.asm.ASM;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents;
 import org.spongepowered.asm.util.perf.Profiler;
 
 import com.google.common.collect.ImmutableList;
@@ -291,6 +292,19 @@ public final class MixinEnvironment implements ITokenProvider {
          * is only enabled during mixin prepare operations)
          */
         DEBUG_PROFILER(Option.DEBUG_ALL, Inherit.ALLOW_OVERRIDE, "profiler"),
+        
+        /**
+         * Record a latency histogram for each profiler section so that
+         * percentiles can be included in the profiler summary. Must be enabled
+         * explicitly since each section retains a fixed-size histogram.
+         */
+        DEBUG_PROFILER_HISTOGRAM(Option.DEBUG_PROFILER, Inherit.INDEPENDENT, "histogram"),
+        
+        /**
+         * Emit Java Flight Recorder events for mixin operations when running
+         * on a platform which supports JFR
+         */
+        DEBUG_JFR(Option.DEBUG_ALL, Inherit.INDEPENDENT, "jfr"),
 
         /**
          * Dumps the bytecode for the target class to disk when mixin
@@ -327,6 +341,37 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         HOT_SWAP("hotSwap"),
         
+        /**
+         * Store the original bytecode of mixin targets compressed and outside
+         * of the heap while the hot-swap agent is enabled, at the cost of
+         * inflating it when a mixin is reloaded
+         */
+        HOT_SWAP_COMPRESS(Option.HOT_SWAP, Inherit.INDEPENDENT, "compress"),
+
+        /**
+         * Allow mixins to be applied to different target classes concurrently.
+         * Mixin configs are still selected and prepared exclusively, but once
+         * prepared, classes being transformed on different threads no longer
+         * wait on each other.
+         */
+        CONCURRENT_APPLY("concurrentApply"),
+
+        /**
+         * Enable the persistent class cache. Transformed bytecode for mixin
+         * targets is stored on disk and reused on subsequent launches as long
+         * as the target class and every mixin config, refmap and mixin class
+         * are unchanged. Targets affected by config plugins, nest hosts or
+         * synthetic classes are never cached. Ignored when hot-swap is
+         * enabled.
+         */
+        CLASS_CACHE("classCache"),
+
+        /**
+         * Directory for the persistent class cache, relative to the working
+         * directory
+         */
+        CLASS_CACHE_DIR(Option.CLASS_CACHE, Inherit.INDEPENDENT, "dir", ".mixin.cache"),
+
         /**
          * Parent for environment settings
          */
@@ -1485,6 +1530,8 @@ public final class MixinEnvironment implements ITokenProvider {
             MixinEnvironment.currentPhase = phase;
             MixinEnvironment env = MixinEnvironment.getEnvironment(phase);
             Profiler.setActive(env.getOption(Option.DEBUG_PROFILER));
+            Profiler.setHistograms(env.getOption(Option.DEBUG_PROFILER_HISTOGRAM));
+            FlightRecorderEvents.setEnabled(env.getOption(Option.DEBUG_JFR));
             
             // AMS - Temp wiring to avoid merging multiphase
             IMixinService service = MixinService.getService();
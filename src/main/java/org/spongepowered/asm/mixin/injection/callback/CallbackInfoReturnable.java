@@ -37,6 +37,20 @@ import org.spongepowered.asm.util.Constants;
 public class CallbackInfoReturnable<R> extends CallbackInfo {
 
     private R returnValue;
+    
+    /**
+     * Primitive return value, stored unboxed so that callbacks which do not
+     * read or replace the return value via the generic accessors do not cause
+     * an allocation. Floating-point values are stored as their raw bits.
+     * Only valid when {@link #primitiveType} is non-zero.
+     */
+    private long primitiveValue;
+    
+    /**
+     * Descriptor of the primitive type stored in {@link #primitiveValue}, or
+     * zero if the return value is held in {@link #returnValue}
+     */
+    private char primitiveType;
 
     public CallbackInfoReturnable(String name, boolean cancellable) {
         super(name, cancellable);
@@ -48,52 +62,44 @@ public class CallbackInfoReturnable<R> extends CallbackInfo {
         this.returnValue = returnValue;
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, byte returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Byte.valueOf(returnValue);
+        this.setPrimitive('B', returnValue);
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, char returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Character.valueOf(returnValue);
+        this.setPrimitive('C', returnValue);
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, double returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Double.valueOf(returnValue);
+        this.setPrimitive('D', Double.doubleToRawLongBits(returnValue));
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, float returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Float.valueOf(returnValue);
+        this.setPrimitive('F', Float.floatToRawIntBits(returnValue));
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, int returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Integer.valueOf(returnValue);
+        this.setPrimitive('I', returnValue);
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, long returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Long.valueOf(returnValue);
+        this.setPrimitive('J', returnValue);
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, short returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Short.valueOf(returnValue);
+        this.setPrimitive('S', returnValue);
     }
 
-    @SuppressWarnings("unchecked")
     public CallbackInfoReturnable(String name, boolean cancellable, boolean returnValue) {
         super(name, cancellable);
-        this.returnValue = (R) Boolean.valueOf(returnValue);
+        this.setPrimitive('Z', returnValue ? 1 : 0);
     }
 
     /**
@@ -106,23 +112,92 @@ public class CallbackInfoReturnable<R> extends CallbackInfo {
         super.cancel();
 
         this.returnValue = returnValue;
+        this.primitiveType = 0;
     }
 
     public R getReturnValue() {
+        if (this.primitiveType != 0) {
+            this.returnValue = this.boxPrimitive();
+            this.primitiveType = 0;
+        }
         return this.returnValue;
     }
 
     // All of the accessors below are to avoid having to generate unboxing conversions in bytecode
     // CHECKSTYLE:OFF
-    public byte    getReturnValueB() { if (this.returnValue == null) { return 0;     } return (Byte)     this.returnValue; }
-    public char    getReturnValueC() { if (this.returnValue == null) { return 0;     } return (Character)this.returnValue; }
-    public double  getReturnValueD() { if (this.returnValue == null) { return 0.0;   } return (Double)   this.returnValue; }
-    public float   getReturnValueF() { if (this.returnValue == null) { return 0.0F;  } return (Float)    this.returnValue; }
-    public int     getReturnValueI() { if (this.returnValue == null) { return 0;     } return (Integer)  this.returnValue; }
-    public long    getReturnValueJ() { if (this.returnValue == null) { return 0;     } return (Long)     this.returnValue; }
-    public short   getReturnValueS() { if (this.returnValue == null) { return 0;     } return (Short)    this.returnValue; }
-    public boolean getReturnValueZ() { if (this.returnValue == null) { return false; } return (Boolean)  this.returnValue; }
+    public byte    getReturnValueB() { return (byte)this.getBits('B'); }
+    public char    getReturnValueC() { return (char)this.getBits('C'); }
+    public double  getReturnValueD() { return Double.longBitsToDouble(this.getBits('D')); }
+    public float   getReturnValueF() { return Float.intBitsToFloat((int)this.getBits('F')); }
+    public int     getReturnValueI() { return (int)this.getBits('I'); }
+    public long    getReturnValueJ() { return this.getBits('J'); }
+    public short   getReturnValueS() { return (short)this.getBits('S'); }
+    public boolean getReturnValueZ() { return this.getBits('Z') != 0; }
+    // CHECKSTYLE:ON
+
+    // Typed setters, equivalent to setReturnValue but without boxing the value
+    // CHECKSTYLE:OFF
+    public void setReturnValueB(byte value)    throws CancellationException { this.cancelWith('B', value); }
+    public void setReturnValueC(char value)    throws CancellationException { this.cancelWith('C', value); }
+    public void setReturnValueD(double value)  throws CancellationException { this.cancelWith('D', Double.doubleToRawLongBits(value)); }
+    public void setReturnValueF(float value)   throws CancellationException { this.cancelWith('F', Float.floatToRawIntBits(value)); }
+    public void setReturnValueI(int value)     throws CancellationException { this.cancelWith('I', value); }
+    public void setReturnValueJ(long value)    throws CancellationException { this.cancelWith('J', value); }
+    public void setReturnValueS(short value)   throws CancellationException { this.cancelWith('S', value); }
+    public void setReturnValueZ(boolean value) throws CancellationException { this.cancelWith('Z', value ? 1 : 0); }
     // CHECKSTYLE:ON
+    
+    private void cancelWith(char type, long value) throws CancellationException {
+        super.cancel();
+        this.setPrimitive(type, value);
+    }
+    
+    private void setPrimitive(char type, long value) {
+        this.returnValue = null;
+        this.primitiveValue = value;
+        this.primitiveType = type;
+    }
+
+    /**
+     * Get the return value as raw primitive bits for the specified type,
+     * unboxing the value if it was supplied as an object. A null value reads
+     * as zero, an object of the wrong type raises a ClassCastException.
+     */
+    private long getBits(char type) {
+        if (this.primitiveType == type) {
+            return this.primitiveValue;
+        }
+        Object value = this.getReturnValue();
+        if (value == null) {
+            return 0L;
+        }
+        switch (type) {
+            case 'B': return ((Byte)value).byteValue();
+            case 'C': return ((Character)value).charValue();
+            case 'D': return Double.doubleToRawLongBits(((Double)value).doubleValue());
+            case 'F': return Float.floatToRawIntBits(((Float)value).floatValue());
+            case 'I': return ((Integer)value).intValue();
+            case 'J': return ((Long)value).longValue();
+            case 'S': return ((Short)value).shortValue();
+            case 'Z': return ((Boolean)value).booleanValue() ? 1L : 0L;
+            default: throw new IllegalArgumentException("Invalid primitive type " + type);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R boxPrimitive() {
+        switch (this.primitiveType) {
+            case 'B': return (R) Byte.valueOf((byte)this.primitiveValue);
+            case 'C': return (R) Character.valueOf((char)this.primitiveValue);
+            case 'D': return (R) Double.valueOf(Double.longBitsToDouble(this.primitiveValue));
+            case 'F': return (R) Float.valueOf(Float.intBitsToFloat((int)this.primitiveValue));
+            case 'I': return (R) Integer.valueOf((int)this.primitiveValue);
+            case 'J': return (R) Long.valueOf(this.primitiveValue);
+            case 'S': return (R) Short.valueOf((short)this.primitiveValue);
+            case 'Z': return (R) Boolean.valueOf(this.primitiveValue != 0);
+            default: return this.returnValue;
+        }
+    }
 
     static String getReturnAccessor(Type returnType) {
         if (returnType.getSort() == Type.OBJECT || returnType.getSort() == Type.ARRAY) {
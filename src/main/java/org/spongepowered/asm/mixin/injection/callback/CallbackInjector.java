@@ -476,7 +476,7 @@ public class CallbackInjector extends Injector {
         int fabricCompatibility = org.spongepowered.asm.mixin.FabricUtil.getCompatibility(info);
         String decorationKey = CallbackInjector.LOCALS_KEY + ":" + fabricCompatibility;
         if ((this.localCapture.isCaptureLocals() || this.localCapture.isPrintLocals()) && !node.hasDecoration(decorationKey)) {
-            LocalVariableNode[] locals = Locals.getLocalsAt(this.classNode, target.method, node.getCurrentTarget(), fabricCompatibility);
+            LocalVariableNode[] locals = target.getLocalsAt(node.getCurrentTarget(), fabricCompatibility);
             for (int j = 0; j < locals.length; j++) {
                 if (locals[j] != null && locals[j].desc != null && locals[j].desc.startsWith("Lorg/spongepowered/asm/mixin/injection/callback/")) {
                     locals[j] = null;
@@ -374,9 +374,7 @@ public abstract class Injector {
                 throw new InjectionError(String.format("Delegate constructor lookup failed for %s target on %s", this.annotationType, this.info));
             }
             
-            int superCallIndex = target.indexOf(superCall.insn);
-            int targetIndex = target.indexOf(node.getCurrentTarget());
-            if (targetIndex <= superCallIndex) {
+            if (target.compareInsns(node.getCurrentTarget(), superCall.insn) <= 0) {
                 if (targetLevel == RestrictTargetLevel.CONSTRUCTORS_AFTER_DELEGATE) {
                     throw new InvalidInjectionException(this.info, String.format("Found %s targetting a constructor before %s() in injector %s",
                             this.annotationType, superCall, this));
@@ -154,6 +154,7 @@ public class InjectorTarget {
                 // No slice exists so just wrap the method insns
                 slice = new InsnListReadOnly(this.target.method.instructions);
             }
+            slice.setIndex(this.target.getInsnIndex());
             this.cache.put(id, slice);
         }
         
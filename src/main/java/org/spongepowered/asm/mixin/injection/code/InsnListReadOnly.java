@@ -28,6 +28,7 @@ import java.util.ListIterator;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 
 /**
  * Read-only wrapper for InsnList, defensively passed to InjectionPoint
@@ -37,6 +38,11 @@ import org.objectweb.asm.tree.InsnList;
 public class InsnListReadOnly extends InsnList {
 
     private InsnList insnList;
+    
+    /**
+     * Index of the underlying instructions, if available
+     */
+    private InsnIndex index;
 
     public InsnListReadOnly(InsnList insns) {
         this.insnList = insns;
@@ -44,6 +50,24 @@ public class InsnListReadOnly extends InsnList {
 
     void dispose() {
         this.insnList = null;
+        this.index = null;
+    }
+    
+    /**
+     * Get the index of the underlying instruction list, returns null if the
+     * list is not indexed
+     */
+    public InsnIndex getIndex() {
+        return this.index;
+    }
+    
+    /**
+     * Set the index of the underlying instruction list
+     * 
+     * @param index instruction index
+     */
+    void setIndex(InsnIndex index) {
+        this.index = index;
     }
 
     /*
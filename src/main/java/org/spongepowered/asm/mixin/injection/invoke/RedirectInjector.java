@@ -612,7 +612,7 @@ public class RedirectInjector extends InvokeInjector {
         }
         
         final TypeInsnNode newNode = (TypeInsnNode)node.getCurrentTarget();
-        final AbstractInsnNode dupNode = target.get(target.indexOf(newNode) + 1);
+        final AbstractInsnNode dupNode = newNode.getNext();
         final MethodInsnNode initNode = target.findInitNodeFor(newNode);
         
         if (initNode == null) {
@@ -30,13 +30,26 @@ import org.spongepowered.asm.mixin.injection.ModifyArgs;
  * Argument bundle class used in {@link ModifyArgs} callbacks. See the
  * documentation for {@link ModifyArgs} for details. Synthetic subclasses are
  * generated at runtime for specific injectors. 
+ * 
+ * <p>Generated subclasses store each argument in a field of the argument's
+ * own type, so reading and writing primitive arguments via the typed
+ * accessors (eg. {@link #getInt} and {@link #setInt}) does not box the
+ * value. The generic {@link #get} and {@link #set} accessors continue to
+ * work for all arguments.</p>
  */
 public abstract class Args {
     
     /**
-     * Argument values
+     * Argument values, only used by subclasses which store their values in an
+     * array. This is <tt>null</tt> for subclasses which store their values in
+     * typed fields.
      */
     protected final Object[] values;
+    
+    /**
+     * Number of arguments
+     */
+    private final int size;
 
     /**
      * Ctor.
@@ -45,6 +58,18 @@ public abstract class Args {
      */
     protected Args(Object[] values) {
         this.values = values;
+        this.size = values.length;
+    }
+    
+    /**
+     * Ctor for subclasses which store argument values in their own fields,
+     * such subclasses must override {@link #get}.
+     * 
+     * @param size number of arguments
+     */
+    protected Args(int size) {
+        this.values = null;
+        this.size = size;
     }
     
     /**
@@ -53,7 +78,7 @@ public abstract class Args {
      * @return number of arguments available
      */
     public int size() {
-        return this.values.length;
+        return this.size;
     }
 
     /**
@@ -99,4 +124,26 @@ public abstract class Args {
      */
     public abstract void setAll(Object... values);
     
+    // Primitive accessors, the default implementations delegate to get and set
+    // and are overridden by generated subclasses for arguments of each type
+    // CHECKSTYLE:OFF
+    public boolean getBoolean(int index) { return this.<Boolean>get(index).booleanValue(); }
+    public byte    getByte(int index)    { return this.<Byte>get(index).byteValue(); }
+    public char    getChar(int index)    { return this.<Character>get(index).charValue(); }
+    public short   getShort(int index)   { return this.<Short>get(index).shortValue(); }
+    public int     getInt(int index)     { return this.<Integer>get(index).intValue(); }
+    public long    getLong(int index)    { return this.<Long>get(index).longValue(); }
+    public float   getFloat(int index)   { return this.<Float>get(index).floatValue(); }
+    public double  getDouble(int index)  { return this.<Double>get(index).doubleValue(); }
+
+    public void setBoolean(int index, boolean value) { this.set(index, Boolean.valueOf(value)); }
+    public void setByte(int index, byte value)       { this.set(index, Byte.valueOf(value)); }
+    public void setChar(int index, char value)       { this.set(index, Character.valueOf(value)); }
+    public void setShort(int index, short value)     { this.set(index, Short.valueOf(value)); }
+    public void setInt(int index, int value)         { this.set(index, Integer.valueOf(value)); }
+    public void setLong(int index, long value)       { this.set(index, Long.valueOf(value)); }
+    public void setFloat(int index, float value)     { this.set(index, Float.valueOf(value)); }
+    public void setDouble(int index, double value)   { this.set(index, Double.valueOf(value)); }
+    // CHECKSTYLE:ON
+    
 }
\ No newline at end of file
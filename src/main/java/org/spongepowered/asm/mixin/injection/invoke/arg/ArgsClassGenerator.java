@@ -24,8 +24,11 @@
  */
 package org.spongepowered.asm.mixin.injection.invoke.arg;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.ClassVisitor;
@@ -64,12 +67,12 @@ public final class ArgsClassGenerator implements IClassGenerator {
 
     private static final String CLASS_NAME_BASE = Constants.SYNTHETIC_PACKAGE + ".args.Args$";
 
-    private static final String OBJECT = "java/lang/Object";
-    private static final String OBJECT_ARRAY = "[L" + ArgsClassGenerator.OBJECT + ";";
+    private static final String FIELD_PREFIX = "arg";
     
-    private static final String VALUES_FIELD = "values";
+    private static final String SUPER_CTOR_DESC = "(I)V";
     
-    private static final String CTOR_DESC = "(" + ArgsClassGenerator.OBJECT_ARRAY + ")V";
+    private static final String GET = "get";
+    private static final String GET_DESC = "(I)Ljava/lang/Object;";
     
     private static final String SET = "set";
     private static final String SET_DESC = "(ILjava/lang/Object;)V";
@@ -83,6 +86,8 @@ public final class ArgsClassGenerator implements IClassGenerator {
     private static final String AIOOBE = "org/spongepowered/asm/mixin/injection/invoke/arg/ArgumentIndexOutOfBoundsException";
     private static final String AIOOBE_CTOR_DESC = "(I)V";
     
+    private static final String AAIOOBE = "java/lang/ArrayIndexOutOfBoundsException";
+    
     private static final String ACE = "org/spongepowered/asm/mixin/injection/invoke/arg/ArgumentCountException";
     private static final String ACE_CTOR_DESC = "(IILjava/lang/String;)V";
     
@@ -132,12 +137,12 @@ public final class ArgsClassGenerator implements IClassGenerator {
     /**
      * Map of descriptors to generated class infos
      */
-    private final Map<String, ArgsClassInfo> descToClass = new HashMap<String, ArgsClassInfo>();
+    private final Map<String, ArgsClassInfo> descToClass = new ConcurrentHashMap<String, ArgsClassInfo>();
     
     /**
      * Map of class names to generated class infos
      */
-    private final Map<String, ArgsClassInfo> nameToClass = new HashMap<String, ArgsClassInfo>();
+    private final Map<String, ArgsClassInfo> nameToClass = new ConcurrentHashMap<String, ArgsClassInfo>();
     
     /**
      * Ctor
@@ -169,7 +174,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      *      debugging only anyway
      * @return name of the Args subclass to use
      */
-    public ISyntheticClassInfo getArgsClass(String desc, IMixinInfo mixin) {
+    public synchronized ISyntheticClassInfo getArgsClass(String desc, IMixinInfo mixin) {
         String voidDesc = Bytecode.changeDescriptorReturnType(desc, "V");
         ArgsClassInfo info = this.descToClass.get(voidDesc);
         if (info == null) {
@@ -207,11 +212,14 @@ public final class ArgsClassGenerator implements IClassGenerator {
                 ArgsClassGenerator.ARGS_REF, null);
         visitor.visitSource(name.substring(name.lastIndexOf('.') + 1) + ".java", null);
         
+        this.generateFields(info, visitor);
         this.generateCtor(info, visitor);
         this.generateToString(info, visitor);
         this.generateFactory(info, visitor);
+        this.generateIndexedGetter(info, visitor);
         this.generateSetters(info, visitor);
         this.generateGetters(info, visitor);
+        this.generateTypedAccessors(info, visitor);
         
         visitor.visitEnd();
         info.loaded++;
@@ -220,31 +228,51 @@ public final class ArgsClassGenerator implements IClassGenerator {
     }
 
     /**
-     * Generate the constructor for the subclass, the ctor simply calls the
-     * superclass ctor and does nothing else besides
+     * Generate a field for each argument, fields are named by argument index
+     * and have the argument's own type so that primitive values are not boxed
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateFields(ArgsClassInfo info, ClassVisitor writer) {
+        for (int index = 0; index < info.args.length; index++) {
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC, ArgsClassGenerator.FIELD_PREFIX + index,
+                    info.args[index].getDescriptor(), null, null).visitEnd();
+        }
+    }
+
+    /**
+     * Generate the constructor for the subclass, the ctor takes the same
+     * arguments as the target method (with a void return type) and stores
+     * each one in its corresponding field
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateCtor(ArgsClassInfo info, ClassVisitor writer) {
-        MethodVisitor ctor = writer.visitMethod(Opcodes.ACC_PRIVATE, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, null, null);
+        MethodVisitorEx ctor = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PRIVATE, Constants.CTOR, info.desc, null, null));
         ctor.visitCode();
         ctor.visitVarInsn(Opcodes.ALOAD, 0);
-        ctor.visitVarInsn(Opcodes.ALOAD, 1);
-        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, false);
+        ctor.visitConstant((byte)info.args.length);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, Constants.CTOR, ArgsClassGenerator.SUPER_CTOR_DESC, false);
+        
+        for (int index = 0, argIndex = 1; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            ctor.visitVarInsn(Opcodes.ALOAD, 0);
+            ctor.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), argIndex);
+            ctor.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
+            argIndex += arg.getSize();
+        }
+        
         ctor.visitInsn(Opcodes.RETURN);
-        ctor.visitMaxs(2, 2);
+        ctor.visitMaxs(3, Bytecode.getArgsSize(info.args) + 1);
         ctor.visitEnd();
     }
 
     /**
      * Generate a toString method for this Args class.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateToString(ArgsClassInfo info, ClassVisitor writer) {
@@ -259,12 +287,9 @@ public final class ArgsClassGenerator implements IClassGenerator {
     /**
      * Generate the factory method (<tt>of</tt>) for the subclass, the factory
      * method takes the arguments which would have been passed to the target
-     * method, marshals them into an <tt>Object[]</tt> array, and then calls the
-     * constructor.
+     * method and passes them straight to the constructor.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateFactory(ArgsClassInfo info, ClassVisitor writer) {
@@ -277,28 +302,18 @@ public final class ArgsClassGenerator implements IClassGenerator {
         of.visitTypeInsn(Opcodes.NEW, ref);
         of.visitInsn(Opcodes.DUP);
         
-        // Create Object[] array to contain args
-        of.visitConstant((byte)info.args.length);
-        of.visitTypeInsn(Opcodes.ANEWARRAY, ArgsClassGenerator.OBJECT);
-
-        // Iterate over args and stuff them into the array
-        for (byte index = 0, argIndex = 0; index < info.args.length; index++) {
+        // Load all of the args onto the stack
+        for (int index = 0, argIndex = 0; index < info.args.length; index++) {
             Type arg = info.args[index];
-            of.visitInsn(Opcodes.DUP);
-            of.visitConstant(index);
             of.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), argIndex);
-            ArgsClassGenerator.box(of, arg);
-            of.visitInsn(Opcodes.AASTORE);
             argIndex += arg.getSize();
         }
 
-        // Call the constructor passing in the generated array
-        of.visitMethodInsn(Opcodes.INVOKESPECIAL, ref, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, false);
-        
-        // Return the new object
+        // Call the constructor and return the new object
+        of.visitMethodInsn(Opcodes.INVOKESPECIAL, ref, Constants.CTOR, info.desc, false);
         of.visitInsn(Opcodes.ARETURN);
 
-        of.visitMaxs(6, Bytecode.getArgsSize(info.args));
+        of.visitMaxs(Bytecode.getArgsSize(info.args) + 2, Bytecode.getArgsSize(info.args));
         of.visitEnd();
     }
 
@@ -308,44 +323,64 @@ public final class ArgsClassGenerator implements IClassGenerator {
      * retrieve each argument in turn for passing to the method invocation being
      * modified.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateGetters(ArgsClassInfo info, ClassVisitor writer) {
-        byte argIndex = 0;
-        for (Type arg : info.args) {
-            String name = ArgsClassGenerator.GETTER_PREFIX + argIndex;
-            String sig = "()" + arg.getDescriptor();
-            MethodVisitorEx get = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC, name, sig, null, null));
+        for (int index = 0; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            String name = ArgsClassGenerator.GETTER_PREFIX + index;
+            MethodVisitor get = writer.visitMethod(Opcodes.ACC_PUBLIC, name, "()" + arg.getDescriptor(), null, null);
             get.visitCode();
-            
-            // Read the value from the values field
             get.visitVarInsn(Opcodes.ALOAD, 0);
-            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-            get.visitConstant(argIndex);
-            get.visitInsn(Opcodes.AALOAD);
-            
-            // Unbox (if primitive) or cast down the value
-            ArgsClassGenerator.unbox(get, arg);
-            
-            // Return the value
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
             get.visitInsn(arg.getOpcode(Opcodes.IRETURN));
-            
             get.visitMaxs(2, 1);
             get.visitEnd();
-            argIndex++;
         }
     }
     
+    /**
+     * Generate the <tt>get</tt> method, which reads the field for the
+     * requested argument and boxes it if necessary
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateIndexedGetter(ArgsClassInfo info, ClassVisitor writer) {
+        MethodVisitorEx get = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC,
+                ArgsClassGenerator.GET, ArgsClassGenerator.GET_DESC, null, null));
+        get.visitCode();
+        
+        Label outOfBounds = new Label();
+        Label[] labels = ArgsClassGenerator.tableSwitch(get, info.args.length, outOfBounds);
+        
+        for (int index = 0; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            get.visitLabel(labels[index]);
+            get.visitVarInsn(Opcodes.ALOAD, 0);
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
+            ArgsClassGenerator.box(get, arg);
+            get.visitInsn(Opcodes.ARETURN);
+        }
+        
+        // Array-backed args raised an array index exception, so we do the same
+        get.visitLabel(outOfBounds);
+        get.visitTypeInsn(Opcodes.NEW, ArgsClassGenerator.AAIOOBE);
+        get.visitInsn(Opcodes.DUP);
+        get.visitVarInsn(Opcodes.ILOAD, 1);
+        get.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.AAIOOBE, Constants.CTOR, ArgsClassGenerator.AIOOBE_CTOR_DESC, false);
+        get.visitInsn(Opcodes.ATHROW);
+        
+        get.visitMaxs(3, 2);
+        get.visitEnd();
+    }
+    
     /**
      * Generate the setter methods. These methods implement the abstract
      * {@link Args#set} and {@link Args#setAll} methods. 
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateSetters(ArgsClassInfo info, ClassVisitor writer) {
@@ -359,9 +394,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      * index is not out of bounds, and also ensures that primitive types are not
      * assigned <tt>null</tt> by the consumer code. 
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateIndexedSetter(ArgsClassInfo info, ClassVisitor writer) {
@@ -369,51 +402,23 @@ public final class ArgsClassGenerator implements IClassGenerator {
                 ArgsClassGenerator.SET, ArgsClassGenerator.SET_DESC, null, null));
         set.visitCode();
         
-        Label store = new Label(), checkNull = new Label();
-        Label[] labels = new Label[info.args.length];
-        for (int label = 0; label < labels.length; label++) {
-            labels[label] = new Label();
-        }
-        
-        // Put the values array on the stack to begin with
-        set.visitVarInsn(Opcodes.ALOAD, 0);
-        set.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-
-        // Each argument index will jump to its own label
-        for (byte index = 0; index < info.args.length; index++) {
-            set.visitVarInsn(Opcodes.ILOAD, 1);
-            set.visitConstant(index);
-            set.visitJumpInsn(Opcodes.IF_ICMPEQ, labels[index]);
-        }
-        
-        // No argument was matched, so we throw an out of bounds exception
-        ArgsClassGenerator.throwAIOOBE(set, 1);
+        Label outOfBounds = new Label();
+        Label[] labels = ArgsClassGenerator.tableSwitch(set, info.args.length, outOfBounds);
         
-        // For each arg we do a CHECKCAST to ensure the supplied type is
-        // assignable to the arg type, we leave the index and value on the stack
-        // and jump to the next stage
         for (int index = 0; index < info.args.length; index++) {
-            String boxingType = Bytecode.getBoxingType(info.args[index]);
             set.visitLabel(labels[index]);
-            set.visitVarInsn(Opcodes.ILOAD, 1);
+            set.visitVarInsn(Opcodes.ALOAD, 0);
             set.visitVarInsn(Opcodes.ALOAD, 2);
-            set.visitTypeInsn(Opcodes.CHECKCAST, boxingType != null ? boxingType : info.args[index].getInternalName());
-            set.visitJumpInsn(Opcodes.GOTO, boxingType != null ? checkNull : store);
+            ArgsClassGenerator.checkAndUnbox(set, info.args[index]);
+            set.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, info.args[index].getDescriptor());
+            set.visitInsn(Opcodes.RETURN);
         }
         
-        // For primitive types, we check that the supplied value is not null
-        set.visitLabel(checkNull);
-        set.visitInsn(Opcodes.DUP);
-        set.visitJumpInsn(Opcodes.IFNONNULL, store);
-        
-        // If the arg type is primitive but the user supplied NULL, throw an exception
-        ArgsClassGenerator.throwNPE(set, "Argument with primitive type cannot be set to NULL");
+        // No argument was matched, so we throw an out of bounds exception
+        set.visitLabel(outOfBounds);
+        ArgsClassGenerator.throwAIOOBE(set, 1);
         
-        // Everything above succeeded, so we just assign the value into the array
-        set.visitLabel(store);
-        set.visitInsn(Opcodes.AASTORE);
-        set.visitInsn(Opcodes.RETURN);
-        set.visitMaxs(6, 3);
+        set.visitMaxs(5, 3);
         set.visitEnd();
     }
     
@@ -422,9 +427,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      * performs a <tt>CHECKCAST</tt> on all incoming arguments, and also ensures
      * that primitive types are not assigned <tt>null</tt> by the consumer code.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateMultiSetter(ArgsClassInfo info, ClassVisitor writer) {
@@ -432,8 +435,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
                 ArgsClassGenerator.SETALL, ArgsClassGenerator.SETALL_DESC, null, null));
         set.visitCode();
         
-        Label lengthOk = new Label(), nullPrimitive = new Label();
-        int maxStack = 6;
+        Label lengthOk = new Label();
         
         // Compare the length of the varargs array to the expected argument count
         set.visitVarInsn(Opcodes.ALOAD, 1);
@@ -458,44 +460,187 @@ public final class ArgsClassGenerator implements IClassGenerator {
         set.visitLabel(lengthOk);
         set.visitInsn(Opcodes.POP); // Pop the remaining length value
         
-        // Put the values array on the stack to begin with
-        set.visitVarInsn(Opcodes.ALOAD, 0);
-        set.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-
         for (byte index = 0; index < info.args.length; index++) {
-            // Dup the member array reference and target index
-            set.visitInsn(Opcodes.DUP);
-            set.visitConstant(index);
-            
-            // Read the value from the varargs array
+            // Read the value from the varargs array, check it and assign it
+            set.visitVarInsn(Opcodes.ALOAD, 0);
             set.visitVarInsn(Opcodes.ALOAD, 1);
             set.visitConstant(index);
             set.visitInsn(Opcodes.AALOAD);
-            
-            // Check the argument type
-            String boxingType = Bytecode.getBoxingType(info.args[index]);
-            set.visitTypeInsn(Opcodes.CHECKCAST, boxingType != null ? boxingType : info.args[index].getInternalName());
-            
-            // For primitives, check the value is not null
-            if (boxingType != null) {
-                set.visitInsn(Opcodes.DUP);
-                set.visitJumpInsn(Opcodes.IFNULL, nullPrimitive);
-                maxStack = 7;
-            }
-     
-            // Everything succeeded, assign the value
-            set.visitInsn(Opcodes.AASTORE);
+            ArgsClassGenerator.checkAndUnbox(set, info.args[index]);
+            set.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, info.args[index].getDescriptor());
         }
 
         set.visitInsn(Opcodes.RETURN);
+        set.visitMaxs(6, 2);
+        set.visitEnd();
+    }
+    
+    /**
+     * Generate overrides of the typed accessors in {@link Args} (eg.
+     * {@link Args#getInt} and {@link Args#setInt}) for each primitive type
+     * used by the arguments. The overrides access the typed fields directly
+     * and defer to the superclass (boxing) implementation for indices which
+     * do not hold an argument of the accessor's type, which raises the same
+     * exceptions as the generic accessors would.
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateTypedAccessors(ArgsClassInfo info, ClassVisitor writer) {
+        Map<Integer, Type> types = new TreeMap<Integer, Type>();
+        for (Type arg : info.args) {
+            if (ArgsClassGenerator.getAccessorSuffix(arg) != null) {
+                types.put(arg.getSort(), arg);
+            }
+        }
+        
+        for (Type type : types.values()) {
+            List<Integer> indices = new ArrayList<Integer>();
+            for (int index = 0; index < info.args.length; index++) {
+                if (info.args[index].getSort() == type.getSort()) {
+                    indices.add(index);
+                }
+            }
+            this.generateTypedGetter(info, writer, type, indices);
+            this.generateTypedSetter(info, writer, type, indices);
+        }
+    }
+    
+    private void generateTypedGetter(ArgsClassInfo info, ClassVisitor writer, Type type, List<Integer> indices) {
+        String name = "get" + ArgsClassGenerator.getAccessorSuffix(type);
+        String desc = "(I)" + type.getDescriptor();
+        MethodVisitor get = writer.visitMethod(Opcodes.ACC_PUBLIC, name, desc, null, null);
+        get.visitCode();
+        
+        Label fallback = new Label();
+        Label[] labels = ArgsClassGenerator.lookupSwitch(get, indices, fallback);
+        for (int i = 0; i < labels.length; i++) {
+            get.visitLabel(labels[i]);
+            get.visitVarInsn(Opcodes.ALOAD, 0);
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + indices.get(i), type.getDescriptor());
+            get.visitInsn(type.getOpcode(Opcodes.IRETURN));
+        }
+        
+        get.visitLabel(fallback);
+        get.visitVarInsn(Opcodes.ALOAD, 0);
+        get.visitVarInsn(Opcodes.ILOAD, 1);
+        get.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, name, desc, false);
+        get.visitInsn(type.getOpcode(Opcodes.IRETURN));
+        
+        get.visitMaxs(2, 2);
+        get.visitEnd();
+    }
+    
+    private void generateTypedSetter(ArgsClassInfo info, ClassVisitor writer, Type type, List<Integer> indices) {
+        String name = "set" + ArgsClassGenerator.getAccessorSuffix(type);
+        String desc = "(I" + type.getDescriptor() + ")V";
+        MethodVisitor set = writer.visitMethod(Opcodes.ACC_PUBLIC, name, desc, null, null);
+        set.visitCode();
         
-        set.visitLabel(nullPrimitive);
-        ArgsClassGenerator.throwNPE(set, "Argument with primitive type cannot be set to NULL");
+        Label fallback = new Label();
+        Label[] labels = ArgsClassGenerator.lookupSwitch(set, indices, fallback);
+        for (int i = 0; i < labels.length; i++) {
+            set.visitLabel(labels[i]);
+            set.visitVarInsn(Opcodes.ALOAD, 0);
+            set.visitVarInsn(type.getOpcode(Opcodes.ILOAD), 2);
+            set.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + indices.get(i), type.getDescriptor());
+            set.visitInsn(Opcodes.RETURN);
+        }
+        
+        set.visitLabel(fallback);
+        set.visitVarInsn(Opcodes.ALOAD, 0);
+        set.visitVarInsn(Opcodes.ILOAD, 1);
+        set.visitVarInsn(type.getOpcode(Opcodes.ILOAD), 2);
+        set.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, name, desc, false);
         set.visitInsn(Opcodes.RETURN);
         
-        set.visitMaxs(maxStack, 2);
+        set.visitMaxs(2 + type.getSize(), 2 + type.getSize());
         set.visitEnd();
     }
+    
+    /**
+     * Add a <tt>TABLESWITCH</tt> on the int in local 1 with one case for each
+     * argument index
+     * 
+     * @return case labels, one for each argument
+     */
+    private static Label[] tableSwitch(MethodVisitor method, int count, Label dflt) {
+        Label[] labels = new Label[count];
+        for (int label = 0; label < labels.length; label++) {
+            labels[label] = new Label();
+        }
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        if (count > 0) {
+            method.visitTableSwitchInsn(0, count - 1, dflt, labels);
+        } else {
+            method.visitInsn(Opcodes.POP);
+            method.visitJumpInsn(Opcodes.GOTO, dflt);
+        }
+        return labels;
+    }
+    
+    /**
+     * Add a <tt>LOOKUPSWITCH</tt> on the int in local 1 with one case for each
+     * supplied argument index
+     * 
+     * @return case labels, one for each index
+     */
+    private static Label[] lookupSwitch(MethodVisitor method, List<Integer> indices, Label dflt) {
+        int[] keys = new int[indices.size()];
+        Label[] labels = new Label[indices.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = indices.get(i).intValue();
+            labels[i] = new Label();
+        }
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        method.visitLookupSwitchInsn(dflt, keys, labels);
+        return labels;
+    }
+    
+    /**
+     * Get the suffix of the typed accessors in {@link Args} for the specified
+     * type, eg. <tt>Int</tt> for <tt>getInt</tt> and <tt>setInt</tt>
+     * 
+     * @param type argument type
+     * @return accessor suffix, or null for reference types
+     */
+    private static String getAccessorSuffix(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN: return "Boolean";
+            case Type.BYTE:    return "Byte";
+            case Type.CHAR:    return "Char";
+            case Type.SHORT:   return "Short";
+            case Type.INT:     return "Int";
+            case Type.LONG:    return "Long";
+            case Type.FLOAT:   return "Float";
+            case Type.DOUBLE:  return "Double";
+            default:           return null;
+        }
+    }
+    
+    /**
+     * Add insns to <tt>CHECKCAST</tt> the value on the top of the stack to the
+     * argument type. For primitive types the value is checked for <tt>null
+     * </tt> and then unboxed.
+     */
+    private static void checkAndUnbox(MethodVisitorEx method, Type arg) {
+        String boxingType = Bytecode.getBoxingType(arg);
+        if (boxingType == null) {
+            method.visitTypeInsn(Opcodes.CHECKCAST, arg.getInternalName());
+            return;
+        }
+        
+        Label notNull = new Label();
+        method.visitTypeInsn(Opcodes.CHECKCAST, boxingType);
+        method.visitInsn(Opcodes.DUP);
+        method.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+        
+        // If the arg type is primitive but the user supplied NULL, throw an exception
+        ArgsClassGenerator.throwNPE(method, "Argument with primitive type cannot be set to NULL");
+        
+        method.visitLabel(notNull);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxingType, Bytecode.getUnboxingMethod(arg), "()" + arg.getDescriptor(), false);
+    }
 
     /**
      * Add insns to throw a null pointer exception with the specified message
@@ -535,22 +680,4 @@ public final class ArgsClassGenerator implements IClassGenerator {
         }
     }
     
-    /**
-     * Unbox (if necessary, otherwise just <tt>CHECKCAST</tt>) the supplied type
-     * 
-     * @param method method visitor
-     * @param var type to unbox
-     */
-    private static void unbox(MethodVisitor method, Type var) {
-        String boxingType = Bytecode.getBoxingType(var);
-        if (boxingType != null) {
-            String unboxingMethod = Bytecode.getUnboxingMethod(var);
-            String desc = "()" + var.getDescriptor();
-            method.visitTypeInsn(Opcodes.CHECKCAST, boxingType);
-            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, boxingType, unboxingMethod, desc, false);
-        } else {
-            method.visitTypeInsn(Opcodes.CHECKCAST, var.getInternalName());
-        }
-    }
-    
 }
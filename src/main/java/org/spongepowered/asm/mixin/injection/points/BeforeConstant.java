@@ -27,8 +27,8 @@ package org.spongepowered.asm.mixin.injection.points;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Set;
 
@@ -46,6 +46,7 @@ import org.spongepowered.asm.mixin.injection.Constant.Condition;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.mixin.injection.throwables.InvalidInjectionException;
 import org.spongepowered.asm.mixin.refmap.IMixinContext;
 import org.spongepowered.asm.service.MixinService;
@@ -228,7 +229,10 @@ public class BeforeConstant extends InjectionPoint {
 
         this.log("BeforeConstant is searching for constants in method with descriptor {}", desc);
         
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        // Expanded conditions need to see the preceding opcode so can only be
+        // matched by walking the whole list
+        InsnIndex index = this.expand ? null : InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index != null ? index.getConstants(insns) : insns.iterator();
         for (int ordinal = 0, last = 0; iter.hasNext();) {
             AbstractInsnNode insn = iter.next();
 
@@ -37,6 +37,7 @@ import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
 import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.util.Bytecode;
 
 /**
@@ -152,6 +153,20 @@ public class BeforeFieldAccess extends BeforeInvoke {
         return this.arrOpcode;
     }
 
+    @Override
+    protected Iterator<AbstractInsnNode> getCandidates(InsnList insns, ITargetSelector target) {
+        InsnIndex index = this.isIndexable() ? InsnIndex.of(insns) : null;
+        if (index == null) {
+            return insns.iterator();
+        }
+        return index.getFieldInsns(insns, BeforeInvoke.getSelectedName(target));
+    }
+
+    @Override
+    protected boolean isIndexable() {
+        return this.getClass() == BeforeFieldAccess.class;
+    }
+
     @Override
     protected boolean matchesInsn(AbstractInsnNode insn) {
         if (insn instanceof FieldInsnNode && (((FieldInsnNode) insn).getOpcode() == this.opcode || this.opcode == -1)) {
@@ -25,7 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
 import java.util.Locale;
 
 import org.spongepowered.asm.logging.ILogger;
@@ -43,6 +43,7 @@ import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorByName;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector.Configure;
 import org.spongepowered.asm.mixin.injection.selectors.throwables.SelectorConstraintException;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
 import org.spongepowered.asm.mixin.refmap.IMixinContext;
 import org.spongepowered.asm.service.MixinService;
@@ -189,13 +190,14 @@ public class BeforeInvoke extends InjectionPoint {
         
         int ordinal = 0, found = 0, matchCount = 0;
         
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        Iterator<AbstractInsnNode> iter = this.getCandidates(insns, target);
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
             if (this.matchesInsn(insn)) {
-                MemberInfo nodeInfo = new MemberInfo(insn);
-                this.log("{}->{} is considering {}", this.context, this.className, nodeInfo);
+                if (this.log) {
+                    this.log("{}->{} is considering {}", this.context, this.className, new MemberInfo(insn));
+                }
 
                 if (target.match(ElementNode.<AbstractInsnNode>of(insn)).isExactMatch()) {
                     this.log("{}->{} > found a matching insn, checking preconditions...", this.context, this.className);
@@ -231,6 +233,50 @@ public class BeforeInvoke extends InjectionPoint {
         return found > 0;
     }
 
+    /**
+     * Get the instructions to consider when searching. When the instruction
+     * list is a view of an indexed target and this injection point {@link
+     * #isIndexable is indexable} this returns only the invocations, narrowed to
+     * the invocations of the selected method name where the selector has one,
+     * otherwise all instructions are returned.
+     * 
+     * @param insns instructions being searched
+     * @param target configured selector
+     * @return candidate instructions in list order
+     */
+    protected Iterator<AbstractInsnNode> getCandidates(InsnList insns, ITargetSelector target) {
+        InsnIndex index = this.isIndexable() ? InsnIndex.of(insns) : null;
+        if (index == null) {
+            return insns.iterator();
+        }
+        return index.getMethodInsns(insns, BeforeInvoke.getSelectedName(target));
+    }
+    
+    /**
+     * Get whether the search can be narrowed to the indexed instructions
+     * returned by {@link #getCandidates}. Only the built-in injection points
+     * are known to consider nothing but those instructions, subclasses which
+     * override {@link #matchesInsn} or {@link #inspectInsn} are passed every
+     * instruction unless they opt in by overriding this method.
+     * 
+     * @return true if the candidates can be taken from the index
+     */
+    protected boolean isIndexable() {
+        Class<?> type = this.getClass();
+        return type == BeforeInvoke.class || type == AfterInvoke.class;
+    }
+    
+    /**
+     * Get the exact member name the supplied selector matches, if it only
+     * matches a single name
+     * 
+     * @param target selector
+     * @return selected name or null if the selector may match any name
+     */
+    protected static String getSelectedName(ITargetSelector target) {
+        return target instanceof MemberInfo ? ((MemberInfo)target).getName() : null;
+    }
+
     protected boolean addInsn(InsnList insns, Collection<AbstractInsnNode> nodes, AbstractInsnNode insn) {
         nodes.add(insn);
         return true;
@@ -27,7 +27,6 @@ package org.spongepowered.asm.mixin.injection.points;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.ListIterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -40,6 +39,7 @@ import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorConstructor;
 import org.spongepowered.asm.mixin.injection.selectors.TargetSelector;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
+import org.spongepowered.asm.mixin.injection.struct.InsnIndex;
 import org.spongepowered.asm.mixin.injection.throwables.InvalidInjectionPointException;
 import org.spongepowered.asm.util.Constants;
 
@@ -136,7 +136,8 @@ public class BeforeNew extends InjectionPoint {
 
         Collection<TypeInsnNode> newNodes = new ArrayList<TypeInsnNode>();
         Collection<AbstractInsnNode> candidates = (Collection<AbstractInsnNode>) (this.desc != null ? newNodes : nodes);
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        InsnIndex index = InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index != null ? index.getNewInsns(insns, this.target) : insns.iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
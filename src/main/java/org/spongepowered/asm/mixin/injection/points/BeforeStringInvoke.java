@@ -25,6 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.InsnList;
@@ -117,6 +118,12 @@ public class BeforeStringInvoke extends BeforeInvoke {
         return super.find(desc, insns, nodes);
     }
 
+    @Override
+    protected Iterator<AbstractInsnNode> getCandidates(InsnList insns, ITargetSelector target) {
+        // Every instruction must be inspected in order to locate the LDC
+        return insns.iterator();
+    }
+
     @Override
     protected void inspectInsn(String desc, InsnList insns, AbstractInsnNode insn) {
         if (insn instanceof LdcInsnNode) {
@@ -78,6 +78,8 @@ import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.asm.MethodNodeEx;
 import org.spongepowered.asm.util.logging.MessageRouter;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents.Event;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
@@ -442,7 +444,10 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
      */
     public void inject() {
         for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
-            this.injector.inject(entry.getKey(), entry.getValue());
+            Target target = entry.getKey();
+            Event event = FlightRecorderEvents.INJECT.begin().set(0, this.annotationType).set(1, target).set(2, entry.getValue().size());
+            this.injector.inject(target, entry.getValue());
+            event.commit();
         }
         this.targets.clear();
     }
@@ -26,6 +26,7 @@ package org.spongepowered.asm.mixin.injection.struct;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -80,6 +81,12 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
          */
         private Map<String, Object> decorations;
         
+        /**
+         * Collection which is tracking this node, notified when the current
+         * target changes so that its index can be updated
+         */
+        private InjectionNodes owner;
+        
         /**
          * Create a new node wrapper for the specified target node
          * 
@@ -118,7 +125,11 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
          * @param target new node
          */
         public InjectionNode replace(AbstractInsnNode target) {
+            AbstractInsnNode previous = this.currentTarget;
             this.currentTarget = target;
+            if (this.owner != null) {
+                this.owner.retarget(this, previous);
+            }
             return this;
         }
         
@@ -126,8 +137,7 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
          * Remove the node
          */
         public InjectionNode remove() {
-            this.currentTarget = null;
-            return this;
+            return this.replace(null);
         }
         
         /**
@@ -211,6 +221,26 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
         
     }
 
+    /**
+     * Tracked nodes keyed by their original and current targets (by identity).
+     * Each instruction maps to the first tracked node which matches it
+     */
+    private transient Map<AbstractInsnNode, InjectionNode> index;
+    
+    /**
+     * Number of tracked nodes reflected in the {@link #index}, if this differs
+     * from the collection size (eg. because nodes were added via the list
+     * interface) then the index is rebuilt
+     */
+    private transient int indexedSize = -1;
+    
+    /**
+     * True if more than one tracked node matches the same instruction, in
+     * which case lookups fall back to a linear search so that the first
+     * matching node is always returned
+     */
+    private transient boolean ambiguous;
+
     /**
      * Add a tracked node to this collection if it does not already exist
      * 
@@ -221,7 +251,12 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
         InjectionNode injectionNode = this.get(node);
         if (injectionNode == null) {
             injectionNode = new InjectionNode(node);
+            injectionNode.owner = this;
             this.add(injectionNode);
+            if (this.indexedSize == this.size() - 1) {
+                this.put(node, injectionNode);
+                this.indexedSize++;
+            }
         }
         return injectionNode;
     }
@@ -234,6 +269,11 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
      * @return wrapper node or null if not tracked
      */
     public InjectionNode get(AbstractInsnNode node) {
+        this.validate();
+        if (!this.ambiguous) {
+            return this.index.get(node);
+        }
+        
         for (InjectionNode injectionNode : this) {
             if (injectionNode.matches(node)) {
                 return injectionNode;
@@ -279,4 +319,55 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
         }        
     }
     
+    /**
+     * Callback from a tracked node when its current target changes
+     * 
+     * @param injectionNode node which was retargetted
+     * @param previous previous current target of the node
+     */
+    void retarget(InjectionNode injectionNode, AbstractInsnNode previous) {
+        if (this.index == null || this.indexedSize != this.size() || this.ambiguous) {
+            // Let the next lookup rebuild the index from scratch
+            this.indexedSize = -1;
+            return;
+        }
+        
+        if (previous != null && previous != injectionNode.getOriginalTarget() && this.index.get(previous) == injectionNode) {
+            this.index.remove(previous);
+        }
+        
+        AbstractInsnNode current = injectionNode.getCurrentTarget();
+        if (current != null) {
+            this.put(current, injectionNode);
+        }
+    }
+    
+    private void validate() {
+        if (this.index != null && this.indexedSize == this.size()) {
+            return;
+        }
+        
+        if (this.index == null) {
+            this.index = new IdentityHashMap<AbstractInsnNode, InjectionNode>();
+        }
+        this.index.clear();
+        this.ambiguous = false;
+        for (InjectionNode injectionNode : this) {
+            this.put(injectionNode.getOriginalTarget(), injectionNode);
+            if (injectionNode.getCurrentTarget() != null) {
+                this.put(injectionNode.getCurrentTarget(), injectionNode);
+            }
+        }
+        this.indexedSize = this.size();
+    }
+    
+    private void put(AbstractInsnNode node, InjectionNode injectionNode) {
+        InjectionNode existing = this.index.get(node);
+        if (existing == null) {
+            this.index.put(node, injectionNode);
+        } else if (existing != injectionNode) {
+            this.ambiguous = true;
+        }
+    }
+    
 }
@@ -0,0 +1,233 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.struct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.spongepowered.asm.mixin.injection.code.InsnListReadOnly;
+import org.spongepowered.asm.util.Bytecode;
+
+/**
+ * Index of the instructions in a {@link Target} method, bucketed by kind and
+ * by member name or type so that injection points which are only interested
+ * in (for example) invocations of a particular method do not need to walk the
+ * entire instruction list. The index is built lazily and rebuilt whenever the
+ * target is modified, either via the {@link Target} or directly (detected via
+ * a change in the size of the instruction list).
+ * 
+ * <p>Buckets are always in instruction list order, so ordinals calculated by
+ * walking a bucket are identical to ordinals calculated by walking the list.
+ * </p>
+ */
+public final class InsnIndex {
+    
+    /**
+     * Target which owns this index
+     */
+    private final Target target;
+    
+    /**
+     * Method invocations, all and by method name
+     */
+    private final Bucket methodInsns = new Bucket();
+    
+    /**
+     * Field accesses, all and by field name
+     */
+    private final Bucket fieldInsns = new Bucket();
+    
+    /**
+     * <tt>NEW</tt> instructions, all and by type
+     */
+    private final Bucket newInsns = new Bucket();
+    
+    /**
+     * Constant instructions (see {@link Bytecode#isConstant})
+     */
+    private final List<AbstractInsnNode> constants = new ArrayList<AbstractInsnNode>();
+    
+    /**
+     * Target state when the index was built, -1 if not built yet
+     */
+    private int modCount = -1, size = -1;
+
+    InsnIndex(Target target) {
+        this.target = target;
+    }
+    
+    /**
+     * Get the index for the supplied instruction list if it has one. Returns
+     * null if the list is not an indexed view of a target method.
+     * 
+     * @param insns instruction list passed to an injection point
+     * @return index or null
+     */
+    public static InsnIndex of(InsnList insns) {
+        return insns instanceof InsnListReadOnly ? ((InsnListReadOnly)insns).getIndex() : null;
+    }
+    
+    /**
+     * Get method invocations in the supplied view, optionally only those with
+     * the specified name
+     * 
+     * @param insns instruction list view (slice) to restrict results to
+     * @param name method name to match, or null to return all invocations
+     * @return matching instructions in list order
+     */
+    public Iterator<AbstractInsnNode> getMethodInsns(InsnList insns, String name) {
+        this.validate();
+        return InsnIndex.select(insns, this.methodInsns.get(name));
+    }
+    
+    /**
+     * Get field accesses in the supplied view, optionally only those with the
+     * specified name
+     * 
+     * @param insns instruction list view (slice) to restrict results to
+     * @param name field name to match, or null to return all field accesses
+     * @return matching instructions in list order
+     */
+    public Iterator<AbstractInsnNode> getFieldInsns(InsnList insns, String name) {
+        this.validate();
+        return InsnIndex.select(insns, this.fieldInsns.get(name));
+    }
+    
+    /**
+     * Get <tt>NEW</tt> instructions in the supplied view, optionally only those
+     * for the specified type
+     * 
+     * @param insns instruction list view (slice) to restrict results to
+     * @param type internal name of the type to match, or null to return all
+     *      <tt>NEW</tt> instructions
+     * @return matching instructions in list order
+     */
+    public Iterator<AbstractInsnNode> getNewInsns(InsnList insns, String type) {
+        this.validate();
+        return InsnIndex.select(insns, this.newInsns.get(type));
+    }
+    
+    /**
+     * Get constant instructions in the supplied view
+     * 
+     * @param insns instruction list view (slice) to restrict results to
+     * @return matching instructions in list order
+     */
+    public Iterator<AbstractInsnNode> getConstants(InsnList insns) {
+        this.validate();
+        return InsnIndex.select(insns, this.constants);
+    }
+    
+    private void validate() {
+        if (this.modCount == this.target.getModCount() && this.size == this.target.insns.size()) {
+            return;
+        }
+        
+        this.methodInsns.clear();
+        this.fieldInsns.clear();
+        this.newInsns.clear();
+        this.constants.clear();
+        
+        for (Iterator<AbstractInsnNode> iter = this.target.insns.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (insn instanceof MethodInsnNode) {
+                this.methodInsns.add(((MethodInsnNode)insn).name, insn);
+            } else if (insn instanceof FieldInsnNode) {
+                this.fieldInsns.add(((FieldInsnNode)insn).name, insn);
+            } else if (insn instanceof TypeInsnNode && insn.getOpcode() == Opcodes.NEW) {
+                this.newInsns.add(((TypeInsnNode)insn).desc, insn);
+            } else if (Bytecode.isConstant(insn)) {
+                this.constants.add(insn);
+            }
+        }
+        
+        this.modCount = this.target.getModCount();
+        this.size = this.target.insns.size();
+    }
+    
+    /**
+     * Filter the candidates to those which are present in the supplied view,
+     * this restricts results to the current slice and also discards any nodes
+     * which have been removed from the method since the index was built
+     */
+    private static Iterator<AbstractInsnNode> select(InsnList insns, List<AbstractInsnNode> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates.iterator();
+        }
+        List<AbstractInsnNode> selected = new ArrayList<AbstractInsnNode>(candidates.size());
+        for (AbstractInsnNode insn : candidates) {
+            if (insns.indexOf(insn) > -1) {
+                selected.add(insn);
+            }
+        }
+        return selected.iterator();
+    }
+    
+    /**
+     * Bucket of instructions, all instructions in list order and also grouped
+     * by key
+     */
+    static final class Bucket {
+        
+        private final List<AbstractInsnNode> all = new ArrayList<AbstractInsnNode>();
+        
+        private final Map<String, List<AbstractInsnNode>> byKey = new HashMap<String, List<AbstractInsnNode>>();
+        
+        void add(String key, AbstractInsnNode insn) {
+            this.all.add(insn);
+            List<AbstractInsnNode> keyed = this.byKey.get(key);
+            if (keyed == null) {
+                keyed = new ArrayList<AbstractInsnNode>(2);
+                this.byKey.put(key, keyed);
+            }
+            keyed.add(insn);
+        }
+        
+        List<AbstractInsnNode> get(String key) {
+            if (key == null) {
+                return this.all;
+            }
+            List<AbstractInsnNode> keyed = this.byKey.get(key);
+            return keyed != null ? keyed : Collections.<AbstractInsnNode>emptyList();
+        }
+        
+        void clear() {
+            this.all.clear();
+            this.byKey.clear();
+        }
+        
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.struct;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * Maintains a stable, sparse ordinal for each instruction in a {@link Target}
+ * method so that the relative position of two instructions can be compared
+ * without recomputing the index of every instruction in the list. The
+ * {@link InsnList} index cache is discarded whenever an instruction is
+ * inserted, so when many injectors each insert code and then compare
+ * positions the cost becomes quadratic in the size of the method.
+ * 
+ * <p>Ordinals are assigned with large gaps between them, instructions
+ * inserted after the ordinals were computed are assigned ordinals lazily by
+ * subdividing the gap between their nearest numbered neighbours. Ordinals are
+ * recomputed from scratch if a gap is exhausted or if the list changes size
+ * without the owning target being notified.</p>
+ */
+final class InsnOrdinals {
+    
+    /**
+     * Gap between ordinals when they are (re)computed, allows for 32 halvings
+     * before the list needs to be renumbered
+     */
+    private static final long SPACING = 1L << 32;
+
+    /**
+     * Instructions being tracked
+     */
+    private final InsnList insns;
+    
+    /**
+     * Ordinals by instruction
+     */
+    private final Map<AbstractInsnNode, Long> ordinals = new IdentityHashMap<AbstractInsnNode, Long>();
+    
+    /**
+     * Size of the instruction list when last synchronised, -1 if the ordinals
+     * have not been computed
+     */
+    private int size = -1;
+    
+    InsnOrdinals(InsnList insns) {
+        this.insns = insns;
+    }
+    
+    /**
+     * Notify the ordinals that the list was modified by the owner, any new
+     * instructions will be numbered on demand
+     */
+    void sync() {
+        if (this.size > -1) {
+            this.size = this.insns.size();
+        }
+    }
+    
+    /**
+     * Notify the ordinals that an instruction was removed by the owner
+     * 
+     * @param insn removed instruction
+     */
+    void remove(AbstractInsnNode insn) {
+        this.ordinals.remove(insn);
+    }
+    
+    /**
+     * Get the ordinal of the specified instruction. Ordinals increase in list
+     * order but are not contiguous.
+     * 
+     * @param insn instruction to get ordinal for
+     * @return ordinal, or -1 if the instruction is not in the list
+     */
+    long get(AbstractInsnNode insn) {
+        if (this.size != this.insns.size()) {
+            this.rebuild();
+        }
+        Long ordinal = this.ordinals.get(insn);
+        return ordinal != null ? ordinal.longValue() : this.fill(insn);
+    }
+    
+    /**
+     * Assign ordinals to the run of unnumbered instructions containing the
+     * specified instruction
+     */
+    private long fill(AbstractInsnNode insn) {
+        if (insn.getPrevious() == null && insn.getNext() == null && this.insns.getFirst() != insn) {
+            return -1L;
+        }
+        
+        int count = 1;
+        AbstractInsnNode first = insn, last = insn;
+        while (first.getPrevious() != null && !this.ordinals.containsKey(first.getPrevious())) {
+            first = first.getPrevious();
+            count++;
+        }
+        while (last.getNext() != null && !this.ordinals.containsKey(last.getNext())) {
+            last = last.getNext();
+            count++;
+        }
+        
+        long lower = first.getPrevious() != null ? this.ordinals.get(first.getPrevious()).longValue() : 0L;
+        long upper = last.getNext() != null ? this.ordinals.get(last.getNext()).longValue() : lower + (count + 1) * InsnOrdinals.SPACING;
+        long step = (upper - lower) / (count + 1);
+        if (step < 1) {
+            this.rebuild();
+            return this.ordinals.get(insn).longValue();
+        }
+        
+        long ordinal = lower;
+        for (AbstractInsnNode node = first;; node = node.getNext()) {
+            ordinal += step;
+            this.ordinals.put(node, Long.valueOf(ordinal));
+            if (node == last) {
+                break;
+            }
+        }
+        return this.ordinals.get(insn).longValue();
+    }
+    
+    private void rebuild() {
+        this.ordinals.clear();
+        long ordinal = 0L;
+        for (Iterator<AbstractInsnNode> iter = this.insns.iterator(); iter.hasNext();) {
+            ordinal += InsnOrdinals.SPACING;
+            this.ordinals.put(iter.next(), Long.valueOf(ordinal));
+        }
+        this.size = this.insns.size();
+    }
+    
+}
@@ -38,12 +38,15 @@ import org.objectweb.asm.tree.LocalVariableNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
+import org.spongepowered.asm.mixin.FabricUtil;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
 import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.Bytecode.DelegateInitialiser;
+import org.spongepowered.asm.util.CompareUtil;
 import org.spongepowered.asm.util.Constants;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.Locals.SyntheticLocalVariableNode;
 
 /**
@@ -236,6 +239,35 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      * Cached delegate initialiser call
      */
     private DelegateInitialiser delegateInitialiser;
+    
+    /**
+     * Number of modifications made to the method via this target, used to
+     * detect when the locals timeline is stale
+     */
+    private int modCount;
+    
+    /**
+     * Locals at each instruction in the method, computed on demand and
+     * discarded when the method is modified
+     */
+    private Locals.Timeline localsTimeline;
+    
+    /**
+     * State of the method when {@link #localsTimeline} was computed, in
+     * addition to {@link #modCount} the instruction count, max locals and LVT
+     * size are checked to catch changes made directly to the method
+     */
+    private int timelineModCount, timelineSize, timelineMaxLocals, timelineLvtSize;
+
+    /**
+     * Instruction index for injection point searches, created on demand
+     */
+    private InsnIndex insnIndex;
+
+    /**
+     * Stable instruction ordering, created on demand
+     */
+    private InsnOrdinals ordinals;
 
     /**
      * Make a new Target for the supplied method
@@ -577,6 +609,24 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         return this.toString().compareTo(o.toString());
     }
     
+    /**
+     * Get the instruction index for this target, the index keeps itself up to
+     * date as the target is modified
+     */
+    public InsnIndex getInsnIndex() {
+        if (this.insnIndex == null) {
+            this.insnIndex = new InsnIndex(this);
+        }
+        return this.insnIndex;
+    }
+    
+    /**
+     * Get the number of modifications made to the method via this target
+     */
+    int getModCount() {
+        return this.modCount;
+    }
+    
     /**
      * Return the index of the specified instruction in this instruction list
      * 
@@ -597,6 +647,29 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         return this.insns.indexOf(insn);
     }
     
+    /**
+     * Compare the positions of two instructions in this target. This is
+     * equivalent to comparing the results of {@link #indexOf} for each node
+     * but does not require the position of every instruction to be recomputed
+     * each time the method is modified, which makes it suitable for use while
+     * injecting.
+     * 
+     * @param a first instruction
+     * @param b second instruction
+     * @return negative value if <tt>a</tt> is before <tt>b</tt>, positive if
+     *      <tt>a</tt> is after <tt>b</tt> and zero if they are the same
+     *      instruction. Instructions not in the target sort before all others
+     */
+    public int compareInsns(AbstractInsnNode a, AbstractInsnNode b) {
+        if (a == b) {
+            return 0;
+        }
+        if (this.ordinals == null) {
+            this.ordinals = new InsnOrdinals(this.insns);
+        }
+        return CompareUtil.compare(this.ordinals.get(a), this.ordinals.get(b));
+    }
+    
     /**
      * Return the instruction at the specified index
      * 
@@ -623,9 +696,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      * @return INVOKESPECIAL opcode of ctor, or null if not found
      */
     public MethodInsnNode findInitNodeFor(TypeInsnNode newNode) {
-        int start = this.indexOf(newNode);
-        for (Iterator<AbstractInsnNode> iter = this.insns.iterator(start); iter.hasNext();) {
-            AbstractInsnNode insn = iter.next();
+        for (AbstractInsnNode insn = newNode; insn != null; insn = insn.getNext()) {
             if (insn instanceof MethodInsnNode && insn.getOpcode() == Opcodes.INVOKESPECIAL) {
                 MethodInsnNode methodNode = (MethodInsnNode)insn;
                 if (Constants.CTOR.equals(methodNode.name) && methodNode.owner.equals(newNode.desc)) {
@@ -658,6 +729,36 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         return this.delegateInitialiser;
     }
     
+    /**
+     * Get the locals available at the specified instruction, see {@link
+     * Locals#getLocalsAt(ClassNode, MethodNode, AbstractInsnNode, int)}. For
+     * current compatibility levels the locals for every instruction in the
+     * target are computed in a single pass the first time this method is
+     * called, and recomputed only after the target is modified.
+     * 
+     * @param node Node indicating the position at which to determine the
+     *      locals state
+     * @param fabricCompatibility Fabric compatibility level
+     * @return A sparse array containing a view of the locals at the specified
+     *      location
+     */
+    public LocalVariableNode[] getLocalsAt(AbstractInsnNode node, int fabricCompatibility) {
+        if (fabricCompatibility < FabricUtil.COMPATIBILITY_0_10_0) {
+            return Locals.getLocalsAt(this.classNode, this.method, node, fabricCompatibility);
+        }
+        
+        int lvtSize = this.method.localVariables != null ? this.method.localVariables.size() : 0;
+        if (this.localsTimeline == null || this.timelineModCount != this.modCount || this.timelineSize != this.insns.size()
+                || this.timelineMaxLocals != this.method.maxLocals || this.timelineLvtSize != lvtSize) {
+            this.localsTimeline = Locals.getTimeline(this.classNode, this.method, Locals.Settings.DEFAULT);
+            this.timelineModCount = this.modCount;
+            this.timelineSize = this.insns.size();
+            this.timelineMaxLocals = this.method.maxLocals;
+            this.timelineLvtSize = lvtSize;
+        }
+        return this.localsTimeline.getLocalsAt(node);
+    }
+    
     /**
      * Insert the supplied instructions before the specified instruction 
      * 
@@ -666,6 +767,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(InjectionNode location, final InsnList insns) {
         this.insns.insertBefore(location.getCurrentTarget(), insns);
+        this.markModified();
     }
     
     /**
@@ -676,6 +778,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void insertBefore(AbstractInsnNode location, final InsnList insns) {
         this.insns.insertBefore(location, insns);
+        this.markModified();
     }
     
     /**
@@ -688,7 +791,9 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode insn) {
         this.insns.insertBefore(location, insn);
         this.insns.remove(location);
+        this.forgetNode(location);
         this.injectionNodes.replace(location, insn);
+        this.markModified();
     }
     
     /**
@@ -702,7 +807,9 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode champion, InsnList insns) {
         this.insns.insertBefore(location, insns);
         this.insns.remove(location);
+        this.forgetNode(location);
         this.injectionNodes.replace(location, champion);
+        this.markModified();
     }
     
     /**
@@ -718,6 +825,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         this.insns.insertBefore(location, before);
         this.insns.insert(location, after);
         this.injectionNodes.replace(location, champion);
+        this.markModified();
     }
 
     /**
@@ -740,7 +848,22 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void removeNode(AbstractInsnNode insn) {
         this.insns.remove(insn);
+        this.forgetNode(insn);
         this.injectionNodes.remove(insn);
+        this.markModified();
+    }
+
+    private void markModified() {
+        this.modCount++;
+        if (this.ordinals != null) {
+            this.ordinals.sync();
+        }
+    }
+    
+    private void forgetNode(AbstractInsnNode insn) {
+        if (this.ordinals != null) {
+            this.ordinals.remove(insn);
+        }
     }
 
     /**
@@ -784,6 +907,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         }
         
         this.method.localVariables.add(new SyntheticLocalVariableNode(name, desc, null, from, to, index));
+        this.markModified();
     }
 
     /**
@@ -28,8 +28,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.tools.Diagnostic.Kind;
 
@@ -55,6 +59,29 @@ import com.google.gson.JsonParseException;
  */
 public final class ReferenceMapper implements IReferenceMapper, Serializable {
     
+    /**
+     * Index of the references in one context for lookups which do not specify
+     * a class name
+     */
+    static final class ContextIndex {
+        
+        /**
+         * Reference to mapping
+         */
+        final Map<String, String> mappings = new HashMap<String, String>();
+        
+        /**
+         * References which have different mappings in more than one class
+         */
+        final Set<String> ambiguous = new HashSet<String>();
+        
+        /**
+         * Ambiguous references which have already been warned about
+         */
+        final Set<String> warned = Collections.synchronizedSet(new HashSet<String>());
+        
+    }
+    
     private static final long serialVersionUID = 2L;
 
     /**
@@ -80,6 +107,14 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      */
     private final Map<String, Map<String, Map<String, String>>> data = Maps.newHashMap();
     
+    /**
+     * Flattened reference to mapping index for lookups which do not specify a
+     * class name, keyed by context. The default mappings are stored under the
+     * <tt>null</tt> context. Built when the refmap is loaded and discarded
+     * when mappings are added.
+     */
+    private transient volatile Map<String, ContextIndex> index;
+    
     /**
      * True if this refmap cannot be written. Only true for the
      * {@link #DEFAULT_MAPPER}
@@ -182,8 +217,23 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             mappings = this.data.get(context);
             if (mappings == null) {
                 mappings = this.mappings;
+                context = null;
             }
         }
+        
+        if (className == null) {
+            ContextIndex contextIndex = this.getIndex().get(context);
+            if (contextIndex != null && contextIndex.mappings.containsKey(reference)) {
+                String remapped = contextIndex.mappings.get(reference);
+                if (contextIndex.ambiguous.contains(reference) && contextIndex.warned.add(reference)) {
+                    MessageRouter.getMessager().printMessage(Kind.WARNING, String.format(
+                            "Ambiguous reference %s in refmap %s%s has more than one mapping, unqualified lookup will use %s",
+                            reference, this.resource, context != null ? " context " + context : "", remapped));
+                }
+                return remapped;
+            }
+        }
+        
         return this.remap(mappings, className, reference);
     }
     
@@ -191,14 +241,6 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      * Remap the things
      */
     private String remap(Map<String, Map<String, String>> mappings, String className, String reference) {
-        if (className == null) {
-            for (Map<String, String> mapping : mappings.values()) {
-                if (mapping.containsKey(reference)) {
-                    return mapping.get(reference);
-                }
-            }
-        }
-        
         Map<String, String> classMappings = mappings.get(className);
         if (classMappings == null) {
             return reference;
@@ -234,9 +276,53 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             classMappings = new HashMap<String, String>();
             mappings.put(className, classMappings);
         }
+        this.index = null;
         return classMappings.put(conformedReference, newReference);
     }
     
+    private Map<String, ContextIndex> getIndex() {
+        Map<String, ContextIndex> index = this.index;
+        return index != null ? index : this.buildIndex();
+    }
+    
+    /**
+     * Build the index used for lookups without a class name. Where a reference
+     * appears in more than one class the first mapping encountered is used,
+     * matching the behaviour of a search of each class in turn. If the
+     * mappings differ the reference is recorded as ambiguous, and a warning is
+     * raised the first time an unqualified lookup uses it.
+     */
+    private synchronized Map<String, ContextIndex> buildIndex() {
+        if (this.index != null) {
+            return this.index;
+        }
+        
+        Map<String, ContextIndex> index = new HashMap<String, ContextIndex>();
+        index.put(null, this.buildIndex(this.mappings));
+        for (Entry<String, Map<String, Map<String, String>>> context : this.data.entrySet()) {
+            index.put(context.getKey(), this.buildIndex(context.getValue()));
+        }
+        return this.index = index;
+    }
+    
+    private ContextIndex buildIndex(Map<String, Map<String, String>> mappings) {
+        ContextIndex index = new ContextIndex();
+        for (Map<String, String> classMappings : mappings.values()) {
+            for (Entry<String, String> mapping : classMappings.entrySet()) {
+                String reference = mapping.getKey();
+                if (!index.mappings.containsKey(reference)) {
+                    index.mappings.put(reference, mapping.getValue());
+                    continue;
+                }
+                String existing = index.mappings.get(reference);
+                if (existing == null ? mapping.getValue() != null : !existing.equals(mapping.getValue())) {
+                    index.ambiguous.add(reference);
+                }
+            }
+        }
+        return index;
+    }
+    
     /**
      * Write this refmap out to the specified writer
      * 
@@ -261,6 +347,7 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
                 reader = new InputStreamReader(resource);
                 ReferenceMapper mapper = ReferenceMapper.readJson(reader);
                 mapper.setResourceName(resourcePath);
+                mapper.buildIndex();
                 return mapper;
             }
         } catch (JsonParseException ex) {
@@ -287,6 +374,7 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
         try {
             ReferenceMapper mapper = ReferenceMapper.readJson(reader);
             mapper.setResourceName(name);
+            mapper.buildIndex();
             return mapper;
         } catch (Exception ex) {
             return ReferenceMapper.DEFAULT_MAPPER;
@@ -24,15 +24,24 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
@@ -55,6 +64,8 @@ import org.spongepowered.asm.mixin.gen.Accessor;
 import org.spongepowered.asm.mixin.gen.Invoker;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Member.Type;
 import org.spongepowered.asm.mixin.transformer.MixinInfo.MixinClassNode;
+import org.spongepowered.asm.service.IClassBytecodeProvider;
+import org.spongepowered.asm.service.IClassHeaderProvider;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
@@ -62,6 +73,8 @@ import org.spongepowered.asm.util.ClassSignature;
 import org.spongepowered.asm.util.LanguageFeatures;
 import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.asm.ClassNodeAdapter;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents.Event;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 
@@ -438,11 +451,13 @@ public final class ClassInfo {
          */
         public String renameTo(String name) {
             this.currentName = name;
+            this.getOwner().addMemberAlias(this);
             return name;
         }
         
         public String remapTo(String desc) {
             this.currentDesc = desc;
+            this.getOwner().addMemberAlias(this);
             return desc;
         }
 
@@ -483,7 +498,23 @@ public final class ClassInfo {
      */
     public class Method extends Member {
 
-        private final List<FrameData> frames;
+        /**
+         * Frame data for this method, null until computed if the owner was
+         * loaded without method bodies
+         */
+        private volatile List<FrameData> frames;
+        
+        /**
+         * True if {@link #frames} should be computed on demand by reading the
+         * method body from the bytecode provider
+         */
+        private final boolean deferFrames;
+        
+        /**
+         * Method this method was cloned from, frame data is fetched from the
+         * source method so that it is only ever computed once
+         */
+        private final Method source;
         
         private boolean isAccessor;
         
@@ -491,17 +522,24 @@ public final class ClassInfo {
 
         public Method(Member member) {
             super(member);
-            this.frames = member instanceof Method ? ((Method)member).frames : null;
+            this.source = member instanceof Method ? (Method)member : null;
+            this.deferFrames = false;
         }
 
         public Method(MethodNode method) {
             this(method, false);
         }
 
-        @SuppressWarnings("unchecked")
         public Method(MethodNode method, boolean injected) {
+            this(method, injected, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        Method(MethodNode method, boolean injected, boolean deferFrames) {
             super(Type.METHOD, method.name, method.desc, method.access, injected);
-            this.frames = this.gatherFrames(method);
+            this.source = null;
+            this.deferFrames = deferFrames;
+            this.frames = deferFrames ? null : this.gatherFrames(method);
             this.setUnique(Annotations.getVisible(method, Unique.class) != null);
             this.isAccessor = Annotations.getSingleVisible(method, Accessor.class, Invoker.class) != null;
             boolean decoratedFinal = Annotations.getVisible(method, Final.class) != null;
@@ -511,20 +549,23 @@ public final class ClassInfo {
 
         public Method(String name, String desc) {
             super(Type.METHOD, name, desc, Opcodes.ACC_PUBLIC, false);
-            this.frames = null;
+            this.source = null;
+            this.deferFrames = false;
         }
 
         public Method(String name, String desc, int access) {
             super(Type.METHOD, name, desc, access, false);
-            this.frames = null;
+            this.source = null;
+            this.deferFrames = false;
         }
 
         public Method(String name, String desc, int access, boolean injected) {
             super(Type.METHOD, name, desc, access, injected);
-            this.frames = null;
+            this.source = null;
+            this.deferFrames = false;
         }
 
-        private List<FrameData> gatherFrames(MethodNode method) {
+        List<FrameData> gatherFrames(MethodNode method) {
             List<FrameData> frames = new ArrayList<FrameData>();
             for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
                 AbstractInsnNode insn = iter.next();
@@ -536,7 +577,15 @@ public final class ClassInfo {
         }
 
         public List<FrameData> getFrames() {
-            return this.frames;
+            if (this.source != null) {
+                return this.source.getFrames();
+            }
+            List<FrameData> frames = this.frames;
+            if (frames == null && this.deferFrames) {
+                frames = ClassInfo.this.loadFrames(this);
+                this.frames = frames;
+            }
+            return frames;
         }
         
         @Override
@@ -664,6 +713,312 @@ public final class ClassInfo {
         }
     }
 
+    /**
+     * Index of the members in one of the member sets of a class, keyed by name
+     * and descriptor. Members are indexed under every combination of their
+     * original and current name and descriptor, since these are all accepted by
+     * {@link Member#equals(String, String)}. Aliases are added when a member is
+     * renamed or remapped but never removed, so candidates are always checked
+     * against the member itself before being returned.
+     *
+     * @param <M> member type
+     */
+    static final class MemberIndex<M extends Member> {
+
+        /**
+         * Members keyed by name and descriptor
+         */
+        private final ConcurrentMap<String, List<M>> members = new ConcurrentHashMap<String, List<M>>();
+
+        MemberIndex() {
+        }
+
+        MemberIndex(Set<M> members) {
+            for (M member : members) {
+                this.add(member);
+            }
+        }
+
+        /**
+         * Add a member to the index
+         *
+         * @param member member to add
+         */
+        synchronized void add(M member) {
+            this.put(member.getOriginalName(), member.getOriginalDesc(), member);
+            this.put(member.getOriginalName(), member.getDesc(), member);
+            this.put(member.getName(), member.getOriginalDesc(), member);
+            this.put(member.getName(), member.getDesc(), member);
+        }
+
+        /**
+         * Add index entries for the current name and descriptor of a member
+         * which has been renamed or remapped. Members which are not already in
+         * this index (for example cloned members) are ignored.
+         *
+         * @param member renamed or remapped member
+         */
+        @SuppressWarnings("unchecked")
+        synchronized void alias(Member member) {
+            List<M> candidates = this.members.get(MemberIndex.key(member.getOriginalName(), member.getOriginalDesc()));
+            if (candidates == null) {
+                return;
+            }
+            for (M candidate : candidates) {
+                if (candidate == member) {
+                    this.add((M)member);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Find a member by name and descriptor
+         *
+         * @param name original or current member name
+         * @param desc original or current member descriptor
+         * @param flags search flags
+         * @return matching member or null if no member matches
+         */
+        M find(String name, String desc, int flags) {
+            List<M> candidates = this.members.get(MemberIndex.key(name, desc));
+            if (candidates == null) {
+                return null;
+            }
+            for (M member : candidates) {
+                if (member.equals(name, desc) && member.matchesFlags(flags)) {
+                    return member;
+                }
+            }
+            return null;
+        }
+
+        private void put(String name, String desc, M member) {
+            String key = MemberIndex.key(name, desc);
+            List<M> candidates = this.members.get(key);
+            if (candidates == null) {
+                candidates = new CopyOnWriteArrayList<M>();
+                this.members.put(key, candidates);
+            }
+            for (M candidate : candidates) {
+                if (candidate == member) {
+                    return;
+                }
+            }
+            candidates.add(member);
+        }
+
+        private static String key(String name, String desc) {
+            return name + desc;
+        }
+
+    }
+
+    /**
+     * Key for a memoised hierarchy lookup
+     */
+    static final class HierarchyKey {
+
+        private final String name;
+
+        private final String desc;
+
+        private final Type type;
+
+        private final SearchType searchType;
+
+        private final Traversal traversal;
+
+        private final int flags;
+
+        private final int hash;
+
+        HierarchyKey(String name, String desc, Type type, SearchType searchType, Traversal traversal, int flags) {
+            this.name = name;
+            this.desc = desc;
+            this.type = type;
+            this.searchType = searchType;
+            this.traversal = traversal;
+            this.flags = flags;
+            int hash = name.hashCode();
+            hash = 31 * hash + (desc != null ? desc.hashCode() : 0);
+            hash = 31 * hash + (type != null ? type.hashCode() : 0);
+            hash = 31 * hash + (searchType != null ? searchType.hashCode() : 0);
+            hash = 31 * hash + traversal.hashCode();
+            this.hash = 31 * hash + flags;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof HierarchyKey)) {
+                return false;
+            }
+            HierarchyKey other = (HierarchyKey)obj;
+            return this.hash == other.hash && this.name.equals(other.name) && (this.desc == null ? other.desc == null : this.desc.equals(other.desc))
+                    && this.type == other.type && this.searchType == other.searchType && this.traversal == other.traversal
+                    && this.flags == other.flags;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    /**
+     * Memoised results of hierarchy lookups made from a class. A memo records
+     * the {@link ClassInfo#generation generation} of every class the lookups
+     * it holds can visit, and is only valid while none of those classes have
+     * changed. Each class keeps two memos: one which depends only on the
+     * superclass chain (the class, its superclasses and the mixins targetting
+     * them), used for lookups which never visit interfaces, and one which also
+     * depends on the interfaces of those classes.
+     */
+    static final class HierarchyMemo {
+
+        /**
+         * Marker for lookups which resolved to nothing
+         */
+        static final Object NOT_FOUND = new Object();
+
+        /**
+         * Classes in the hierarchy this memo was built from
+         */
+        private final ClassInfo[] dependencies;
+
+        /**
+         * Generation of each dependency when this memo was created
+         */
+        private final int[] generations;
+
+        /**
+         * Results of member and superclass lookups
+         */
+        final ConcurrentMap<HierarchyKey, Object> results = new ConcurrentHashMap<HierarchyKey, Object>();
+
+        HierarchyMemo(ClassInfo owner, boolean includeInterfaces) {
+            Map<ClassInfo, Integer> dependencies = new IdentityHashMap<ClassInfo, Integer>();
+            owner.collectHierarchy(dependencies, includeInterfaces);
+            this.dependencies = new ClassInfo[dependencies.size()];
+            this.generations = new int[dependencies.size()];
+            int index = 0;
+            for (Map.Entry<ClassInfo, Integer> dependency : dependencies.entrySet()) {
+                this.dependencies[index] = dependency.getKey();
+                this.generations[index++] = dependency.getValue().intValue();
+            }
+        }
+
+        /**
+         * Get whether no class in the hierarchy has changed since this memo
+         * was created
+         */
+        boolean isValid() {
+            for (int index = 0; index < this.dependencies.length; index++) {
+                if (this.dependencies[index].generation.get() != this.generations[index]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Entry in the metadata cache. Metadata for classes which are only needed
+     * for hierarchy lookups is softly referenced, so that it can be reclaimed
+     * under memory pressure and regenerated on demand. Metadata for mixins,
+     * mixin targets and any class which is modified by mixin application is
+     * <em>pinned</em> since it cannot be regenerated from the bytecode.
+     * 
+     * <p>All access to the entry state must be made whilst holding the entry
+     * lock, which also guarantees that metadata for a class is only generated
+     * once even if it is requested from multiple threads.</p>
+     */
+    static final class CacheEntry extends ReentrantLock {
+        
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * Class name (binary name) 
+         */
+        final String name;
+        
+        /**
+         * Strong reference to the metadata if pinned 
+         */
+        private ClassInfo pinned;
+        
+        /**
+         * Soft reference to the metadata or to a marker object if loading the
+         * class failed, null if not yet loaded
+         */
+        private EntryReference ref;
+        
+        /**
+         * Set when the entry has been evicted from the cache, threads which
+         * retrieved the entry before it was evicted must look it up again
+         */
+        private boolean removed;
+        
+        CacheEntry(String name) {
+            this.name = name;
+        }
+        
+        CacheEntry(ClassInfo info) {
+            this(info.name);
+            this.pinned = info;
+        }
+        
+        /**
+         * Get whether metadata (or a failed load) is currently present
+         */
+        boolean isPresent() {
+            return this.pinned != null || (this.ref != null && this.ref.get() != null);
+        }
+        
+        /**
+         * Get the cached metadata, returns null if the class failed to load or
+         * the metadata has been reclaimed
+         */
+        ClassInfo getValue() {
+            if (this.pinned != null) {
+                return this.pinned;
+            }
+            Object value = this.ref != null ? this.ref.get() : null;
+            return value instanceof ClassInfo ? (ClassInfo)value : null;
+        }
+        
+        /**
+         * Store loaded metadata, failed loads are stored as a marker object so
+         * that they are retried once the marker is reclaimed
+         */
+        void setValue(ClassInfo info) {
+            this.ref = new EntryReference(info != null ? info : new Object(), this);
+        }
+        
+        void pin(ClassInfo info) {
+            this.pinned = info;
+            this.ref = null;
+        }
+        
+    }
+    
+    /**
+     * Soft reference which knows its owning cache entry, so that the entry can
+     * be evicted once the referent is reclaimed
+     */
+    static final class EntryReference extends SoftReference<Object> {
+        
+        final CacheEntry entry;
+        
+        EntryReference(Object referent, CacheEntry entry) {
+            super(referent, ClassInfo.reclaimed);
+            this.entry = entry;
+        }
+        
+    }
+    
     private static final ILogger logger = MixinService.getService().getLogger("mixin");
     
     private static final Profiler profiler = Profiler.getProfiler("meta");
@@ -674,12 +1029,26 @@ public final class ClassInfo {
      * Loading and parsing classes is expensive, so keep a cache of all the
      * information we generate
      */
-    private static final Map<String, ClassInfo> cache = new HashMap<String, ClassInfo>();
+    private static final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+    
+    /**
+     * Queue of soft references reclaimed by the garbage collector, drained
+     * whenever a cache miss occurs 
+     */
+    private static final ReferenceQueue<Object> reclaimed = new ReferenceQueue<Object>();
+    
+    /**
+     * Cache statistics 
+     */
+    private static final AtomicLong cacheHits = ClassInfo.profiler.getCounter("class.meta.hit");
+    private static final AtomicLong cacheMisses = ClassInfo.profiler.getCounter("class.meta.miss");
+    private static final AtomicLong cacheEvictions = ClassInfo.profiler.getCounter("class.meta.evicted");
+    private static final AtomicLong cacheLoadTime = ClassInfo.profiler.getCounter("class.meta.load.ns");
 
     private static final ClassInfo OBJECT = new ClassInfo();
 
     static {
-        ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, ClassInfo.OBJECT);
+        ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, new CacheEntry(ClassInfo.OBJECT));
     }
 
     /**
@@ -728,6 +1097,21 @@ public final class ClassInfo {
      */
     private final Set<Field> fields;
 
+    /**
+     * Index of {@link #initialisers} by name and descriptor
+     */
+    private final MemberIndex<Method> initialiserIndex;
+
+    /**
+     * Index of {@link #methods} by name and descriptor
+     */
+    private final MemberIndex<Method> methodIndex;
+
+    /**
+     * Index of {@link #fields} by name and descriptor
+     */
+    private final MemberIndex<Field> fieldIndex;
+
     /**
      * Mixins which target this class
      */
@@ -770,6 +1154,26 @@ public final class ClassInfo {
      * Outer class reference, not initialised until required
      */
     private ClassInfo outerClass;
+
+    /**
+     * Memoised hierarchy lookups which only visit the superclass chain, see
+     * {@link HierarchyMemo}
+     */
+    private volatile HierarchyMemo chainMemo;
+
+    /**
+     * Memoised hierarchy lookups which also visit interfaces, see
+     * {@link HierarchyMemo}
+     */
+    private volatile HierarchyMemo hierarchyMemo;
+
+    /**
+     * Generation of this class, incremented whenever members, interfaces or
+     * mixins are added to this class or one of its members is renamed, since
+     * any of these can change the result of a lookup made from this class or
+     * a subclass.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
     
     /**
      * Class signature, lazy-loaded where possible
@@ -790,6 +1194,11 @@ public final class ClassInfo {
      * Declared nest members 
      */
     private Set<String> nestMembers;
+    
+    /**
+     * True once this class has been pinned in the metadata cache
+     */
+    private volatile boolean pinned;
 
     /**
      * Private constructor used to initialise the ClassInfo for {@link Object}
@@ -817,6 +1226,9 @@ public final class ClassInfo {
             new Method("finalize", "()V")
         );
         this.fields = Collections.<Field>emptySet();
+        this.initialiserIndex = new MemberIndex<Method>(this.initialisers);
+        this.methodIndex = new MemberIndex<Method>(this.methods);
+        this.fieldIndex = new MemberIndex<Field>(this.fields);
         this.isInterface = false;
         this.interfaces = Collections.<String>emptySet();
         this.access = Opcodes.ACC_PUBLIC;
@@ -830,17 +1242,23 @@ public final class ClassInfo {
      * Initialise a ClassInfo from the supplied {@link ClassNode}
      *
      * @param classNode Class node to inspect
+     * @param header true if the class node was read without method bodies, in
+     *      which case frame data for methods is read on demand
      */
-    private ClassInfo(ClassNode classNode) {
+    private ClassInfo(ClassNode classNode, boolean header) {
         Section timer = ClassInfo.profiler.begin(Profiler.ROOT, "class.meta");
+        Event event = FlightRecorderEvents.CLASS_METADATA.begin().set(0, classNode.name);
         try {
             this.name = classNode.name;
             this.superName = classNode.superName != null ? classNode.superName : ClassInfo.JAVA_LANG_OBJECT;
-            this.initialisers = new HashSet<Method>();
-            this.methods = new HashSet<Method>();
-            this.fields = new HashSet<Field>();
+            this.initialisers = ClassInfo.<Method>newMemberSet();
+            this.methods = ClassInfo.<Method>newMemberSet();
+            this.fields = ClassInfo.<Field>newMemberSet();
+            this.initialiserIndex = new MemberIndex<Method>();
+            this.methodIndex = new MemberIndex<Method>();
+            this.fieldIndex = new MemberIndex<Field>();
             this.isInterface = ((classNode.access & Opcodes.ACC_INTERFACE) != 0);
-            this.interfaces = new HashSet<String>();
+            this.interfaces = ClassInfo.<String>newMemberSet();
             this.isMixin = classNode instanceof MixinClassNode;
             this.mixin = this.isMixin ? ((MixinClassNode)classNode).getMixin() : null;
             this.mixins = this.isMixin ? Collections.<MixinInfo>emptySet() : new HashSet<MixinInfo>();
@@ -848,7 +1266,7 @@ public final class ClassInfo {
             this.interfaces.addAll(classNode.interfaces);
 
             for (MethodNode method : classNode.methods) {
-                this.addMethod(method, this.isMixin);
+                this.addMethod(method, this.isMixin, header);
             }
 
             boolean isProbablyStatic = true;
@@ -866,7 +1284,9 @@ public final class ClassInfo {
                     }
                 }
 
-                this.fields.add(new Field(field, this.isMixin));
+                Field fieldInfo = new Field(field, this.isMixin);
+                this.fields.add(fieldInfo);
+                this.fieldIndex.add(fieldInfo);
             }
 
             this.isProbablyStatic = isProbablyStatic;
@@ -897,25 +1317,169 @@ public final class ClassInfo {
                 }
             }
         } finally {
+            event.commit();
             timer.end();
         }
     }
 
+    /**
+     * Members and interfaces can be added by mixins being applied on one thread
+     * whilst another thread is walking the hierarchy, so the collections are
+     * backed by concurrent maps.
+     */
+    private static <T> Set<T> newMemberSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
+    }
+
     void addInterface(String iface) {
+        this.pin();
         this.interfaces.add(iface);
         this.getSignature().addInterface(iface);
+        this.invalidateHierarchy();
     }
 
     void addMethod(MethodNode method) {
-        this.addMethod(method, true);
+        this.addMethod(method, true, false);
+    }
+
+    void addField(FieldNode field) {
+        this.pin();
+        Field fieldInfo = new Field(field, true);
+        if (this.fields.add(fieldInfo)) {
+            this.fieldIndex.add(fieldInfo);
+        }
+        this.invalidateHierarchy();
     }
 
-    private void addMethod(MethodNode method, boolean injected) {
+    private void addMethod(MethodNode method, boolean injected, boolean deferFrames) {
+        if (injected) {
+            this.pin();
+        }
+        Method methodInfo = new Method(method, injected, deferFrames);
         if (method.name.startsWith("<")) {
-            this.initialisers.add(new Method(method, injected));
+            if (this.initialisers.add(methodInfo)) {
+                this.initialiserIndex.add(methodInfo);
+            }
+        } else if (this.methods.add(methodInfo)) {
+            this.methodIndex.add(methodInfo);
+        }
+        if (injected) {
+            this.invalidateHierarchy();
+        }
+    }
+
+    /**
+     * Callback from {@link Member#renameTo} and {@link Member#remapTo} to
+     * index a member under its new name or descriptor
+     */
+    void addMemberAlias(Member member) {
+        if (member.type == Type.FIELD) {
+            this.fieldIndex.alias(member);
         } else {
-            this.methods.add(new Method(method, injected));
+            this.methodIndex.alias(member);
+            this.initialiserIndex.alias(member);
+        }
+        this.invalidateHierarchy();
+    }
+
+    /**
+     * Start a new generation for this class, discarding memoised hierarchy
+     * lookups made from this class and any class which inherits from it.
+     * Called after any change which could affect the result of a lookup.
+     */
+    private void invalidateHierarchy() {
+        this.generation.incrementAndGet();
+    }
+
+    /**
+     * Get the hierarchy memo for this class, creating a new one if any class
+     * the memo depends on has changed since the current memo was created.
+     * Callers should read the memo <em>before</em> performing the lookup so
+     * that results computed during a concurrent change are stored in the
+     * stale memo and discarded.
+     * 
+     * @param includeInterfaces true to get the memo for lookups which visit
+     *      interfaces, false for lookups which only visit the superclass chain
+     */
+    private HierarchyMemo getHierarchyMemo(boolean includeInterfaces) {
+        HierarchyMemo memo = includeInterfaces ? this.hierarchyMemo : this.chainMemo;
+        if (memo == null || !memo.isValid()) {
+            memo = new HierarchyMemo(this, includeInterfaces);
+            if (includeInterfaces) {
+                this.hierarchyMemo = memo;
+            } else {
+                this.chainMemo = memo;
+            }
+        }
+        return memo;
+    }
+
+    /**
+     * Collect this class and every class which a hierarchy lookup made from
+     * this class could visit, along with the current generation of each. The
+     * generation is read before the class is walked so that a concurrent
+     * change is always detected. Lookups which only visit the superclass
+     * chain search just the declared members of mixins, so the hierarchies of
+     * mixins are only collected when interfaces are included.
+     */
+    private void collectHierarchy(Map<ClassInfo, Integer> dependencies, boolean includeInterfaces) {
+        if (dependencies.containsKey(this)) {
+            return;
+        }
+        dependencies.put(this, Integer.valueOf(this.generation.get()));
+        for (MixinInfo mixin : this.mixins) {
+            ClassInfo mixinInfo = mixin.getClassInfo();
+            if (mixinInfo == null) {
+                continue;
+            }
+            if (includeInterfaces) {
+                mixinInfo.collectHierarchy(dependencies, true);
+            } else if (!dependencies.containsKey(mixinInfo)) {
+                dependencies.put(mixinInfo, Integer.valueOf(mixinInfo.generation.get()));
+            }
+        }
+        ClassInfo superClass = this.getSuperClass();
+        if (superClass != null) {
+            for (ClassInfo superTarget : superClass.getTargets()) {
+                superTarget.collectHierarchy(dependencies, includeInterfaces);
+            }
+        }
+        if (includeInterfaces) {
+            for (String iface : this.interfaces) {
+                ClassInfo ifaceInfo = ClassInfo.forName(iface);
+                if (ifaceInfo != null) {
+                    ifaceInfo.collectHierarchy(dependencies, true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Read frame data for a method of this class which was loaded without
+     * method bodies. The class is fetched in full from the bytecode provider,
+     * but frames are only gathered for the requested method.
+     * 
+     * @param method method to read frames for
+     * @return frame data for the method, empty if the method body could not be
+     *      read
+     */
+    List<FrameData> loadFrames(Method method) {
+        Section timer = ClassInfo.profiler.begin(Profiler.ROOT, "class.frames");
+        try {
+            ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(this.name);
+            for (MethodNode methodNode : classNode.methods) {
+                if (method.getOriginalName().equals(methodNode.name) && method.getOriginalDesc().equals(methodNode.desc)) {
+                    return method.gatherFrames(methodNode);
+                }
+            }
+        } catch (Exception ex) {
+            ClassInfo.logger.catching(Level.TRACE, ex);
+            ClassInfo.logger.warn("Error loading frames for {}{} in {} ({}: {})", method.getOriginalName(), method.getOriginalDesc(), this.name,
+                    ex.getClass().getName(), ex.getMessage());
+        } finally {
+            timer.end();
         }
+        return Collections.<FrameData>emptyList();
     }
 
     /**
@@ -925,17 +1489,21 @@ public final class ClassInfo {
         if (this.isMixin) {
             throw new IllegalArgumentException("Cannot add target " + this.name + " for " + mixin.getClassName() + " because the target is a mixin");
         }
+        this.pin();
         this.mixins.add(mixin);
+        this.invalidateHierarchy();
     }
     
     /**
      * Add a mixin which has been applied to this class
      */
-    void addAppliedMixin(MixinInfo mixin) {
+    synchronized void addAppliedMixin(MixinInfo mixin) {
+        this.pin();
         if (this.appliedMixins == null) {
             this.appliedMixins = new HashSet<MixinInfo>(); 
         }
         this.appliedMixins.add(mixin);
+        this.invalidateHierarchy();
     }
 
     /**
@@ -948,7 +1516,7 @@ public final class ClassInfo {
     /**
      * Get all mixins which have been successfully applied to this class
      */
-    public Set<IMixinInfo> getAppliedMixins() {
+    public synchronized Set<IMixinInfo> getAppliedMixins() {
         return this.appliedMixins != null ? Collections.<IMixinInfo>unmodifiableSet(this.appliedMixins) : Collections.<IMixinInfo>emptySet();
     }
     
@@ -1192,6 +1760,15 @@ public final class ClassInfo {
         return Collections.<Method>unmodifiableSet(this.methods);
     }
 
+    /**
+     * Get class/interface fields
+     *
+     * @return read-only view of class fields
+     */
+    public Set<Field> getFields() {
+        return Collections.<Field>unmodifiableSet(this.fields);
+    }
+
     /**
      * If this is an interface, returns a set containing all methods in this
      * interface and all super interfaces. If this is a class, returns a set
@@ -1412,7 +1989,20 @@ public final class ClassInfo {
             return null;
         }
         
-        return this.findSuperClass(superClass, traversal, includeInterfaces, new HashSet<String>());
+        if (!includeInterfaces) {
+            // Walking the superclass chain is no more expensive than validating a memo
+            return this.findSuperClass(superClass, traversal, false, new HashSet<String>());
+        }
+        
+        HierarchyMemo memo = this.getHierarchyMemo(true);
+        HierarchyKey key = new HierarchyKey(superClass, null, null, null, traversal, includeInterfaces ? 1 : 0);
+        Object result = memo.results.get(key);
+        if (result == null) {
+            ClassInfo found = this.findSuperClass(superClass, traversal, includeInterfaces, new HashSet<String>());
+            result = found != null ? found : HierarchyMemo.NOT_FOUND;
+            memo.results.put(key, result);
+        }
+        return result != HierarchyMemo.NOT_FOUND ? (ClassInfo)result : null;
     }
     
     private ClassInfo findSuperClass(String superClass, Traversal traversal, boolean includeInterfaces, Set<String> traversed) {
@@ -1487,12 +2077,14 @@ public final class ClassInfo {
             return null;
         }
 
-        ClassInfo correspondingType = this.correspondingTypes.get(mixin);
-        if (correspondingType == null) {
-            correspondingType = this.findSuperTypeForMixin(mixin);
-            this.correspondingTypes.put(mixin, correspondingType);
+        synchronized (this.correspondingTypes) {
+            ClassInfo correspondingType = this.correspondingTypes.get(mixin);
+            if (correspondingType == null) {
+                correspondingType = this.findSuperTypeForMixin(mixin);
+                this.correspondingTypes.put(mixin, correspondingType);
+            }
+            return correspondingType;
         }
-        return correspondingType;
     }
 
     /* (non-Javadoc)
@@ -1787,6 +2379,21 @@ public final class ClassInfo {
      */
     @SuppressWarnings("unchecked")
     private <M extends Member> M findInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type) {
+        boolean includeInterfaces = type == Type.METHOD
+                && (this.isInterface || MixinEnvironment.getCompatibilityLevel().supports(LanguageFeatures.METHODS_IN_INTERFACES));
+        HierarchyMemo memo = this.getHierarchyMemo(includeInterfaces);
+        HierarchyKey key = new HierarchyKey(name, desc, type, searchType, traversal, flags);
+        Object result = memo.results.get(key);
+        if (result == null) {
+            M member = this.resolveInHierarchy(name, desc, searchType, traversal, flags, type);
+            result = member != null ? member : HierarchyMemo.NOT_FOUND;
+            memo.results.put(key, result);
+        }
+        return result != HierarchyMemo.NOT_FOUND ? (M)result : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <M extends Member> M resolveInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type) {
         if (searchType == SearchType.ALL_CLASSES) {
             M member = this.findMember(name, desc, flags, type);
             if (member != null) {
@@ -1948,20 +2555,14 @@ public final class ClassInfo {
      */
     @SuppressWarnings("unchecked")
     private <M extends Member> M findMember(String name, String desc, int flags, Type memberType) {
-        Set<M> members = (Set<M>)(memberType == Type.METHOD ? this.methods : this.fields);
-
-        for (M member : members) {
-            if (member.equals(name, desc) && member.matchesFlags(flags)) {
-                return member;
-            }
+        MemberIndex<M> index = (MemberIndex<M>)(memberType == Type.METHOD ? this.methodIndex : this.fieldIndex);
+        M member = index.find(name, desc, flags);
+        if (member != null) {
+            return member;
         }
         
         if (memberType == Type.METHOD && (flags & ClassInfo.INCLUDE_INITIALISERS) != 0) {
-            for (Method ctor : this.initialisers) {
-                if (ctor.equals(name, desc) && ctor.matchesFlags(flags)) {
-                    return (M)ctor;
-                }
-            }
+            return (M)this.initialiserIndex.find(name, desc, flags);
         }
 
         return null;
@@ -1996,12 +2597,54 @@ public final class ClassInfo {
      * @return ClassInfo instance for the supplied classNode
      */
     static ClassInfo fromClassNode(ClassNode classNode) {
-        ClassInfo info = ClassInfo.cache.get(classNode.name);
-        if (info == null) {
-            info = new ClassInfo(classNode);
-            ClassInfo.cache.put(classNode.name, info);
+        while (true) {
+            CacheEntry entry = ClassInfo.getCacheEntry(classNode.name);
+            entry.lock();
+            try {
+                if (entry.removed) {
+                    continue;
+                }
+                ClassInfo info = entry.getValue();
+                if (info == null) {
+                    info = new ClassInfo(classNode, false);
+                }
+                entry.pin(info);
+                info.pinned = true;
+                return info;
+            } finally {
+                entry.unlock();
+            }
         }
+    }
 
+    /**
+     * Return a ClassInfo for a class whose transformed bytecode was supplied
+     * by the class cache rather than by applying mixins. Any interfaces and
+     * methods present in the transformed class which are missing from the
+     * existing ClassInfo (which may have been read from the untransformed
+     * class) are added as if they had been added by the mixins themselves.
+     * Fields are restored in the same way.
+     *
+     * @param classNode transformed class
+     * @return ClassInfo instance for the supplied classNode
+     */
+    static ClassInfo fromCachedClass(ClassNode classNode) {
+        ClassInfo info = ClassInfo.fromClassNode(classNode);
+        for (String iface : classNode.interfaces) {
+            if (!info.interfaces.contains(iface)) {
+                info.addInterface(iface);
+            }
+        }
+        for (MethodNode method : classNode.methods) {
+            if (info.findMethod(method.name, method.desc, ClassInfo.INCLUDE_ALL) == null) {
+                info.addMethod(method);
+            }
+        }
+        for (FieldNode field : classNode.fields) {
+            if (info.findField(field.name, field.desc, ClassInfo.INCLUDE_ALL) == null) {
+                info.addField(field);
+            }
+        }
         return info;
     }
 
@@ -2016,23 +2659,112 @@ public final class ClassInfo {
     public static ClassInfo forName(String className) {
         className = className.replace('.', '/');
 
-        ClassInfo info = ClassInfo.cache.get(className);
-        if (info == null) {
+        while (true) {
+            CacheEntry entry = ClassInfo.getCacheEntry(className);
+            entry.lock();
             try {
-                ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(className);
-                info = new ClassInfo(classNode);
-            } catch (Exception ex) {
-                ClassInfo.logger.catching(Level.TRACE, ex);
-                ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
-//                ex.printStackTrace();
+                if (entry.removed) {
+                    continue;
+                }
+                if (entry.isPresent()) {
+                    ClassInfo.cacheHits.incrementAndGet();
+                    return entry.getValue();
+                }
+                
+                ClassInfo.cacheMisses.incrementAndGet();
+                long loadStart = System.nanoTime();
+                ClassInfo info = null;
+                try {
+                    IClassBytecodeProvider bytecodeProvider = MixinService.getService().getBytecodeProvider();
+                    if (bytecodeProvider instanceof IClassHeaderProvider) {
+                        info = new ClassInfo(((IClassHeaderProvider)bytecodeProvider).getClassHeader(className), true);
+                    } else {
+                        info = new ClassInfo(bytecodeProvider.getClassNode(className), false);
+                    }
+                } catch (Exception ex) {
+                    ClassInfo.logger.catching(Level.TRACE, ex);
+                    ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
+//                    ex.printStackTrace();
+                }
+                
+                // Failed loads are cached too, but can be reclaimed
+                entry.setValue(info);
+                ClassInfo.cacheLoadTime.addAndGet(System.nanoTime() - loadStart);
+                ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
+                return info;
+            } finally {
+                entry.unlock();
             }
-
-            // Put null in the cache if load failed
-            ClassInfo.cache.put(className, info);
-            ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
         }
+    }
 
-        return info;
+    /**
+     * Get or create the cache entry for the specified class, evicting any
+     * entries which have been reclaimed if a new entry is created
+     *
+     * @param className Binary name of the class
+     * @return cache entry
+     */
+    private static CacheEntry getCacheEntry(String className) {
+        CacheEntry entry = ClassInfo.cache.get(className);
+        if (entry != null) {
+            return entry;
+        }
+        
+        ClassInfo.evictReclaimed();
+        CacheEntry newEntry = new CacheEntry(className);
+        entry = ClassInfo.cache.putIfAbsent(className, newEntry);
+        return entry != null ? entry : newEntry;
+    }
+    
+    /**
+     * Drain the queue of reclaimed references and remove the corresponding
+     * entries from the cache, unless they have since been pinned or reloaded.
+     * Entries which are locked by another thread are being reloaded and are
+     * skipped rather than waited on, since the caller may itself be holding the
+     * lock on another entry.
+     */
+    private static void evictReclaimed() {
+        for (EntryReference ref; (ref = (EntryReference)ClassInfo.reclaimed.poll()) != null;) {
+            CacheEntry entry = ref.entry;
+            if (!entry.tryLock()) {
+                continue;
+            }
+            try {
+                if (entry.ref == ref && entry.pinned == null) {
+                    entry.removed = true;
+                    ClassInfo.cache.remove(entry.name, entry);
+                    ClassInfo.cacheEvictions.incrementAndGet();
+                }
+            } finally {
+                entry.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Pin this class in the metadata cache, called when this class becomes
+     * involved in mixin application and the metadata can no longer be
+     * regenerated from the original bytecode
+     */
+    private void pin() {
+        if (this.pinned) {
+            return;
+        }
+        while (true) {
+            CacheEntry entry = ClassInfo.getCacheEntry(this.name);
+            entry.lock();
+            try {
+                if (entry.removed) {
+                    continue;
+                }
+                entry.pin(this);
+                this.pinned = true;
+                return;
+            } finally {
+                entry.unlock();
+            }
+        }
     }
     
     /**
@@ -2088,7 +2820,16 @@ public final class ClassInfo {
      *      class does not have an entry in the cache
      */
     public static ClassInfo fromCache(String className) {
-        return ClassInfo.cache.get(className.replace('.', '/'));
+        CacheEntry entry = ClassInfo.cache.get(className.replace('.', '/'));
+        if (entry == null) {
+            return null;
+        }
+        entry.lock();
+        try {
+            return entry.getValue();
+        } finally {
+            entry.unlock();
+        }
     }
 
     /**
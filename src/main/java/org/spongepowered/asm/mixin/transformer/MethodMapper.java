@@ -145,7 +145,7 @@ class MethodMapper {
      * @param classRef Class name (binary)
      * @return unique identifier
      */
-    private static String getClassUID(String classRef) {
+    private static synchronized String getClassUID(String classRef) {
         int index = MethodMapper.classes.indexOf(classRef);
         if (index < 0) {
             index = MethodMapper.classes.size();
@@ -162,7 +162,7 @@ class MethodMapper {
      * @param increment true to incrememnt the id if it already exists
      * @return unique identifier
      */
-    private static String getMethodUID(String name, String desc, boolean increment) {
+    private static synchronized String getMethodUID(String name, String desc, boolean increment) {
         String descriptor = String.format("%s%s", name, desc);
         Counter id = MethodMapper.methods.get(descriptor);
         if (id == null) {
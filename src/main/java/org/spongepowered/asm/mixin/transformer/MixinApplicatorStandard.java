@@ -107,7 +107,20 @@ class MixinApplicatorStandard {
         /**
          * Apply injectors from previous pass 
          */
-        INJECT
+        INJECT;
+        
+        /**
+         * Name of the profiler section for this pass
+         */
+        private final String sectionName;
+        
+        private ApplicatorPass() {
+            this.sectionName = this.name().toLowerCase(Locale.ROOT);
+        }
+        
+        String getSectionName() {
+            return this.sectionName;
+        }
 
     }
     
@@ -316,7 +329,7 @@ class MixinApplicatorStandard {
             
             for (ApplicatorPass pass : ApplicatorPass.values()) {
                 activity.next("%s Applicator Phase", pass);
-                Section timer = this.profiler.begin("pass", pass.name().toLowerCase(Locale.ROOT));
+                Section timer = this.profiler.begin("pass", pass.getSectionName());
                 IActivity applyActivity = this.activities.begin("Mixin");
                 for (Iterator<MixinTargetContext> iter = mixinContexts.iterator(); iter.hasNext();) {
                     current = iter.next();
@@ -486,7 +499,7 @@ class MixinApplicatorStandard {
             FieldNode target = this.findTargetField(field);
             if (target == null) {
                 // This is just a local field, so add it
-                this.targetClass.fields.add(field);
+                this.context.addField(field);
                 mixin.fieldMerged(field);
                 
                 if (field.signature != null) {
@@ -572,14 +585,14 @@ class MixinApplicatorStandard {
                             method.name, method.desc, mixin, mixin.getTarget().getClassName()));
                 }
                 
-                this.targetClass.methods.remove(target);
+                this.context.removeMethod(target);
             }
         } else if (isOverwrite) {
             throw new InvalidMixinException(mixin, String.format("Overwrite target \"%s\" was not located in target class %s",
                     method.name, mixin.getTargetClassRef()));
         }
         
-        this.targetClass.methods.add(method);
+        this.context.addMethod(method);
         mixin.methodMerged(method);
         
         if (method.signature != null) {
@@ -728,7 +741,9 @@ class MixinApplicatorStandard {
             }
         }
         
+        String oldName = target.name;
         target.name = proxyName;
+        this.context.methodRenamed(target, oldName);
     }
 
     /**
@@ -764,7 +779,7 @@ class MixinApplicatorStandard {
             return;
         }
         
-        this.targetClass.methods.add(method);
+        this.context.addMethod(method);
     }
 
     /**
@@ -789,13 +804,11 @@ class MixinApplicatorStandard {
         String superName = this.context.getClassInfo().getSuperName();
         
         // Patch the initialiser into the target class ctors
-        for (MethodNode method : this.targetClass.methods) {
-            if (Constants.CTOR.equals(method.name)) {
-                DelegateInitialiser superCall = Bytecode.findDelegateInit(method, superName, this.targetClass.name);
-                if (!superCall.isPresent || superCall.isSuper) {
-                    method.maxStack = Math.max(method.maxStack, ctor.maxStack);
-                    this.injectInitialiser(mixin, method, initialiser);
-                }
+        for (MethodNode method : this.context.getConstructors()) {
+            DelegateInitialiser superCall = Bytecode.findDelegateInit(method, superName, this.targetClass.name);
+            if (!superCall.isPresent || superCall.isSuper) {
+                method.maxStack = Math.max(method.maxStack, ctor.maxStack);
+                this.injectInitialiser(mixin, method, initialiser);
             }
         }
     }
@@ -1133,13 +1146,7 @@ class MixinApplicatorStandard {
      * @return Target method matching searchFor, or null if not found
      */
     protected final MethodNode findTargetMethod(MethodNode searchFor) {
-        for (MethodNode target : this.targetClass.methods) {
-            if (target.name.equals(searchFor.name) && target.desc.equals(searchFor.desc)) {
-                return target;
-            }
-        }
-        
-        return null;
+        return this.context.findTargetMethod(searchFor.name, searchFor.desc);
     }
 
     /**
@@ -1149,13 +1156,7 @@ class MixinApplicatorStandard {
      * @return Target field matching searchFor, or null if not found
      */
     protected final FieldNode findTargetField(FieldNode searchFor) {
-        for (FieldNode target : this.targetClass.fields) {
-            if (target.name.equals(searchFor.name) && target.desc.equals(searchFor.desc)) {
-                return target;
-            }
-        }
-
-        return null;
+        return this.context.findTargetField(searchFor.name, searchFor.desc);
     }
     
 }
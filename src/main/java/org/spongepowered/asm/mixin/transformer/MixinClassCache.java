@@ -0,0 +1,530 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.objectweb.asm.ClassReader;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Field;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
+import org.spongepowered.asm.service.IMixinService;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.perf.Profiler;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Persistent cache of transformed class bytes, used to skip mixin application
+ * altogether for targets which have not changed since a previous launch.
+ * 
+ * <p>Entries are keyed by a digest of the <em>environment</em> (the Mixin
+ * version, the environment options and obfuscation context, plus the JSON,
+ * refmap and mixin class bytes of every prepared config), the input bytes of
+ * the target class and the declared members of its supertypes, so any change
+ * to a config, refmap, mixin or option discards every entry, and any change to
+ * a target class or its supertypes discards the entry for that target.</p>
+ * 
+ * <p>The cache is a single append-only file. Entries present when the cache is
+ * opened are read from a memory-mapped view of the file, entries added during
+ * the session are appended to the end. Each record carries a CRC of its data
+ * which is checked when the record is read, records which fail the check are
+ * discarded. A truncated trailing record (for example after a crash) ends the
+ * scan and is overwritten by the next append. The file is discarded if its
+ * header does not match the current format and Mixin version, or if it has
+ * grown beyond {@link #MAX_FILE_SIZE}.</p>
+ */
+final class MixinClassCache {
+
+    /**
+     * Location of a record in the cache file
+     */
+    static final class Entry {
+        
+        final long offset;
+        
+        final int length;
+        
+        final int crc;
+        
+        Entry(long offset, int length, int crc) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+        
+    }
+
+    /**
+     * Magic number at the start of the file and of each record, "MXCC"
+     */
+    private static final int MAGIC = 0x4D584343;
+    
+    /**
+     * File format version, increment when the layout or the key derivation
+     * changes
+     */
+    private static final int FORMAT = 2;
+    
+    /**
+     * Cache file name within the cache directory
+     */
+    private static final String FILE_NAME = "classes.bin";
+    
+    /**
+     * Cache files larger than this are discarded when opened, since entries
+     * for superseded environments are never removed individually
+     */
+    static final long MAX_FILE_SIZE = 256L * 1024L * 1024L;
+    
+    /**
+     * Length of keys (SHA-256 digests)
+     */
+    private static final int KEY_LENGTH = 32;
+    
+    /**
+     * Size of a record header: magic, key, length and crc
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + MixinClassCache.KEY_LENGTH + 4 + 4;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ILogger logger = MixinService.getService().getLogger("mixin");
+
+    /**
+     * Cache statistics
+     */
+    private static final AtomicLong cacheHits = Profiler.getProfiler("mixin").getCounter("cache.class.hit");
+    private static final AtomicLong cacheMisses = Profiler.getProfiler("mixin").getCounter("cache.class.miss");
+    private static final AtomicLong cacheStores = Profiler.getProfiler("mixin").getCounter("cache.class.stored");
+    private static final AtomicLong cacheCorrupt = Profiler.getProfiler("mixin").getCounter("cache.class.corrupt");
+    
+    private final IMixinService service = MixinService.getService();
+    
+    /**
+     * Cache file
+     */
+    private final File file;
+    
+    /**
+     * Channel used to append new records
+     */
+    private final FileChannel channel;
+    
+    /**
+     * Read-only view of the records present when the cache was opened
+     */
+    private final ByteBuffer mapped;
+    
+    /**
+     * Records present when the cache was opened, keyed by wrapped digest
+     */
+    private final Map<ByteBuffer, Entry> entries;
+
+    /**
+     * Digests for each config which has been seen, configs are not changed
+     * once prepared so the digest is computed only once
+     */
+    private final Map<MixinConfig, byte[]> configDigests = new IdentityHashMap<MixinConfig, byte[]>();
+    
+    /**
+     * Classes which were not found in the cache and are being transformed,
+     * mapped to the key computed when they were looked up
+     */
+    private final Map<String, byte[]> pending = new ConcurrentHashMap<String, byte[]>();
+    
+    /**
+     * Classes which were transformed in a way which can be cached, mapped to
+     * the key computed when they were looked up
+     */
+    private final Map<String, byte[]> cacheable = new ConcurrentHashMap<String, byte[]>();
+    
+    /**
+     * Digest of the current environment
+     */
+    private volatile byte[] environment;
+    
+    /**
+     * Position at which the next record will be written
+     */
+    private long writePos;
+    
+    /**
+     * Set if a write fails, no further records are written
+     */
+    private volatile boolean readOnly;
+    
+    private MixinClassCache(File file, FileChannel channel, ByteBuffer mapped, Map<ByteBuffer, Entry> entries, long writePos) {
+        this.file = file;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.entries = entries;
+        this.writePos = writePos;
+    }
+    
+    /**
+     * Open (or create) the cache in the specified directory
+     * 
+     * @param dir cache directory
+     * @return opened cache, or null if the cache could not be opened
+     */
+    static MixinClassCache open(File dir) {
+        File file = new File(dir, MixinClassCache.FILE_NAME);
+        RandomAccessFile raf = null;
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            
+            raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+            byte[] header = MixinClassCache.getHeader();
+            long size = channel.size();
+            
+            ByteBuffer mapped = null;
+            if (size > header.length && size <= MixinClassCache.MAX_FILE_SIZE) {
+                ByteBuffer existing = ByteBuffer.allocate(header.length);
+                for (int read = 0; existing.hasRemaining() && read > -1;) {
+                    read = channel.read(existing, existing.position());
+                }
+                if (MessageDigest.isEqual(header, existing.array())) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    mapped.position(header.length);
+                }
+            }
+            
+            Map<ByteBuffer, Entry> entries = new HashMap<ByteBuffer, Entry>();
+            long writePos;
+            if (mapped != null) {
+                writePos = MixinClassCache.scan(mapped, entries);
+                MixinClassCache.logger.debug("Opened class cache {} with {} entries", file, entries.size());
+            } else {
+                if (size > 0) {
+                    MixinClassCache.logger.info("Discarding class cache {}", file);
+                }
+                channel.truncate(0);
+                channel.write(ByteBuffer.wrap(header), 0);
+                writePos = header.length;
+            }
+            
+            return new MixinClassCache(file, channel, mapped, entries, writePos);
+        } catch (IOException ex) {
+            MixinClassCache.logger.warn("Class cache {} could not be opened, caching is disabled: {}", file, ex.getMessage());
+            try {
+                Closeables.close(raf, true);
+            } catch (IOException ex2) {
+                // ignored
+            }
+            return null;
+        }
+    }
+    
+    private static byte[] getHeader() {
+        byte[] version = MixinBootstrap.VERSION.getBytes(MixinClassCache.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(12 + version.length);
+        header.putInt(MixinClassCache.MAGIC).putInt(MixinClassCache.FORMAT).putInt(version.length).put(version);
+        return header.array();
+    }
+    
+    /**
+     * Read all record headers from the mapped file
+     * 
+     * @return position following the last valid record
+     */
+    private static long scan(ByteBuffer mapped, Map<ByteBuffer, Entry> entries) {
+        int pos = mapped.position();
+        while (mapped.limit() - pos >= MixinClassCache.RECORD_HEADER_SIZE) {
+            if (mapped.getInt(pos) != MixinClassCache.MAGIC) {
+                break;
+            }
+            byte[] key = new byte[MixinClassCache.KEY_LENGTH];
+            mapped.position(pos + 4);
+            mapped.get(key);
+            int length = mapped.getInt();
+            int crc = mapped.getInt();
+            int data = pos + MixinClassCache.RECORD_HEADER_SIZE;
+            if (length < 0 || length > mapped.limit() - data) {
+                break;
+            }
+            entries.put(ByteBuffer.wrap(key), new Entry(data, length, crc));
+            pos = data + length;
+        }
+        return pos;
+    }
+    
+    /**
+     * Update the environment digest for the supplied (prepared) configs, must
+     * be called whenever the set of prepared configs changes
+     * 
+     * @param environment current environment
+     * @param configs all prepared configs, in priority order
+     */
+    synchronized void setConfigs(MixinEnvironment environment, List<MixinConfig> configs) {
+        MessageDigest digest = MixinClassCache.newDigest();
+        digest.update(MixinClassCache.getHeader());
+        StringBuilder options = new StringBuilder();
+        for (Option option : Option.values()) {
+            options.append(option.name()).append('=').append(environment.getOption(option)).append(',')
+                    .append(environment.getOptionValue(option)).append(';');
+        }
+        options.append(environment.getObfuscationContext()).append(';').append(environment.getRefmapObfuscationContext()).append(';');
+        options.append(MixinEnvironment.getCompatibilityLevel());
+        digest.update(options.toString().getBytes(MixinClassCache.UTF_8));
+        for (MixinConfig config : configs) {
+            byte[] configDigest = this.configDigests.get(config);
+            if (configDigest == null) {
+                configDigest = this.getConfigDigest(config);
+                this.configDigests.put(config, configDigest);
+            }
+            digest.update(configDigest);
+        }
+        this.environment = digest.digest();
+    }
+    
+    private byte[] getConfigDigest(MixinConfig config) {
+        MessageDigest digest = MixinClassCache.newDigest();
+        this.updateResource(digest, config.getName());
+        this.updateResource(digest, config.getRefMapperConfig());
+        for (MixinInfo mixin : config.getMixins()) {
+            this.updateResource(digest, mixin.getClassRef() + ".class");
+        }
+        return digest.digest();
+    }
+    
+    private void updateResource(MessageDigest digest, String name) {
+        if (name == null) {
+            digest.update((byte)0);
+            return;
+        }
+        
+        digest.update(name.getBytes(MixinClassCache.UTF_8));
+        InputStream stream = null;
+        try {
+            stream = this.service.getResourceAsStream(name);
+            if (stream != null) {
+                digest.update((byte)1);
+                digest.update(ByteStreams.toByteArray(stream));
+            } else {
+                digest.update((byte)0);
+            }
+        } catch (IOException ex) {
+            // Ensure this environment can never match a real one
+            digest.update(Long.toString(System.nanoTime()).getBytes(MixinClassCache.UTF_8));
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+    }
+    
+    /**
+     * Record whether a class which was not found by {@link #get} was
+     * transformed in a way which can be cached. The transformed bytes of
+     * cacheable classes can then be stored with {@link #store}.
+     * 
+     * @param name class name
+     * @param cacheable true if the transformed class can be cached
+     */
+    void setCacheable(String name, boolean cacheable) {
+        byte[] key = this.pending.remove(name);
+        if (key != null && cacheable && !this.readOnly) {
+            this.cacheable.put(name, key);
+        }
+    }
+    
+    /**
+     * Get the cached transformed bytes for the specified class
+     * 
+     * @param name class name
+     * @param classBytes untransformed class bytes
+     * @return transformed bytes, or null if the class is not cached
+     */
+    byte[] get(String name, byte[] classBytes) {
+        byte[] environment = this.environment;
+        byte[] key = environment != null ? MixinClassCache.getKey(environment, name, classBytes) : null;
+        Entry entry = key != null ? this.entries.get(ByteBuffer.wrap(key)) : null;
+        if (entry == null) {
+            MixinClassCache.cacheMisses.incrementAndGet();
+            if (key != null) {
+                this.pending.put(name, key);
+            }
+            return null;
+        }
+        
+        byte[] bytes = new byte[entry.length];
+        ByteBuffer view = this.mapped.duplicate();
+        view.position((int)entry.offset);
+        view.get(bytes);
+        
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int)crc.getValue() != entry.crc) {
+            MixinClassCache.cacheCorrupt.incrementAndGet();
+            MixinClassCache.logger.warn("Discarding corrupt class cache entry for {} in {}", name, this.file);
+            this.pending.put(name, key);
+            return null;
+        }
+        
+        MixinClassCache.cacheHits.incrementAndGet();
+        return bytes;
+    }
+    
+    /**
+     * Store the transformed bytes for a class if the class was marked as
+     * cacheable when it was transformed
+     * 
+     * @param name class name
+     * @param transformedBytes transformed class bytes
+     */
+    void store(String name, byte[] transformedBytes) {
+        byte[] key = this.cacheable.remove(name);
+        if (key == null || this.readOnly) {
+            return;
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(transformedBytes);
+        ByteBuffer record = ByteBuffer.allocate(MixinClassCache.RECORD_HEADER_SIZE + transformedBytes.length);
+        record.putInt(MixinClassCache.MAGIC).put(key);
+        record.putInt(transformedBytes.length).putInt((int)crc.getValue()).put(transformedBytes);
+        record.flip();
+        
+        synchronized (this) {
+            if (this.writePos + record.remaining() > MixinClassCache.MAX_FILE_SIZE) {
+                return;
+            }
+            try {
+                long pos = this.writePos;
+                while (record.hasRemaining()) {
+                    pos += this.channel.write(record, pos);
+                }
+                this.writePos = pos;
+                MixinClassCache.cacheStores.incrementAndGet();
+            } catch (IOException ex) {
+                this.readOnly = true;
+                MixinClassCache.logger.warn("Error writing class cache {}, no further classes will be cached: {}", this.file, ex.getMessage());
+            }
+        }
+    }
+    
+    private static byte[] getKey(byte[] environment, String name, byte[] classBytes) {
+        MessageDigest digest = MixinClassCache.newDigest();
+        digest.update(environment);
+        digest.update(name.getBytes(MixinClassCache.UTF_8));
+        digest.update(classBytes);
+        
+        ClassReader reader = new ClassReader(classBytes);
+        Set<String> visited = new HashSet<String>();
+        MixinClassCache.updateHierarchy(digest, reader.getSuperName(), visited);
+        for (String iface : reader.getInterfaces()) {
+            MixinClassCache.updateHierarchy(digest, iface, visited);
+        }
+        return digest.digest();
+    }
+    
+    /**
+     * Update the digest with the declared members and supertypes of the
+     * specified class and, recursively, of its own supertypes. Members and
+     * interfaces added by mixins are skipped since the mixins are already
+     * covered by the environment digest, and whether they are present depends
+     * on the order in which classes happen to be transformed.
+     */
+    private static void updateHierarchy(MessageDigest digest, String className, Set<String> visited) {
+        if (className == null || !visited.add(className)) {
+            return;
+        }
+        
+        digest.update(className.getBytes(MixinClassCache.UTF_8));
+        ClassInfo info = ClassInfo.forName(className);
+        if (info == null) {
+            digest.update((byte)0);
+            return;
+        }
+        
+        Set<String> interfaces = new TreeSet<String>(info.getInterfaces());
+        for (MixinInfo mixin : info.getMixins()) {
+            interfaces.removeAll(mixin.getInterfaces());
+        }
+        List<String> members = new ArrayList<String>();
+        for (Method method : info.getMethods()) {
+            if (!method.isInjected()) {
+                members.add(method.getOriginalName() + method.getOriginalDesc() + ":" + method.getAccess());
+            }
+        }
+        for (Field field : info.getFields()) {
+            if (!field.isInjected()) {
+                members.add(field.getOriginalName() + ":" + field.getOriginalDesc() + ":" + field.getAccess());
+            }
+        }
+        Collections.sort(members);
+        
+        StringBuilder sb = new StringBuilder().append(info.getAccess()).append(';').append(info.getSuperName()).append(';');
+        for (String iface : interfaces) {
+            sb.append(iface).append(',');
+        }
+        for (String member : members) {
+            sb.append(';').append(member);
+        }
+        digest.update((byte)1);
+        digest.update(sb.toString().getBytes(MixinClassCache.UTF_8));
+        
+        MixinClassCache.updateHierarchy(digest, info.getSuperName(), visited);
+        for (String iface : interfaces) {
+            MixinClassCache.updateHierarchy(digest, iface, visited);
+        }
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -168,9 +169,10 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     private final transient Map<String, List<MixinInfo>> mixinMapping = new HashMap<String, List<MixinInfo>>();
     
     /**
-     * Targets for this configuration which haven't been mixed yet 
+     * Targets for this configuration which haven't been mixed yet, removed
+     * from concurrently when mixins are applied on multiple threads
      */
-    private final transient Set<String> unhandledTargets = new HashSet<String>();
+    private final transient Set<String> unhandledTargets = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     
     /**
      * Mixins which have been parsed but not yet prepared 
@@ -1094,6 +1096,21 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
     
+    /**
+     * Get the path of the reference map resource for this config, only valid
+     * once the config is prepared
+     */
+    String getRefMapperConfig() {
+        return this.refMapperConfig;
+    }
+    
+    /**
+     * Get all mixins in this config which were successfully prepared
+     */
+    List<MixinInfo> getMixins() {
+        return Collections.<MixinInfo>unmodifiableList(this.mixins);
+    }
+    
     /* (non-Javadoc)
      * @see org.spongepowered.asm.mixin.transformer.IMixinConfig#getPlugin()
      */
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -122,6 +123,10 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
             super(access, name, desc, signature, exceptions, MixinInfo.this);
         }
         
+        public MixinMethodNode(int access, String name, String desc, String signature, String[] exceptions, String originalName) {
+            super(access, name, desc, signature, exceptions, originalName, MixinInfo.this);
+        }
+        
         @Override
         public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
             // Create a shallow copy of the bootstrap method args because the
@@ -162,10 +167,30 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         public final List<MixinMethodNode> mixinMethods;
         
+        /**
+         * Methods of the node being copied, only set whilst copying, used to
+         * carry the original method names across to the copied methods
+         */
+        private Iterator<MixinMethodNode> templateMethods;
+        
         MixinClassNode(MixinInfo mixin) {
             this(ASM.API_VERSION);
         }
         
+        /**
+         * Create a copy of the supplied node. Methods in the copy keep the
+         * original names of the methods in the template, even if the template
+         * methods have since been renamed by the preprocessor.
+         * 
+         * @param template node to copy
+         */
+        MixinClassNode(MixinClassNode template) {
+            this(ASM.API_VERSION);
+            this.templateMethods = template.mixinMethods.iterator();
+            template.accept(this);
+            this.templateMethods = null;
+        }
+        
         @SuppressWarnings("unchecked")
         protected MixinClassNode(int api) {
             super(api);
@@ -182,7 +207,8 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         @Override
         public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
-            MethodNode method = new MixinMethodNode(access, name, desc, signature, exceptions);
+            String originalName = this.templateMethods != null ? this.templateMethods.next().getOriginalName() : name;
+            MethodNode method = new MixinMethodNode(access, name, desc, signature, exceptions, originalName);
             this.methods.add(method);
             return method;
         }
@@ -241,6 +267,12 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          * application
          */
         protected MixinClassNode validationClassNode;
+        
+        /**
+         * Prepared ClassNode used as the template for each target context,
+         * created the first time the mixin is applied
+         */
+        private MixinClassNode template;
 
         State(ClassNode classNode) {
             this(classNode, null);
@@ -300,17 +332,39 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         }
 
         /**
-         * Gets a new tree from the bytecode
+         * Gets a new tree from the bytecode. Visiting a tree reuses the labels
+         * of the source tree, so copies are made under the state monitor.
          *
          * @param flags Flags passed into classReader
          * @return Tree representing the bytecode
          */
-        MixinClassNode createClassNode(int flags) {
+        synchronized MixinClassNode createClassNode(int flags) {
             MixinClassNode mixinClassNode = new MixinClassNode(MixinInfo.this);
             this.classNode.accept(mixinClassNode);
             return mixinClassNode;
         }
 
+        /**
+         * Gets a new tree for applying this mixin to a target. The first pass
+         * of the preprocessor does not depend on the target, so it is run once
+         * on a template tree which is then copied for each target. Copying the
+         * template resets and reuses the labels of the template's instructions,
+         * so the copy is made under the state monitor as well, otherwise
+         * concurrent copies end up sharing labels.
+         *
+         * @param type Mixin Type
+         * @param extensions Transformer extensions
+         * @return Prepared tree, owned by the caller
+         */
+        synchronized MixinClassNode createPreparedClassNode(SubType type, Extensions extensions) {
+            if (this.template == null) {
+                MixinClassNode template = this.createClassNode(ClassReader.EXPAND_FRAMES);
+                type.createPreProcessor(template).prepare(extensions);
+                this.template = template;
+            }
+            return new MixinClassNode(this.template);
+        }
+
         /**
          * Performs pre-flight checks on the mixin
          * 
@@ -1284,9 +1338,9 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @return new context
      */
     MixinTargetContext createContextFor(TargetClassContext target) {
-        MixinClassNode classNode = this.getClassNode(ClassReader.EXPAND_FRAMES);
         Section preTimer = this.profiler.begin("pre");
-        MixinTargetContext context = this.type.createPreProcessor(classNode).prepare(this.extensions).createContextFor(target);
+        MixinClassNode classNode = this.getState().createPreparedClassNode(this.type, this.extensions);
+        MixinTargetContext context = this.type.createPreProcessor(classNode).markPrepared().createContextFor(target);
         preTimer.end();
         return context;
     }
@@ -1379,6 +1433,17 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         this.info.addAppliedMixin(this);
     }
     
+    /**
+     * Called in place of {@link #postApply} when the transformed bytecode for
+     * a target was supplied by the class cache instead of by applying mixins.
+     * Only mixins from configs without a plugin are cached, so there is no
+     * plugin to notify.
+     */
+    void postApplyCached(String transformedName) {
+        this.parent.postApply(transformedName, null);
+        this.info.addAppliedMixin(this);
+    }
+    
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
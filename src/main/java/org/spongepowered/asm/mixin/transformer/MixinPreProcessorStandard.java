@@ -200,6 +200,20 @@ class MixinPreProcessorStandard {
         return this;
     }
 
+    /**
+     * Mark this preprocessor as prepared without running the first pass, for
+     * use when the class node is a copy of a template which was already
+     * prepared. The first pass is not idempotent (shadow prefixes and soft
+     * implementations rename methods) so it must not be run twice on the same
+     * tree.
+     * 
+     * @return fluent
+     */
+    final MixinPreProcessorStandard markPrepared() {
+        this.prepared = true;
+        return this;
+    }
+
     protected void prepareInnerClasses(Extensions extensions) {
         InnerClassGenerator icg = extensions.<InnerClassGenerator>getGenerator(InnerClassGenerator.class);
         for (String targetClassName : this.mixin.getDeclaredTargetClasses()) {
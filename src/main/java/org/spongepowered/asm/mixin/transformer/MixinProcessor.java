@@ -24,13 +24,27 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.MixinEnvironment;
 import org.spongepowered.asm.mixin.MixinEnvironment.Option;
@@ -51,19 +65,28 @@ import org.spongepowered.asm.mixin.transformer.MixinConfig.IListener;
 import org.spongepowered.asm.mixin.transformer.MixinCoprocessor.ProcessResult;
 import org.spongepowered.asm.mixin.transformer.MixinInfo.Variant;
 import org.spongepowered.asm.mixin.transformer.ext.Extensions;
+import org.spongepowered.asm.mixin.transformer.ext.IExtension;
 import org.spongepowered.asm.mixin.transformer.ext.IHotSwap;
 import org.spongepowered.asm.mixin.transformer.ext.extensions.ExtensionClassExporter;
 import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
+import org.spongepowered.asm.mixin.transformer.meta.MixinProxy;
 import org.spongepowered.asm.mixin.transformer.throwables.IllegalClassLoadError;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinTransformerError;
 import org.spongepowered.asm.mixin.transformer.throwables.ReEntrantTransformerError;
 import org.spongepowered.asm.service.IMixinAuditTrail;
 import org.spongepowered.asm.service.IMixinService;
+import org.spongepowered.asm.service.ISyntheticClassRegistry;
 import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.transformers.MixinClassReader;
+import org.spongepowered.asm.transformers.MixinClassWriter;
 import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Constants;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.ReEntranceLock;
+import org.spongepowered.asm.util.asm.ClassNodeAdapter;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents.Event;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 
@@ -139,6 +162,12 @@ class MixinProcessor {
         
     }
 
+    /**
+     * File in the debug output directory to which the profiler summary is
+     * written during audit
+     */
+    private static final String PROFILER_DUMP_FILE = "profiler.json";
+
     /**
      * Log all the things
      */
@@ -154,6 +183,12 @@ class MixinProcessor {
      */
     private final List<MixinConfig> configs = new ArrayList<MixinConfig>();
     
+    /**
+     * Index of mixin targets and mixin packages for all prepared configs,
+     * rebuilt whenever configs are prepared
+     */
+    private volatile MixinTargetIndex index = MixinTargetIndex.EMPTY;
+    
     /**
      * Uninitialised mixin configuration bundles 
      */
@@ -164,6 +199,14 @@ class MixinProcessor {
      */
     private final ReEntranceLock lock;
     
+    /**
+     * Barrier between config selection/preparation and mixin application.
+     * Preparing configs always requires the write lock, applying mixins takes
+     * the read lock when {@link Option#CONCURRENT_APPLY concurrent application}
+     * is enabled and the write lock otherwise.
+     */
+    private final ReentrantReadWriteLock prepareLock = new ReentrantReadWriteLock();
+    
     /**
      * Session ID, used as a check when parsing {@link MixinMerged} annotations
      * to prevent them being applied at compile time by people trying to
@@ -199,7 +242,7 @@ class MixinProcessor {
     /**
      * Current environment 
      */
-    private MixinEnvironment currentEnvironment;
+    private volatile MixinEnvironment currentEnvironment;
 
     /**
      * Logging level for verbose messages 
@@ -209,12 +252,18 @@ class MixinProcessor {
     /**
      * Handling an error state, do not process further mixins
      */
-    private boolean errorState = false;
+    private volatile boolean errorState = false;
     
     /**
      * Number of classes transformed in the current phase
      */
-    private int transformedCount = 0;
+    private final AtomicInteger transformedCount = new AtomicInteger();
+
+    /**
+     * Persistent class cache, null unless {@link Option#CLASS_CACHE} is
+     * enabled
+     */
+    private final MixinClassCache classCache;
 
     /**
      * ctor 
@@ -232,6 +281,12 @@ class MixinProcessor {
         
         this.profiler = Profiler.getProfiler("mixin");
         this.auditTrail = this.service.getAuditTrail();
+        
+        if (environment.getOption(Option.CLASS_CACHE) && hotSwapper == null) {
+            this.classCache = MixinClassCache.open(new File(environment.getOptionValue(Option.CLASS_CACHE_DIR)));
+        } else {
+            this.classCache = null;
+        }
     }
 
     /**
@@ -242,8 +297,13 @@ class MixinProcessor {
     public void audit(MixinEnvironment environment) {
         Set<String> unhandled = new HashSet<String>();
         
-        for (MixinConfig config : this.configs) {
-            unhandled.addAll(config.getUnhandledTargets());
+        this.prepareLock.readLock().lock();
+        try {
+            for (MixinConfig config : this.configs) {
+                unhandled.addAll(config.getUnhandledTargets());
+            }
+        } finally {
+            this.prepareLock.readLock().unlock();
         }
 
         ILogger auditLogger = MixinService.getService().getLogger("mixin.audit");
@@ -257,29 +317,42 @@ class MixinProcessor {
             }
         }
         
-        for (MixinConfig config : this.configs) {
-            for (String target : config.getUnhandledTargets()) {
-                ClassAlreadyLoadedException ex = new ClassAlreadyLoadedException(target + " was already classloaded");
-                auditLogger.error("Could not force-load " + target, ex);
+        this.prepareLock.readLock().lock();
+        try {
+            for (MixinConfig config : this.configs) {
+                for (String target : config.getUnhandledTargets()) {
+                    ClassAlreadyLoadedException ex = new ClassAlreadyLoadedException(target + " was already classloaded");
+                    auditLogger.error("Could not force-load " + target, ex);
+                }
             }
+        } finally {
+            this.prepareLock.readLock().unlock();
         }
         
         if (environment.getOption(Option.DEBUG_PROFILER)) {
             Profiler.printAuditSummary();
+            try {
+                Profiler.dumpAuditSummary(new File(Constants.DEBUG_OUTPUT_DIR, MixinProcessor.PROFILER_DUMP_FILE));
+            } catch (IOException ex) {
+                auditLogger.warn("Could not write profiler summary: {}", ex.getMessage());
+            }
         }
     }
 
-    synchronized boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
+    boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
         if (name == null || this.errorState) {
             return false;
         }
         
         boolean locked = this.lock.push().check();
         Section mixinTimer = this.profiler.begin("mixin");
+        Lock applyLock = null;
 
         if (locked) {
+            applyLock = this.acquireApplyLock(environment);
             for (MixinConfig config : this.pendingConfigs) {
                 if (config.hasPendingMixinsFor(name)) {
+                    applyLock.unlock();
                     ReEntrantTransformerError error = new ReEntrantTransformerError("Re-entrance error.");
                     MixinProcessor.logger.warn("Re-entrance detected during prepare phase, this will cause serious problems.", error);
                     throw error;
@@ -287,7 +360,7 @@ class MixinProcessor {
             }
         } else {
             try {
-                this.checkSelect(environment);
+                applyLock = this.selectAndAcquireApplyLock(environment);
             } catch (Exception ex) {
                 this.lock.pop();
                 mixinTimer.end();
@@ -312,17 +385,8 @@ class MixinProcessor {
                 return transformed;
             }
 
-            MixinConfig packageOwnedByConfig = null;
-            
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(name)) {
-                    int packageLen = packageOwnedByConfig != null ? packageOwnedByConfig.getMixinPackage().length() : 0;
-                    if (config.getMixinPackage().length() > packageLen) {
-                        packageOwnedByConfig = config;
-                    }
-                    continue;
-                }
-            }                
+            MixinTargetIndex index = this.index;
+            MixinConfig packageOwnedByConfig = index.getPackageOwner(name);
 
             if (packageOwnedByConfig != null) {
                 // AMS - Temp passthrough for injection points and dynamic selectors. Moving to service in 0.9
@@ -334,17 +398,10 @@ class MixinProcessor {
                 throw new IllegalClassLoadError(this.getInvalidClassError(name, targetClassNode, packageOwnedByConfig));
             }
 
-            SortedSet<MixinInfo> mixins = null;
-            for (MixinConfig config : this.configs) {
-                if (config.hasMixinsFor(name)) {
-                    if (mixins == null) {
-                        mixins = new TreeSet<MixinInfo>();
-                    }
-                    
-                    // Get and sort mixins for the class
-                    mixins.addAll(config.getMixinsFor(name));
-                }
-            }
+            // Mixins in the index are already sorted, copy them since the
+            // applicator removes mixins which fail to apply
+            SortedSet<MixinInfo> indexedMixins = index.getMixinsFor(name);
+            SortedSet<MixinInfo> mixins = indexedMixins != null ? new TreeSet<MixinInfo>(indexedMixins) : null;
             
             if (mixins != null) {
                 // Re-entrance is "safe" as long as we don't need to apply any mixins, if there are mixins then we need to panic now
@@ -359,10 +416,15 @@ class MixinProcessor {
                 }
 
                 try {
+                    long applyStart = System.nanoTime();
+                    Event applyEvent = FlightRecorderEvents.TARGET_APPLY.begin().set(0, name).set(1, mixins.size());
                     TargetClassContext context = new TargetClassContext(environment, this.extensions, this.sessionId, name, targetClassNode, mixins);
                     context.applyMixins();
+                    applyEvent.commit();
+                    this.recordTargetTime(name, System.nanoTime() - applyStart, mixins);
                     
-                    transformed |= this.coprocessors.postProcess(name, targetClassNode);
+                    boolean postProcessed = this.coprocessors.postProcess(name, targetClassNode);
+                    transformed |= postProcessed;
 
                     if (context.isExported()) {
                         this.extensions.export(environment, context.getClassName(), context.isExportForced(), context.getClassNode());
@@ -372,7 +434,12 @@ class MixinProcessor {
                         this.handleMixinApplyError(context.getClassName(), suppressed, environment);
                     }
 
-                    this.transformedCount++;
+                    if (this.classCache != null) {
+                        this.classCache.setCacheable(name, !result.isTransformed() && !postProcessed && context.getSuppressedExceptions().isEmpty()
+                                && mixins.size() == indexedMixins.size() && this.isCacheable(targetClassNode, mixins));
+                    }
+
+                    this.transformedCount.incrementAndGet();
                     transformed = true;
                 } catch (InvalidMixinException th) {
                     this.dumpClassOnFailure(name, targetClassNode, environment);
@@ -391,12 +458,238 @@ class MixinProcessor {
             this.dumpClassOnFailure(name, targetClassNode, environment);
             throw new MixinTransformerError("An unexpected critical error was encountered", th);
         } finally {
+            applyLock.unlock();
             this.lock.pop();
             mixinTimer.end();
         }
         return transformed;
     }
 
+    /**
+     * Get the transformed bytes for the specified class from the persistent
+     * class cache, if the cache is enabled and contains an entry for the class
+     * in the current environment. When an entry is found the bookkeeping
+     * normally performed when mixins are applied (class metadata, audit trail,
+     * unhandled targets and export) is performed using the cached bytes.
+     * Classes are never read from the cache whilst extensions which inspect
+     * the applied class (such as verification) are active.
+     * 
+     * @param environment Current environment
+     * @param name Class transformed name
+     * @param classBytes Untransformed class bytes
+     * @return transformed class bytes or null if the class must be transformed
+     *      normally
+     */
+    byte[] getCachedClass(MixinEnvironment environment, String name, byte[] classBytes) {
+        if (this.classCache == null || name == null || this.errorState || this.hasApplyExtensions()) {
+            return null;
+        }
+        
+        // Leave re-entrant calls to applyMixins, which knows how to handle them
+        if (this.lock.push().check()) {
+            this.lock.pop();
+            return null;
+        }
+        
+        Section cacheTimer = this.profiler.begin("cache");
+        Lock applyLock = null;
+        try {
+            applyLock = this.selectAndAcquireApplyLock(environment);
+        } catch (Exception ex) {
+            this.lock.pop();
+            cacheTimer.end();
+            throw new MixinException(ex);
+        }
+        
+        try {
+            SortedSet<MixinInfo> mixins = this.index.getMixinsFor(name);
+            byte[] cachedBytes = mixins != null ? this.classCache.get(name, classBytes) : null;
+            if (cachedBytes == null) {
+                return null;
+            }
+            
+            ClassNode classNode = new ClassNode();
+            new MixinClassReader(cachedBytes, name).accept(classNode, ClassReader.EXPAND_FRAMES);
+            if (this.updateSessionId(classNode)) {
+                ClassWriter writer = new MixinClassWriter(0);
+                classNode.accept(writer);
+                cachedBytes = writer.toByteArray();
+            }
+            ClassInfo.fromCachedClass(classNode);
+            
+            for (MixinInfo mixin : mixins) {
+                mixin.postApplyCached(name);
+                if (this.auditTrail != null) {
+                    this.auditTrail.onApply(name, mixin.toString());
+                }
+            }
+            
+            if (environment.getOption(Option.DEBUG_EXPORT)) {
+                this.extensions.export(environment, name, false, classNode);
+            }
+            
+            this.transformedCount.incrementAndGet();
+            return cachedBytes;
+        } finally {
+            applyLock.unlock();
+            this.lock.pop();
+            cacheTimer.end();
+        }
+    }
+    
+    /**
+     * Store the transformed bytes for the specified class in the persistent
+     * class cache. Has no effect unless the class cache is enabled and the
+     * most recent application of mixins to the class could be cached.
+     * 
+     * @param name Class transformed name
+     * @param transformedBytes Transformed class bytes
+     */
+    void cacheClass(String name, byte[] transformedBytes) {
+        if (this.classCache != null) {
+            this.classCache.store(name, transformedBytes);
+        }
+    }
+    
+    /**
+     * Get whether any extension other than the class exporter is active.
+     * Extensions expect to see each target in {@link
+     * IExtension#preApply} and {@link IExtension#postApply}, which only happens
+     * when the mixins are actually applied, so the cache is bypassed.
+     */
+    private boolean hasApplyExtensions() {
+        for (IExtension extension : this.extensions.getActiveExtensions()) {
+            if (!(extension instanceof ExtensionClassExporter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Cached classes carry the session id of the session which transformed
+     * them in their {@link MixinMerged} and {@link MixinProxy} annotations,
+     * replace it with the current session id so that the annotations are
+     * treated as belonging to this session if the class is transformed again.
+     * 
+     * @param classNode cached class
+     * @return true if any annotation was changed
+     */
+    private boolean updateSessionId(ClassNode classNode) {
+        boolean changed = false;
+        for (MethodNode method : classNode.methods) {
+            changed |= this.updateSessionId(Annotations.getVisible(method, MixinMerged.class));
+            changed |= this.updateSessionId(Annotations.getVisible(method, MixinProxy.class));
+        }
+        for (FieldNode field : classNode.fields) {
+            changed |= this.updateSessionId(Annotations.getVisible(field, MixinMerged.class));
+        }
+        return changed;
+    }
+    
+    private boolean updateSessionId(AnnotationNode annotation) {
+        String sessionId = Annotations.<String>getValue(annotation, "sessionId");
+        if (sessionId == null || sessionId.equals(this.sessionId)) {
+            return false;
+        }
+        Annotations.setValue(annotation, "sessionId", this.sessionId);
+        return true;
+    }
+    
+    /**
+     * Get whether the result of applying the specified mixins to a class
+     * depends only on the class and the mixins themselves. Classes with plugin
+     * mixins, nest mates, or references to synthetic classes depend on state
+     * from the current session and cannot be cached.
+     */
+    private boolean isCacheable(ClassNode targetClassNode, SortedSet<MixinInfo> mixins) {
+        for (MixinInfo mixin : mixins) {
+            if (mixin.getConfig().getPlugin() != null) {
+                return false;
+            }
+        }
+        
+        if (ClassNodeAdapter.getNestHostClass(targetClassNode) != null || ClassNodeAdapter.getNestMembers(targetClassNode) != null) {
+            return false;
+        }
+        
+        ISyntheticClassRegistry registry = this.extensions.getSyntheticClassRegistry();
+        for (InnerClassNode innerClass : targetClassNode.innerClasses) {
+            if (registry.findSyntheticClass(innerClass.name) != null) {
+                return false;
+            }
+        }
+        for (MethodNode method : targetClassNode.methods) {
+            for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+                AbstractInsnNode insn = iter.next();
+                String owner = null;
+                if (insn instanceof MethodInsnNode) {
+                    owner = ((MethodInsnNode)insn).owner;
+                } else if (insn instanceof FieldInsnNode) {
+                    owner = ((FieldInsnNode)insn).owner;
+                } else if (insn instanceof TypeInsnNode) {
+                    owner = ((TypeInsnNode)insn).desc;
+                }
+                if (owner != null && registry.findSyntheticClass(owner) != null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Acquire the lock under which mixins are applied, without selecting any
+     * new configs. Used when re-entering the processor.
+     * 
+     * @param environment current environment
+     * @return acquired lock, which must be released once application completes
+     */
+    private Lock acquireApplyLock(MixinEnvironment environment) {
+        Lock applyLock = environment.getOption(Option.CONCURRENT_APPLY) ? this.prepareLock.readLock() : this.prepareLock.writeLock();
+        applyLock.lock();
+        return applyLock;
+    }
+
+    /**
+     * Select and prepare any pending configs if required and acquire the lock
+     * under which mixins are applied. When concurrent application is enabled
+     * the write lock is only taken if there is something to prepare, and is
+     * then downgraded to the read lock once preparation is complete.
+     * 
+     * @param environment current environment
+     * @return acquired lock, which must be released once application completes
+     */
+    private Lock selectAndAcquireApplyLock(MixinEnvironment environment) {
+        Lock writeLock = this.prepareLock.writeLock();
+        if (!environment.getOption(Option.CONCURRENT_APPLY)) {
+            writeLock.lock();
+            try {
+                this.checkSelect(environment);
+            } catch (RuntimeException ex) {
+                writeLock.unlock();
+                throw ex;
+            }
+            return writeLock;
+        }
+        
+        Lock readLock = this.prepareLock.readLock();
+        readLock.lock();
+        if (!this.isSelectRequired(environment)) {
+            return readLock;
+        }
+
+        readLock.unlock();
+        writeLock.lock();
+        try {
+            this.checkSelect(environment);
+            readLock.lock();
+        } finally {
+            writeLock.unlock();
+        }
+        return readLock;
+    }
+
     private String getInvalidClassError(String name, ClassNode targetClassNode, MixinConfig ownedByConfig) {
         if (ownedByConfig.getClasses().contains(name)) {
             return String.format("Illegal classload request for %s. Mixin is defined in %s and cannot be referenced directly", name, ownedByConfig);
@@ -427,27 +720,30 @@ class MixinProcessor {
             throw new MixinApplyError("Cannot reload mixin if re-entrant lock entered");
         }
         List<String> targets = new ArrayList<String>();
-        for (MixinConfig config : this.configs) {
-            targets.addAll(config.reloadMixin(mixinClass, classNode));
+        this.prepareLock.writeLock().lock();
+        try {
+            for (MixinConfig config : this.configs) {
+                targets.addAll(config.reloadMixin(mixinClass, classNode));
+            }
+        } finally {
+            this.prepareLock.writeLock().unlock();
         }
         return targets;
     }
 
+    private boolean isSelectRequired(MixinEnvironment environment) {
+        return this.currentEnvironment != environment || (this.transformedCount.get() == 0 && Mixins.getUnvisitedCount() > 0);
+    }
+
     private void checkSelect(MixinEnvironment environment) {
-        if (this.currentEnvironment != environment) {
-            this.select(environment);
-            return;
-        }
-        
-        int unvisitedCount = Mixins.getUnvisitedCount();
-        if (unvisitedCount > 0 && this.transformedCount == 0) {
+        if (this.isSelectRequired(environment)) {
             this.select(environment);
         }
     }
 
     private void select(MixinEnvironment environment) {
         this.verboseLoggingLevel = (environment.getOption(Option.DEBUG_VERBOSE)) ? Level.INFO : Level.DEBUG;
-        if (this.transformedCount > 0) {
+        if (this.transformedCount.get() > 0) {
             MixinProcessor.logger.log(this.verboseLoggingLevel, "Ending {}, applied {} mixins", this.currentEnvironment, this.transformedCount);
         }
         String action = this.currentEnvironment == environment ? "Checking for additional" : "Preparing";
@@ -461,7 +757,7 @@ class MixinProcessor {
         this.extensions.select(environment);
         int totalMixins = this.prepareConfigs(environment, this.extensions);
         this.currentEnvironment = environment;
-        this.transformedCount = 0;
+        this.transformedCount.set(0);
 
         prepareTimer.end();
         
@@ -537,7 +833,9 @@ class MixinProcessor {
         for (MixinConfig config : this.pendingConfigs) {
             try {
                 MixinProcessor.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
+                Event prepareEvent = FlightRecorderEvents.CONFIG_PREPARE.begin().set(0, config.getName());
                 config.prepare(extensions);
+                prepareEvent.set(1, config.getMixinCount()).commit();
                 totalMixins += config.getMixinCount();
             } catch (InvalidMixinException ex) {
                 this.handleMixinPrepareError(config, ex, environment);
@@ -577,6 +875,11 @@ class MixinProcessor {
         this.configs.addAll(this.pendingConfigs);
         Collections.sort(this.configs);
         this.pendingConfigs.clear();
+        this.index = MixinTargetIndex.of(this.configs);
+        
+        if (this.classCache != null) {
+            this.classCache.setConfigs(environment, this.configs);
+        }
         
         return totalMixins;
     }
@@ -658,6 +961,16 @@ class MixinProcessor {
         return handlers;
     }
 
+    private void recordTargetTime(String className, long nanos, SortedSet<MixinInfo> mixins) {
+        if (this.profiler.isSlowTarget(nanos)) {
+            List<String> mixinNames = new ArrayList<String>(mixins.size());
+            for (MixinInfo mixin : mixins) {
+                mixinNames.add(mixin.getClassName());
+            }
+            this.profiler.recordTarget(className, nanos, mixinNames);
+        }
+    }
+
     private void dumpClassOnFailure(String className, ClassNode classNode, MixinEnvironment env) {
         if (env.getOption(Option.DUMP_TARGET_ON_FAILURE)) {
             ExtensionClassExporter exporter = this.extensions.<ExtensionClassExporter>getExtension(ExtensionClassExporter.class);
@@ -28,6 +28,7 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -142,6 +143,37 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
      * Shadow field list
      */
     private final Map<FieldNode, Field> shadowFields = new LinkedHashMap<FieldNode, Field>();
+    
+    /**
+     * Shadow fields indexed by name and then descriptor, built on demand and
+     * discarded when shadow fields are added
+     */
+    private Map<String, Map<String, Field>> shadowFieldIndex;
+    
+    /**
+     * Memoized descriptor transformations for field descriptors, keyed by the
+     * original descriptor. Transformations only depend on the mixin and
+     * target, so each descriptor only needs to be transformed once in each
+     * context.
+     */
+    private final Map<String, String> fieldDescriptors = new HashMap<String, String>();
+    
+    /**
+     * Memoized descriptor transformations for type instruction descriptors,
+     * which may be bare internal names
+     */
+    private final Map<String, String> typeDescriptors = new HashMap<String, String>();
+    
+    /**
+     * Memoized descriptor transformations for method descriptors
+     */
+    private final Map<String, String> methodDescriptors = new HashMap<String, String>();
+    
+    /**
+     * Memoized owner rewrites for references to fields in other classes, keyed
+     * by the original owner
+     */
+    private final Map<String, String> fieldOwners = new HashMap<String, String>();
 
     /**
      * List of methods successfully merged from this mixin
@@ -223,6 +255,7 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
      */
     void addShadowField(FieldNode fieldNode, Field fieldInfo) {
         this.shadowFields.put(fieldNode, fieldInfo);
+        this.shadowFieldIndex = null;
     }
     
     /**
@@ -627,10 +660,18 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
                 fieldRef.setName(field.getName());
             }
         } else {
-            ClassInfo fieldOwner = ClassInfo.forName(fieldRef.getOwner());
-            if (fieldOwner.isMixin()) {
-                ClassInfo actualOwner = this.targetClassInfo.findCorrespondingType(fieldOwner);
-                fieldRef.setOwner(actualOwner != null ? actualOwner.getName() : this.getTarget().getClassRef());
+            String owner = this.fieldOwners.get(fieldRef.getOwner());
+            if (owner == null) {
+                owner = fieldRef.getOwner();
+                ClassInfo fieldOwner = ClassInfo.forName(owner);
+                if (fieldOwner.isMixin()) {
+                    ClassInfo actualOwner = this.targetClassInfo.findCorrespondingType(fieldOwner);
+                    owner = actualOwner != null ? actualOwner.getName() : this.getTarget().getClassRef();
+                }
+                this.fieldOwners.put(fieldRef.getOwner(), owner);
+            }
+            if (!owner.equals(fieldRef.getOwner())) {
+                fieldRef.setOwner(owner);
             }
         }
     }
@@ -645,31 +686,51 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
             return;
         }
         
-        for (Entry<FieldNode, Field> shadow : this.shadowFields.entrySet()) {
-            FieldNode shadowFieldNode = shadow.getKey();
-            if (!shadowFieldNode.desc.equals(fieldNode.desc) || !shadowFieldNode.name.equals(fieldNode.name)) {
-                continue;
-            }
-            Field shadowField = shadow.getValue();
-            if (shadowField.isDecoratedFinal()) {
-                if (shadowField.isDecoratedMutable()) {
-                    if (this.mixin.getParent().getEnvironment().getOption(Option.DEBUG_VERBOSE)) {
-                        MixinTargetContext.logger.warn("Write access to @Mutable @Final field {} in {}::{}", shadowField, this.mixin, method.name);
-                    }                    
-                } else {
-                    if (Constants.CTOR.equals(method.name) || Constants.CLINIT.equals(method.name)) {
-                        MixinTargetContext.logger.warn("@Final field {} in {} should be final", shadowField, this.mixin);
-                    } else {
-                        MixinTargetContext.logger.error("Write access detected to @Final field {} in {}::{}", shadowField, this.mixin, method.name);
-                        if (this.mixin.getParent().getEnvironment().getOption(Option.DEBUG_VERIFY)) {
-                            throw new InvalidMixinException(this.mixin, "Write access detected to @Final field " + shadowField + " in " + this.mixin
-                                    + "::" + method.name);
-                        }
-                    }                    
+        Field shadowField = this.getShadowField(fieldNode.name, fieldNode.desc);
+        if (shadowField == null || !shadowField.isDecoratedFinal()) {
+            return;
+        }
+        
+        if (shadowField.isDecoratedMutable()) {
+            if (this.mixin.getParent().getEnvironment().getOption(Option.DEBUG_VERBOSE)) {
+                MixinTargetContext.logger.warn("Write access to @Mutable @Final field {} in {}::{}", shadowField, this.mixin, method.name);
+            }                    
+        } else {
+            if (Constants.CTOR.equals(method.name) || Constants.CLINIT.equals(method.name)) {
+                MixinTargetContext.logger.warn("@Final field {} in {} should be final", shadowField, this.mixin);
+            } else {
+                MixinTargetContext.logger.error("Write access detected to @Final field {} in {}::{}", shadowField, this.mixin, method.name);
+                if (this.mixin.getParent().getEnvironment().getOption(Option.DEBUG_VERIFY)) {
+                    throw new InvalidMixinException(this.mixin, "Write access detected to @Final field " + shadowField + " in " + this.mixin
+                            + "::" + method.name);
+                }
+            }                    
+        }
+    }
+    
+    /**
+     * Find the shadow field with the specified name and descriptor
+     * 
+     * @param name field name
+     * @param desc field descriptor
+     * @return shadow field or null if there is no matching shadow field
+     */
+    private Field getShadowField(String name, String desc) {
+        if (this.shadowFieldIndex == null) {
+            this.shadowFieldIndex = new HashMap<String, Map<String, Field>>();
+            for (Entry<FieldNode, Field> shadow : this.shadowFields.entrySet()) {
+                Map<String, Field> fields = this.shadowFieldIndex.get(shadow.getKey().name);
+                if (fields == null) {
+                    fields = new HashMap<String, Field>();
+                    this.shadowFieldIndex.put(shadow.getKey().name, fields);
+                }
+                if (!fields.containsKey(shadow.getKey().desc)) {
+                    fields.put(shadow.getKey().desc, shadow.getValue());
                 }
             }
-            return;
         }
+        Map<String, Field> fields = this.shadowFieldIndex.get(name);
+        return fields != null ? fields.get(desc) : null;
     }
     
     /**
@@ -963,6 +1024,16 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
     }
     
     private String transformSingleDescriptor(String desc, boolean isObject) {
+        Map<String, String> descriptors = isObject ? this.typeDescriptors : this.fieldDescriptors;
+        String transformed = descriptors.get(desc);
+        if (transformed == null) {
+            transformed = this.remapSingleDescriptor(desc, isObject);
+            descriptors.put(desc, transformed);
+        }
+        return transformed;
+    }
+    
+    private String remapSingleDescriptor(String desc, boolean isObject) {
         IActivity descriptorActivity = this.activities.begin("desc=%s", desc);
         boolean isArray = false;
         String type = desc;
@@ -1011,6 +1082,15 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
     }
     
     private String transformMethodDescriptor(String desc) {
+        String transformed = this.methodDescriptors.get(desc);
+        if (transformed == null) {
+            transformed = this.remapMethodDescriptor(desc);
+            this.methodDescriptors.put(desc, transformed);
+        }
+        return transformed;
+    }
+    
+    private String remapMethodDescriptor(String desc) {
         StringBuilder newDesc = new StringBuilder();
         newDesc.append('(');
         for (Type arg : Type.getArgumentTypes(desc)) {
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Index of all prepared mixin configs, used by the {@link MixinProcessor} to
+ * answer "which mixins target this class" and "which config owns the package
+ * this class is in" without visiting every config for every class which passes
+ * through the transformer. The index is immutable once built and is rebuilt
+ * whenever new configs are prepared.
+ */
+final class MixinTargetIndex {
+
+    /**
+     * Node in the mixin package trie, each node represents one segment of a
+     * package name
+     */
+    static final class PackageNode {
+
+        /**
+         * Child packages, keyed by segment name
+         */
+        private final Map<String, PackageNode> children = new HashMap<String, PackageNode>();
+
+        /**
+         * Config which declares this package as its mixin package, if any
+         */
+        MixinConfig owner;
+
+        PackageNode getChild(String segment) {
+            return this.children.get(segment);
+        }
+
+        PackageNode getOrCreateChild(String segment) {
+            PackageNode child = this.children.get(segment);
+            if (child == null) {
+                child = new PackageNode();
+                this.children.put(segment, child);
+            }
+            return child;
+        }
+
+    }
+
+    /**
+     * Empty index, used before any configs have been prepared
+     */
+    static final MixinTargetIndex EMPTY = new MixinTargetIndex();
+
+    /**
+     * Target class name to mixins targetting that class, merged from all
+     * configs and sorted in application order
+     */
+    private final Map<String, SortedSet<MixinInfo>> targets = new HashMap<String, SortedSet<MixinInfo>>();
+
+    /**
+     * Root of the mixin package trie
+     */
+    private final PackageNode packages = new PackageNode();
+
+    private MixinTargetIndex() {
+    }
+
+    /**
+     * Build a new index from the supplied configs. Configs should be supplied
+     * in priority order, if more than one config declares the same mixin
+     * package then the first config wins.
+     *
+     * @param configs prepared configs
+     * @return new index
+     */
+    static MixinTargetIndex of(List<MixinConfig> configs) {
+        MixinTargetIndex index = new MixinTargetIndex();
+
+        for (MixinConfig config : configs) {
+            for (String target : config.getTargets()) {
+                SortedSet<MixinInfo> mixins = index.targets.get(target);
+                if (mixins == null) {
+                    mixins = new TreeSet<MixinInfo>();
+                    index.targets.put(target, mixins);
+                }
+                mixins.addAll(config.getMixinsFor(target));
+            }
+
+            String mixinPackage = config.getMixinPackage();
+            if (mixinPackage.length() > 0) {
+                index.addPackage(mixinPackage, config);
+            }
+        }
+
+        for (Map.Entry<String, SortedSet<MixinInfo>> entry : index.targets.entrySet()) {
+            entry.setValue(Collections.<MixinInfo>unmodifiableSortedSet(entry.getValue()));
+        }
+
+        return index;
+    }
+
+    private void addPackage(String mixinPackage, MixinConfig config) {
+        PackageNode node = this.packages;
+        for (int start = 0, end = mixinPackage.indexOf('.'); end > -1; start = end + 1, end = mixinPackage.indexOf('.', start)) {
+            node = node.getOrCreateChild(mixinPackage.substring(start, end));
+        }
+        if (node.owner == null) {
+            node.owner = config;
+        }
+    }
+
+    /**
+     * Get whether any mixins target the specified class
+     *
+     * @param className target class name
+     * @return true if the class is a mixin target
+     */
+    boolean hasMixinsFor(String className) {
+        return this.targets.containsKey(className);
+    }
+
+    /**
+     * Get all mixins which target the specified class, in application order.
+     * The returned set is read-only, callers which need to modify the set must
+     * copy it first.
+     *
+     * @param className target class name
+     * @return mixins for the target, or null if the class is not targetted
+     */
+    SortedSet<MixinInfo> getMixinsFor(String className) {
+        return this.targets.get(className);
+    }
+
+    /**
+     * Find the config which owns the most specific mixin package containing
+     * the specified class
+     *
+     * @param className class name to check
+     * @return owning config or null if the class is not in a mixin package
+     */
+    MixinConfig getPackageOwner(String className) {
+        MixinConfig owner = null;
+        PackageNode node = this.packages;
+        for (int start = 0, end = className.indexOf('.'); end > -1; start = end + 1, end = className.indexOf('.', start)) {
+            node = node.getChild(className.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (node.owner != null) {
+                owner = node.owner;
+            }
+        }
+        return owner;
+    }
+
+}
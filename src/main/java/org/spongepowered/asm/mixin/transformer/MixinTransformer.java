@@ -226,9 +226,16 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      */
     @Override
     public byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
+        byte[] cachedBytes = this.processor.getCachedClass(environment, name, classBytes);
+        if (cachedBytes != null) {
+            return cachedBytes;
+        }
+        
         ClassNode classNode = this.readClass(name, classBytes);
         if (this.processor.applyMixins(environment, name, classNode)) {
-            return this.writeClass(classNode);
+            byte[] transformedBytes = this.writeClass(classNode);
+            this.processor.cacheClass(name, transformedBytes);
+            return transformedBytes;
         }
         return classBytes;
     }
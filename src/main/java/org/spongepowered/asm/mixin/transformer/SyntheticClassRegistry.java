@@ -24,8 +24,8 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.spongepowered.asm.mixin.throwables.MixinError;
 import org.spongepowered.asm.service.ISyntheticClassInfo;
@@ -45,7 +45,7 @@ class SyntheticClassRegistry implements ISyntheticClassRegistry {
     /**
      * Map of class name to {@link ISyntheticClassInfo} structs
      */
-    private final Map<String, ISyntheticClassInfo> classes = new HashMap<String, ISyntheticClassInfo>();
+    private final Map<String, ISyntheticClassInfo> classes = new ConcurrentHashMap<String, ISyntheticClassInfo>();
 
     SyntheticClassRegistry() {
     }
@@ -65,7 +65,7 @@ class SyntheticClassRegistry implements ISyntheticClassRegistry {
     /**
      * Package-private
      */
-    void registerSyntheticClass(ISyntheticClassInfo sci) {
+    synchronized void registerSyntheticClass(ISyntheticClassInfo sci) {
         String name = sci.getName();
         ISyntheticClassInfo info = this.classes.get(name);
         if (info != null) {
@@ -25,6 +25,7 @@
 package org.spongepowered.asm.mixin.transformer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,6 +52,8 @@ import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.ClassSignature;
+import org.spongepowered.asm.util.Constants;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 
@@ -59,6 +62,162 @@ import org.spongepowered.asm.util.perf.Profiler.Section;
  */
 final class TargetClassContext extends ClassContext implements ITargetClassContext {
 
+    /**
+     * Index of the members in one of the target class's member lists, keyed by
+     * name. Maintained incrementally by the applicator as members are merged,
+     * and rebuilt if the underlying list is found to have been modified by
+     * some other party (for example an injector adding a handler method
+     * directly to the class tree).
+     * 
+     * @param <T> member node type
+     */
+    abstract static class MemberIndex<T> {
+        
+        /**
+         * Underlying member list, owned by the class tree
+         */
+        private final List<T> members;
+        
+        /**
+         * Members by name, in the order they appear in the member list
+         */
+        private final Map<String, List<T>> index = new HashMap<String, List<T>>();
+        
+        /**
+         * Size of the member list when the index was last known to be in sync
+         * with it, -1 if the index needs to be rebuilt
+         */
+        private int indexedSize = -1;
+        
+        MemberIndex(List<T> members) {
+            this.members = members;
+        }
+        
+        abstract String getName(T member);
+        
+        abstract String getDesc(T member);
+        
+        /**
+         * Find the first member with the specified name and descriptor
+         * 
+         * @param name member name
+         * @param desc member descriptor
+         * @return matching member or null if not found
+         */
+        T find(String name, String desc) {
+            this.validate();
+            T member = this.findIndexed(name, desc);
+            if (member != null && (!name.equals(this.getName(member)) || !desc.equals(this.getDesc(member)))) {
+                // Member was renamed in-place without notifying the index
+                this.indexedSize = -1;
+                this.validate();
+                member = this.findIndexed(name, desc);
+            }
+            return member;
+        }
+        
+        /**
+         * Get all members with the specified name, in declaration order
+         * 
+         * @param name member name
+         * @return read-only list of matching members
+         */
+        List<T> getAll(String name) {
+            this.validate();
+            List<T> named = this.index.get(name);
+            return named != null ? Collections.<T>unmodifiableList(named) : Collections.<T>emptyList();
+        }
+        
+        /**
+         * Append a member to the underlying list and index it
+         * 
+         * @param member member to add
+         */
+        void add(T member) {
+            this.validate();
+            this.members.add(member);
+            this.put(member);
+            this.indexedSize++;
+        }
+        
+        /**
+         * Remove a member from the underlying list and the index
+         * 
+         * @param member member to remove
+         */
+        void remove(T member) {
+            this.validate();
+            if (this.members.remove(member)) {
+                List<T> named = this.index.get(this.getName(member));
+                if (named == null || !named.remove(member)) {
+                    this.indexedSize = -1;
+                    return;
+                }
+                this.indexedSize--;
+            }
+        }
+        
+        /**
+         * Notify the index that a member has been renamed in-place
+         * 
+         * @param member renamed member
+         * @param oldName name of the member before it was renamed
+         */
+        void renamed(T member, String oldName) {
+            List<T> named = this.index.get(oldName);
+            if (named == null || !named.remove(member)) {
+                this.indexedSize = -1;
+                return;
+            }
+            // Reinsert in list order so that the first declared member wins
+            this.reindex(this.getName(member));
+        }
+        
+        private T findIndexed(String name, String desc) {
+            List<T> named = this.index.get(name);
+            if (named != null) {
+                for (T member : named) {
+                    if (desc.equals(this.getDesc(member))) {
+                        return member;
+                    }
+                }
+            }
+            return null;
+        }
+        
+        private void put(T member) {
+            String name = this.getName(member);
+            List<T> named = this.index.get(name);
+            if (named == null) {
+                named = new ArrayList<T>(1);
+                this.index.put(name, named);
+            }
+            named.add(member);
+        }
+        
+        private void reindex(String name) {
+            this.index.remove(name);
+            for (T member : this.members) {
+                if (name.equals(this.getName(member))) {
+                    this.put(member);
+                }
+            }
+        }
+        
+        private void validate() {
+            if (this.indexedSize == this.members.size()) {
+                return;
+            }
+            this.index.clear();
+            for (T member : this.members) {
+                this.put(member);
+            }
+            this.indexedSize = this.members.size();
+        }
+        
+    }
+    
+
     /**
      * Logger
      */
@@ -134,6 +293,16 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
      */
     private final Set<FieldNode> mixinFields = new HashSet<FieldNode>();
 
+    /**
+     * Index of the methods in the target class by name and descriptor
+     */
+    private final MemberIndex<MethodNode> methodIndex;
+    
+    /**
+     * Index of the fields in the target class by name and descriptor
+     */
+    private final MemberIndex<FieldNode> fieldIndex;
+
     /**
      * Exceptions which were suppressed during mixin application because they
      * were raised by an optional mixin 
@@ -169,6 +338,28 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
         this.mixins = mixins;
         this.sourceMap = new SourceMap(classNode.sourceFile);
         this.sourceMap.addFile(this.classNode);
+        this.methodIndex = new MemberIndex<MethodNode>(classNode.methods) {
+            @Override
+            String getName(MethodNode member) {
+                return member.name;
+            }
+            
+            @Override
+            String getDesc(MethodNode member) {
+                return member.desc;
+            }
+        };
+        this.fieldIndex = new MemberIndex<FieldNode>(classNode.fields) {
+            @Override
+            String getName(FieldNode member) {
+                return member.name;
+            }
+            
+            @Override
+            String getDesc(FieldNode member) {
+                return member.desc;
+            }
+        };
     }
     
     @Override
@@ -300,6 +491,72 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
         }
     }
 
+    /**
+     * Find a method in the target class by name and descriptor
+     * 
+     * @param name method name
+     * @param desc method descriptor
+     * @return matching method or null if not found
+     */
+    MethodNode findTargetMethod(String name, String desc) {
+        return this.methodIndex.find(name, desc);
+    }
+    
+    /**
+     * Find a field in the target class by name and descriptor
+     * 
+     * @param name field name
+     * @param desc field descriptor
+     * @return matching field or null if not found
+     */
+    FieldNode findTargetField(String name, String desc) {
+        return this.fieldIndex.find(name, desc);
+    }
+    
+    /**
+     * Get all constructors in the target class
+     */
+    List<MethodNode> getConstructors() {
+        return this.methodIndex.getAll(Constants.CTOR);
+    }
+    
+    /**
+     * Add a method to the target class
+     * 
+     * @param method method to add
+     */
+    void addMethod(MethodNode method) {
+        this.methodIndex.add(method);
+    }
+    
+    /**
+     * Remove a method from the target class
+     * 
+     * @param method method to remove
+     */
+    void removeMethod(MethodNode method) {
+        this.methodIndex.remove(method);
+    }
+    
+    /**
+     * Callback from the applicator when a target method is renamed in-place
+     * 
+     * @param method renamed method
+     * @param oldName previous name of the method
+     */
+    void methodRenamed(MethodNode method, String oldName) {
+        this.methodIndex.renamed(method, oldName);
+    }
+    
+    /**
+     * Add a field to the target class
+     * 
+     * @param field field to add
+     */
+    void addField(FieldNode field) {
+        this.fieldIndex.add(field);
+    }
+
     MethodNode findMethod(Deque<String> aliases, String desc) {
         return this.findAliasedMethod(aliases, desc, true);
     }
@@ -314,10 +571,9 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
             return null;
         }
         
-        for (MethodNode target : this.classNode.methods) {
-            if (target.name.equals(alias) && target.desc.equals(desc)) {
-                return target;
-            }
+        MethodNode method = this.methodIndex.find(alias, desc);
+        if (method != null) {
+            return method;
         }
 
         if (includeMixinMethods) {
@@ -352,10 +608,9 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
             return null;
         }
         
-        for (FieldNode target : this.classNode.fields) {
-            if (target.name.equals(alias) && target.desc.equals(desc)) {
-                return target;
-            }
+        FieldNode field = this.fieldIndex.find(alias, desc);
+        if (field != null) {
+            return field;
         }
 
         if (includeMixinFields) {
@@ -376,7 +631,7 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
      * @return new or existing target handle for the supplied method
      */
     Target getTargetMethod(MethodNode method) {
-        if (!this.classNode.methods.contains(method)) {
+        if (this.methodIndex.find(method.name, method.desc) != method && !this.classNode.methods.contains(method)) {
             throw new IllegalArgumentException("Invalid target method supplied to getTargetMethod()");
         }
         
@@ -398,12 +653,17 @@ final class TargetClassContext extends ClassContext implements ITargetClassConte
         }
         this.applied = true;
         Section timer = this.profiler.begin("preapply");
-        this.preApply();
-        timer = timer.next("apply");
-        this.apply();
-        timer = timer.next("postapply");
-        this.postApply();
-        timer.end();
+        try {
+            this.preApply();
+            timer = timer.next("apply");
+            this.apply();
+            timer = timer.next("postapply");
+            this.postApply();
+        } finally {
+            timer.end();
+            // Generated LVTs for this class can't be reused once it's complete
+            Locals.evictGeneratedLocalVariableTables(this.classNode.name);
+        }
     }
     
     /**
@@ -0,0 +1,287 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.transformers.MixinClassReader;
+import org.spongepowered.asm.util.perf.Profiler;
+
+/**
+ * Caching layer which sits in front of an {@link IClassBytecodeProvider}.
+ * Bytecode providers typically re-read and re-transform a class every time
+ * its tree is requested, which is expensive when the same class is requested
+ * repeatedly for metadata. This provider retains the (transformed) bytes of
+ * recently requested classes and parses a fresh tree from them for each
+ * request, so callers remain free to modify the trees they receive.
+ * 
+ * <p>Cached bytes are evicted in least-recently-used order once their total
+ * size exceeds the configured maximum weight. Entries are tagged with the
+ * <em>generation</em> of the cache, which must be advanced by calling
+ * {@link #invalidate} whenever the output of the underlying provider may
+ * change, for example when the delegated transformer chain is altered.</p>
+ */
+public class CachingBytecodeProvider implements IClassHeaderProvider {
+
+    /**
+     * Cache key, class name plus whether transformers were run and the
+     * generation of the cache when the bytes were loaded
+     */
+    private static final class Key {
+
+        final String name;
+
+        final boolean transformed;
+
+        final int generation;
+
+        private final int hash;
+
+        Key(String name, boolean transformed, int generation) {
+            this.name = name;
+            this.transformed = transformed;
+            this.generation = generation;
+            this.hash = (31 * name.hashCode() + (transformed ? 1 : 0)) * 31 + generation;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return this.hash == other.hash && this.transformed == other.transformed && this.generation == other.generation
+                    && this.name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    /**
+     * Default maximum weight (total size of cached bytes) for the cache
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 32L * 1024L * 1024L;
+
+    /**
+     * Approximate per-entry overhead added to the size of the cached bytes
+     * when computing the weight of an entry
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    /**
+     * Cache statistics
+     */
+    private static final AtomicLong cacheHits = Profiler.getProfiler("mixin").getCounter("bytecode.cache.hit");
+    private static final AtomicLong cacheMisses = Profiler.getProfiler("mixin").getCounter("bytecode.cache.miss");
+    private static final AtomicLong cacheEvictions = Profiler.getProfiler("mixin").getCounter("bytecode.cache.evicted");
+
+    /**
+     * Underlying provider
+     */
+    private final IClassBytecodeProvider provider;
+
+    /**
+     * Maximum total weight of cached entries
+     */
+    private final long maxWeight;
+
+    /**
+     * Cached class bytes, in access order
+     */
+    private final LinkedHashMap<Key, byte[]> cache = new LinkedHashMap<Key, byte[]>(64, 0.75F, true);
+
+    /**
+     * Current total weight of cached entries
+     */
+    private long weight;
+
+    /**
+     * Current cache generation, advanced on invalidation
+     */
+    private volatile int generation;
+
+    /**
+     * Create a cache in front of the specified provider with the default
+     * maximum weight
+     * 
+     * @param provider provider to cache
+     */
+    public CachingBytecodeProvider(IClassBytecodeProvider provider) {
+        this(provider, CachingBytecodeProvider.DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Create a cache in front of the specified provider
+     * 
+     * @param provider provider to cache
+     * @param maxWeight maximum total size in bytes of the cached class bytes
+     */
+    public CachingBytecodeProvider(IClassBytecodeProvider provider, long maxWeight) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Bytecode provider cannot be null");
+        }
+        this.provider = provider;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get the provider which this cache delegates to
+     */
+    public IClassBytecodeProvider getProvider() {
+        return this.provider;
+    }
+
+    /**
+     * Get the current generation of this cache
+     */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Get the current total weight of cached entries
+     */
+    public synchronized long getWeight() {
+        return this.weight;
+    }
+
+    /**
+     * Discard all cached bytes and advance the cache generation. Loads which
+     * are in progress when this method is called will not be cached.
+     */
+    public synchronized void invalidate() {
+        this.generation++;
+        this.cache.clear();
+        this.weight = 0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassBytecodeProvider#getClassNode(
+     *      java.lang.String)
+     */
+    @Override
+    public ClassNode getClassNode(String name) throws ClassNotFoundException, IOException {
+        return this.getClassNode(name, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassBytecodeProvider#getClassNode(
+     *      java.lang.String, boolean)
+     */
+    @Override
+    public ClassNode getClassNode(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        return CachingBytecodeProvider.read(name, this.getClassBytes(name, runTransformers), ClassReader.EXPAND_FRAMES);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassHeaderProvider#getClassHeader(
+     *      java.lang.String)
+     */
+    @Override
+    public ClassNode getClassHeader(String name) throws ClassNotFoundException, IOException {
+        return CachingBytecodeProvider.read(name, this.getClassBytes(name, true), ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    }
+
+    /**
+     * Get the bytes for the specified class, from the cache if present or
+     * from the underlying provider if not. The returned array may be shared
+     * with the cache and must not be modified.
+     * 
+     * @param name full class name
+     * @param runTransformers true to run transformers when loading the class
+     * @return class bytes
+     * @throws ClassNotFoundException if class not found
+     * @throws IOException propagated
+     */
+    public byte[] getClassBytes(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        Key key = new Key(name, runTransformers, this.generation);
+        synchronized (this) {
+            byte[] bytes = this.cache.get(key);
+            if (bytes != null) {
+                CachingBytecodeProvider.cacheHits.incrementAndGet();
+                return bytes;
+            }
+        }
+
+        CachingBytecodeProvider.cacheMisses.incrementAndGet();
+        byte[] bytes = this.load(name, runTransformers);
+        if (bytes == null) {
+            throw new ClassNotFoundException(String.format("The specified class '%s' was not found", name));
+        }
+
+        synchronized (this) {
+            // Discard the bytes if the cache was invalidated during the load
+            if (key.generation == this.generation && this.cache.put(key, bytes) == null) {
+                this.weight += CachingBytecodeProvider.getWeight(bytes);
+                this.evict();
+            }
+        }
+        return bytes;
+    }
+
+    private byte[] load(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        if (this.provider instanceof IClassBytesProvider) {
+            return ((IClassBytesProvider)this.provider).getClassBytes(name, runTransformers);
+        }
+
+        ClassNode classNode = this.provider.getClassNode(name, runTransformers);
+        if (classNode == null) {
+            return null;
+        }
+        ClassWriter writer = new ClassWriter(0);
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+
+    private void evict() {
+        for (Iterator<Map.Entry<Key, byte[]>> iter = this.cache.entrySet().iterator(); this.weight > this.maxWeight && iter.hasNext();) {
+            this.weight -= CachingBytecodeProvider.getWeight(iter.next().getValue());
+            iter.remove();
+            CachingBytecodeProvider.cacheEvictions.incrementAndGet();
+        }
+    }
+
+    private static long getWeight(byte[] bytes) {
+        return bytes.length + CachingBytecodeProvider.ENTRY_OVERHEAD;
+    }
+
+    private static ClassNode read(String name, byte[] bytes, int flags) {
+        ClassNode classNode = new ClassNode();
+        new MixinClassReader(bytes, name).accept(classNode, flags);
+        return classNode;
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.service;
+
+import java.io.IOException;
+
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Optional extension to {@link IClassBytecodeProvider} for providers which can
+ * supply class metadata without reading method bodies. Class metadata is
+ * gathered for every class visited when walking a class hierarchy, most of
+ * which are never transformed, so providers which implement this interface
+ * allow the metadata cache to skip parsing code for those classes altogether.
+ * Providers which do not implement this interface will be asked for the full
+ * class tree instead.
+ */
+public interface IClassHeaderProvider extends IClassBytecodeProvider {
+
+    /**
+     * Retrieve transformed class as an ASM tree, but without method bodies.
+     * The returned tree must contain the same members, signatures and
+     * annotations as the tree returned by {@link #getClassNode(String)}, but
+     * methods will have no instructions, frames, or local variables (eg. read
+     * using <tt>ClassReader.SKIP_CODE</tt>).
+     * 
+     * @param name full class name
+     * @return tree without method bodies
+     * @throws ClassNotFoundException if class not found
+     * @throws IOException propagated
+     */
+    public abstract ClassNode getClassHeader(String name) throws ClassNotFoundException, IOException;
+
+}
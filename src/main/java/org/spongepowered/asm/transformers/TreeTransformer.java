@@ -28,6 +28,8 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.service.ILegacyClassTransformer;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents;
+import org.spongepowered.asm.util.perf.FlightRecorderEvents.Event;
 
 /**
  * Base class for transformers which work with ASM tree model
@@ -67,19 +69,24 @@ public abstract class TreeTransformer implements ILegacyClassTransformer {
      * @return generated bytecode
      */
     protected final byte[] writeClass(ClassNode classNode) {
-        // Use optimised writer for speed
-        if (this.classReader != null && this.classNode == classNode) {
+        Event event = FlightRecorderEvents.CLASS_WRITE.begin().set(0, classNode.name);
+        try {
+            // Use optimised writer for speed
+            if (this.classReader != null && this.classNode == classNode) {
+                this.classNode = null;
+                ClassWriter writer = new MixinClassWriter(this.classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+                this.classReader = null;
+                classNode.accept(writer);
+                return writer.toByteArray();
+            }
+
             this.classNode = null;
-            ClassWriter writer = new MixinClassWriter(this.classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-            this.classReader = null;
+
+            ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
             classNode.accept(writer);
             return writer.toByteArray();
+        } finally {
+            event.commit();
         }
-
-        this.classNode = null;
-
-        ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-        classNode.accept(writer);
-        return writer.toByteArray();
     }
 }
@@ -25,11 +25,16 @@
 package org.spongepowered.asm.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -51,6 +56,7 @@ import org.spongepowered.asm.mixin.transformer.ClassInfo.FrameData;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
 import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.asm.MixinVerifier;
+import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.throwables.LVTGeneratorError;
 
 /**
@@ -255,16 +261,385 @@ public final class Locals {
         
     }
 
+    /**
+     * State machine for <tt>getLocalsAt</tt>, simulates the locals frame as
+     * each instruction of a method is visited in turn
+     */
+    private static final class LocalsState {
+
+        private final ClassNode classNode;
+
+        private final MethodNode method;
+
+        private final Settings settings;
+
+        /**
+         * Frame data for the method from the class metadata
+         */
+        private final List<FrameData> frames;
+
+        /**
+         * Simulated locals frame
+         */
+        private final LocalVariableNode[] frame;
+
+        private final int initialFrameSize;
+
+        private int frameSize;
+
+        private int frameIndex = -1;
+
+        private int lastFrameSize;
+
+        private int knownFrameSize;
+
+        private VarInsnNode storeInsn;
+
+        LocalsState(ClassNode classNode, MethodNode method, Settings settings) {
+            this.classNode = classNode;
+            this.method = method;
+            this.settings = settings;
+
+            ClassInfo classInfo = ClassInfo.forName(classNode.name);
+            if (classInfo == null) {
+                throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
+            }
+            Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
+            if (methodInfo == null) {
+                throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
+            }
+            this.frames = methodInfo.getFrames();
+
+            this.frame = new LocalVariableNode[method.maxLocals];
+            int local = 0, index = 0;
+
+            // Initialise implicit "this" reference in non-static methods
+            if ((method.access & Opcodes.ACC_STATIC) == 0) {
+                this.frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
+            }
+            
+            // Initialise method arguments
+            for (Type argType : Type.getArgumentTypes(method.desc)) {
+                this.frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
+                local += argType.getSize();
+            }
+            
+            this.initialFrameSize = local;
+            this.frameSize = local;
+            this.lastFrameSize = local;
+            this.knownFrameSize = local;
+        }
+
+        /**
+         * Advance the state machine over the specified instruction
+         * 
+         * @param insn next instruction in the method
+         */
+        void visit(AbstractInsnNode insn) {
+            // Tick the zombies
+            for (int l = 0; l < this.frame.length; l++) {
+                if (this.frame[l] instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)this.frame[l];
+                    zombie.lifetime++;
+                    if (insn instanceof FrameNode) {
+                        zombie.frames++;
+                    }
+                }
+            }
+
+            if (this.storeInsn != null) {
+                LocalVariableNode storedLocal = Locals.getLocalVariableAt(this.classNode, this.method, insn, this.storeInsn.var);
+                this.frame[this.storeInsn.var] = storedLocal;
+                this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 1);
+                if (storedLocal != null && this.storeInsn.var < this.method.maxLocals - 1 && storedLocal.desc != null
+                        && Type.getType(storedLocal.desc).getSize() == 2) {
+                    this.frame[this.storeInsn.var + 1] = null; // TOP
+                    this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 2);
+                    if (this.settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
+                        Locals.resurrect(this.frame, this.knownFrameSize, this.settings);
+                    }
+                }
+                this.storeInsn = null;
+            }
+        
+            handleFrame: if (insn instanceof FrameNode) {
+                this.frameIndex++;
+                FrameNode frameNode = (FrameNode)insn;
+                if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
+                    break handleFrame;
+                }
+            
+                int frameNodeSize = Locals.computeFrameSize(frameNode, this.initialFrameSize);
+                FrameData frameData = this.frameIndex < this.frames.size() ? this.frames.get(this.frameIndex) : null;
+
+                if (frameData != null) {
+                    if (frameData.type == Opcodes.F_FULL) {
+                        this.knownFrameSize = this.lastFrameSize = this.frameSize = Math.max(this.initialFrameSize,
+                                Math.min(frameNodeSize, frameData.size));
+                    } else {
+                        this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameData, this.initialFrameSize);
+                    }
+                } else {
+                    this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameNode, this.initialFrameSize);
+                }
+            
+                // Sanity check
+                if (this.frameSize < this.initialFrameSize) {
+                    throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
+                            + "Initial frame size is %d, calculated a frame size of %d with %s", this.classNode.name, this.method.name,
+                            this.method.desc, this.method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), this.initialFrameSize,
+                            this.frameSize, frameData));
+                }
+            
+                if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
+                        || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
+                    for (int framePos = this.frameSize; framePos < this.frame.length; framePos++) {
+                        this.frame[framePos] = ZombieLocalVariableNode.of(this.frame[framePos], ZombieLocalVariableNode.CHOP);
+                    }
+                    this.knownFrameSize = this.lastFrameSize = this.frameSize;
+                    break handleFrame;
+                }
+
+                int framePos = frameNode.type == Opcodes.F_APPEND ? this.lastFrameSize : 0;
+                this.lastFrameSize = this.frameSize;
+            
+                // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
+                for (int localPos = 0; framePos < this.frame.length; framePos++, localPos++) {
+                    // Get the local at the current position in the FrameNode's locals list
+                    final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
+
+                    if (localType instanceof String) { // String refers to a reference type
+                        this.frame[framePos] = Locals.getLocalVariableAt(this.classNode, this.method, insn, framePos);
+                    } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
+                        boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
+                        boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
+                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
+                        if (localType == Opcodes.TOP) {
+                            // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
+                            // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
+                            if (this.frame[framePos] instanceof ZombieLocalVariableNode
+                                    && this.settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
+                                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)this.frame[framePos];
+                                if (zombie.type == ZombieLocalVariableNode.TRIM) {
+                                    this.frame[framePos] = zombie.ancestor;
+                                }
+                            }
+                        } else if (isMarkerType) {
+                            this.frame[framePos] = null;
+                        } else if (is32bitValue || is64bitValue) {
+                            this.frame[framePos] = Locals.getLocalVariableAt(this.classNode, this.method, insn, framePos);
+
+                            if (is64bitValue) {
+                                framePos++;
+                                this.frame[framePos] = null; // TOP
+                            }
+                        } else {
+                            throw new LVTGeneratorError("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
+                                    + " in " + this.classNode.name + "." + this.method.name + this.method.desc);
+                        }
+                    } else if (localType == null) {
+                        if (framePos >= this.initialFrameSize && framePos >= this.frameSize && this.frameSize > 0) {
+                            if (framePos < this.knownFrameSize) {
+                                this.frame[framePos] = Locals.getLocalVariableAt(this.classNode, this.method, insn, framePos);
+                            } else {
+                                this.frame[framePos] = ZombieLocalVariableNode.of(this.frame[framePos], ZombieLocalVariableNode.TRIM);
+                            }
+                        }
+                    } else if (localType instanceof LabelNode) {
+                        // Uninitialised
+                    } else {
+                        throw new LVTGeneratorError("Invalid value " + localType + " in locals array at position " + localPos
+                                + " in " + this.classNode.name + "." + this.method.name + this.method.desc);
+                    }
+                }
+            } else if (insn instanceof VarInsnNode) {
+                VarInsnNode varInsn = (VarInsnNode)insn;
+                boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
+                if (isLoad) {
+                    this.frame[varInsn.var] = Locals.getLocalVariableAt(this.classNode, this.method, insn, varInsn.var);
+                    int varSize = this.frame[varInsn.var].desc != null ? Type.getType(this.frame[varInsn.var].desc).getSize() : 1;
+                    this.knownFrameSize = Math.max(this.knownFrameSize, varInsn.var + varSize);
+                    if (this.settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
+                        Locals.resurrect(this.frame, this.knownFrameSize, this.settings);
+                    }
+                } else {
+                    // Update the LVT for the opcode AFTER this one, since we always want to know
+                    // the frame state BEFORE the *current* instruction to match the contract of
+                    // injection points
+                    this.storeInsn = varInsn;
+                }
+            }
+        }
+
+        /**
+         * Get the locals in the current state. Zombies and locals which are
+         * unknown or were provided by mixin are returned as <tt>null</tt>.
+         * 
+         * @return new array containing the current locals
+         */
+        LocalVariableNode[] getLocals() {
+            LocalVariableNode[] locals = new LocalVariableNode[this.frame.length];
+            for (int l = 0; l < this.frame.length; l++) {
+                LocalVariableNode local = this.frame[l];
+                if (local instanceof ZombieLocalVariableNode) {
+                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)local;
+                    // preserve zombies where the frame node which culled them was immediately prior to
+                    // the matched instruction, or *was itself* the matched instruction, the returned
+                    // frame will contain the original node (the zombie ancestor)
+                    local = (zombie.lifetime > 1) ? null : zombie.ancestor;
+                }
+                
+                if ((local != null && local.desc == null) || local instanceof SyntheticLocalVariableNode) {
+                    local = null;
+                }
+                locals[l] = local;
+            }
+            return locals;
+        }
+
+    }
+
+    /**
+     * The result of <tt>getLocalsAt</tt> for every instruction in a method,
+     * computed in a single pass over the method. Consecutive instructions with
+     * identical locals share the same array. A timeline is only valid for the
+     * state of the method at the time it was computed, it is the caller's
+     * responsibility to discard it if the method is modified.
+     */
+    public static final class Timeline {
+
+        private final ClassNode classNode;
+
+        private final MethodNode method;
+
+        private final Settings settings;
+
+        /**
+         * Locals at each instruction, by identity
+         */
+        private final Map<AbstractInsnNode, LocalVariableNode[]> locals = new IdentityHashMap<AbstractInsnNode, LocalVariableNode[]>();
+
+        Timeline(ClassNode classNode, MethodNode method, Settings settings) {
+            this.classNode = classNode;
+            this.method = method;
+            this.settings = settings;
+
+            LocalsState state = new LocalsState(classNode, method, settings);
+            LocalVariableNode[] previous = null;
+            try {
+                for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+                    AbstractInsnNode insn = iter.next();
+                    state.visit(insn);
+                    LocalVariableNode[] current = state.getLocals();
+                    if (previous != null && Arrays.equals(previous, current)) {
+                        current = previous;
+                    }
+                    this.locals.put(insn, current);
+                    previous = current;
+                }
+            } catch (RuntimeException ex) {
+                // Instructions after this point are not in the timeline and
+                // will fall back to getLocalsAt, which will raise the error
+            } catch (LVTGeneratorError err) {
+                // As above
+            }
+        }
+
+        /**
+         * Get the locals at the specified instruction, the returned array is
+         * equivalent to the result of calling <tt>getLocalsAt</tt> for the
+         * same instruction
+         * 
+         * @param node Node indicating the position at which to determine the
+         *      locals state
+         * @return A sparse array containing a view of the locals at the
+         *      specified location
+         */
+        public LocalVariableNode[] getLocalsAt(AbstractInsnNode node) {
+            LocalVariableNode[] locals = this.locals.get(Locals.skipLabels(this.method.instructions, node));
+            if (locals == null) {
+                return Locals.getLocalsAt(this.classNode, this.method, node, this.settings);
+            }
+            return locals.clone();
+        }
+
+    }
+    
+    /**
+     * Key for a method in the generated LVT cache
+     */
+    private static final class MethodKey {
+
+        private final String name;
+
+        private final String desc;
+
+        private final int hash;
+
+        MethodKey(String name, String desc) {
+            this.name = name;
+            this.desc = desc;
+            this.hash = 31 * name.hashCode() + desc.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey)obj;
+            return this.hash == other.hash && this.name.equals(other.name) && this.desc.equals(other.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
     /**
      * Frame type names just for the purposes of debug printing
      */
     private static final String[] FRAME_TYPES = { "TOP", "INTEGER", "FLOAT", "DOUBLE", "LONG", "NULL", "UNINITIALIZED_THIS" };
     
+    /**
+     * Maximum number of classes to retain generated local variable tables for.
+     * Tables are normally evicted when the target class is completed, this
+     * bound only applies if tables are generated outside of mixin application
+     * or a target is abandoned without being completed.
+     */
+    private static final int MAX_CACHED_CLASSES = 256;
+
     /**
      * Cached local variable lists, to avoid having to recalculate them
-     * (expensive) if multiple injectors are working with the same method
+     * (expensive) if multiple injectors are working with the same method.
+     * Tables are grouped by owner class so that they can be evicted when the
+     * class is completed, least-recently-used classes are evicted once the
+     * cache holds {@link #MAX_CACHED_CLASSES} classes.
      */
-    private static final Map<String, List<LocalVariableNode>> calculatedLocalVariables = new HashMap<String, List<LocalVariableNode>>();
+    private static final Map<String, ConcurrentMap<MethodKey, List<LocalVariableNode>>> calculatedLocalVariables
+            = Collections.synchronizedMap(new LinkedHashMap<String, ConcurrentMap<MethodKey, List<LocalVariableNode>>>(16, 0.75F, true) {
+        
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ConcurrentMap<MethodKey, List<LocalVariableNode>>> eldest) {
+            if (this.size() > Locals.MAX_CACHED_CLASSES) {
+                Locals.lvtEvictions.addAndGet(eldest.getValue().size());
+                return true;
+            }
+            return false;
+        }
+        
+    });
+    
+    /**
+     * Cache statistics
+     */
+    private static final AtomicLong lvtHits = Profiler.getProfiler("mixin").getCounter("locals.lvt.hit");
+    private static final AtomicLong lvtMisses = Profiler.getProfiler("mixin").getCounter("locals.lvt.miss");
+    private static final AtomicLong lvtEvictions = Profiler.getProfiler("mixin").getCounter("locals.lvt.evicted");
     
     private Locals() {
         // utility class
@@ -383,200 +758,46 @@ public final class Locals {
      *      specified location
      */
     public static LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, AbstractInsnNode node, Settings settings) {
-        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
-            AbstractInsnNode nextNode = Locals.nextNode(method.instructions, node);
-            if (nextNode instanceof FrameNode) { // Do not ffwd over frames
-                break;
-            }
-            node = nextNode;
-        }
-        
-        ClassInfo classInfo = ClassInfo.forName(classNode.name);
-        if (classInfo == null) {
-            throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
-        }
-        Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
-        if (methodInfo == null) {
-            throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
-        }
-        List<FrameData> frames = methodInfo.getFrames();
-
-        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
-        int local = 0, index = 0;
-
-        // Initialise implicit "this" reference in non-static methods
-        if ((method.access & Opcodes.ACC_STATIC) == 0) {
-            frame[local++] = new LocalVariableNode("this", Type.getObjectType(classNode.name).toString(), null, null, null, 0);
-        }
-        
-        // Initialise method arguments
-        for (Type argType : Type.getArgumentTypes(method.desc)) {
-            frame[local] = new LocalVariableNode("arg" + index++, argType.toString(), null, null, null, local);
-            local += argType.getSize();
-        }
-        
-        final int initialFrameSize = local;
-        int frameSize = local;
-        int frameIndex = -1;
-        int lastFrameSize = local;
-        int knownFrameSize = local;
-        VarInsnNode storeInsn = null;
-
+        node = Locals.skipLabels(method.instructions, node);
+        LocalsState state = new LocalsState(classNode, method, settings);
         for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
             AbstractInsnNode insn = iter.next();
-            
-            // Tick the zombies
-            for (int l = 0; l < frame.length; l++) {
-                if (frame[l] instanceof ZombieLocalVariableNode) {
-                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                    zombie.lifetime++;
-                    if (insn instanceof FrameNode) {
-                        zombie.frames++;
-                    }
-                }
-            }
-
-            if (storeInsn != null) {
-                LocalVariableNode storedLocal = Locals.getLocalVariableAt(classNode, method, insn, storeInsn.var);
-                frame[storeInsn.var] = storedLocal;
-                knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 1);
-                if (storedLocal != null && storeInsn.var < method.maxLocals - 1 && storedLocal.desc != null
-                        && Type.getType(storedLocal.desc).getSize() == 2) {
-                    frame[storeInsn.var + 1] = null; // TOP
-                    knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 2);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
-                }
-                storeInsn = null;
-            }
-            
-            handleFrame: if (insn instanceof FrameNode) {
-                frameIndex++;
-                FrameNode frameNode = (FrameNode)insn;
-                if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
-                    break handleFrame;
-                }
-                
-                int frameNodeSize = Locals.computeFrameSize(frameNode, initialFrameSize);
-                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
-
-                if (frameData != null) {
-                    if (frameData.type == Opcodes.F_FULL) {
-                        knownFrameSize = lastFrameSize = frameSize = Math.max(initialFrameSize, Math.min(frameNodeSize, frameData.size));
-                    } else {
-                        frameSize = Locals.getAdjustedFrameSize(frameSize, frameData, initialFrameSize);
-                    }
-                } else {
-                    frameSize = Locals.getAdjustedFrameSize(frameSize, frameNode, initialFrameSize);
-                }
-                
-                // Sanity check
-                if (frameSize < initialFrameSize) {
-                    throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
-                            + "Initial frame size is %d, calculated a frame size of %d with %s", classNode.name, method.name, method.desc,
-                            method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), initialFrameSize, frameSize, frameData));
-                }
-                
-                if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
-                        || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
-                    for (int framePos = frameSize; framePos < frame.length; framePos++) {
-                        frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.CHOP);
-                    }
-                    knownFrameSize = lastFrameSize = frameSize;
-                    break handleFrame;
-                }
-
-                int framePos = frameNode.type == Opcodes.F_APPEND ? lastFrameSize : 0;
-                lastFrameSize = frameSize;
-                
-                // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
-                for (int localPos = 0; framePos < frame.length; framePos++, localPos++) {
-                    // Get the local at the current position in the FrameNode's locals list
-                    final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
-
-                    if (localType instanceof String) { // String refers to a reference type
-                        frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-                    } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
-                        boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
-                        boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
-                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
-                        if (localType == Opcodes.TOP) {
-                            // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
-                            // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
-                            if (frame[framePos] instanceof ZombieLocalVariableNode && settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
-                                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[framePos];
-                                if (zombie.type == ZombieLocalVariableNode.TRIM) {
-                                    frame[framePos] = zombie.ancestor;
-                                }
-                            }
-                        } else if (isMarkerType) {
-                            frame[framePos] = null;
-                        } else if (is32bitValue || is64bitValue) {
-                            frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-
-                            if (is64bitValue) {
-                                framePos++;
-                                frame[framePos] = null; // TOP
-                            }
-                        } else {
-                            throw new LVTGeneratorError("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
-                                    + " in " + classNode.name + "." + method.name + method.desc);
-                        }
-                    } else if (localType == null) {
-                        if (framePos >= initialFrameSize && framePos >= frameSize && frameSize > 0) {
-                            if (framePos < knownFrameSize) {
-                                frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-                            } else {
-                                frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.TRIM);
-                            }
-                        }
-                    } else if (localType instanceof LabelNode) {
-                        // Uninitialised
-                    } else {
-                        throw new LVTGeneratorError("Invalid value " + localType + " in locals array at position " + localPos
-                                + " in " + classNode.name + "." + method.name + method.desc);
-                    }
-                }
-            } else if (insn instanceof VarInsnNode) {
-                VarInsnNode varInsn = (VarInsnNode)insn;
-                boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
-                if (isLoad) {
-                    frame[varInsn.var] = Locals.getLocalVariableAt(classNode, method, insn, varInsn.var);
-                    int varSize = frame[varInsn.var].desc != null ? Type.getType(frame[varInsn.var].desc).getSize() : 1;
-                    knownFrameSize = Math.max(knownFrameSize, varInsn.var + varSize);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
-                } else {
-                    // Update the LVT for the opcode AFTER this one, since we always want to know
-                    // the frame state BEFORE the *current* instruction to match the contract of
-                    // injection points
-                    storeInsn = varInsn;
-                }
-            }
-            
+            state.visit(insn);
             if (insn == node) {
                 break;
             }
         }
+        return state.getLocals();
+    }
 
-        // Null out any "unknown" or mixin-provided locals
-        for (int l = 0; l < frame.length; l++) {
-            if (frame[l] instanceof ZombieLocalVariableNode) {
-                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                // preserve zombies where the frame node which culled them was immediately prior to
-                // the matched instruction, or *was itself* the matched instruction, the returned
-                // frame will contain the original node (the zombie ancestor)
-                frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
-            }
-            
-            if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
-                frame[l] = null;
+    /**
+     * Compute a {@link Timeline} for the specified method, which can then be
+     * queried for the locals at any instruction without walking the method
+     * again. The timeline is only valid for as long as the method is not
+     * modified.
+     * 
+     * @param classNode ClassNode containing the method
+     * @param method MethodNode to explore
+     * @param settings Tunable settings for the state machine
+     * @return locals timeline for the method
+     */
+    public static Timeline getTimeline(ClassNode classNode, MethodNode method, Settings settings) {
+        return new Timeline(classNode, method, settings);
+    }
+
+    /**
+     * Fast-forward over up to 3 labels and line numbers, but not over frames,
+     * so that locals are evaluated at the first "real" instruction
+     */
+    private static AbstractInsnNode skipLabels(InsnList insns, AbstractInsnNode node) {
+        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
+            AbstractInsnNode nextNode = Locals.nextNode(insns, node);
+            if (nextNode instanceof FrameNode) { // Do not ffwd over frames
+                break;
             }
+            node = nextNode;
         }
-
-        return frame;
+        return node;
     }
     
     private static LocalVariableNode[] getLocalsAt_0_9_2(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
@@ -819,15 +1040,40 @@ public final class Locals {
      * @return generated local variable table 
      */
     public static List<LocalVariableNode> getGeneratedLocalVariableTable(ClassNode classNode, MethodNode method) {
-        String methodId = String.format("%s.%s%s", classNode.name, method.name, method.desc);
-        List<LocalVariableNode> localVars = Locals.calculatedLocalVariables.get(methodId);
+        ConcurrentMap<MethodKey, List<LocalVariableNode>> classLocalVars;
+        synchronized (Locals.calculatedLocalVariables) {
+            classLocalVars = Locals.calculatedLocalVariables.get(classNode.name);
+            if (classLocalVars == null) {
+                classLocalVars = new ConcurrentHashMap<MethodKey, List<LocalVariableNode>>();
+                Locals.calculatedLocalVariables.put(classNode.name, classLocalVars);
+            }
+        }
+        
+        MethodKey methodKey = new MethodKey(method.name, method.desc);
+        List<LocalVariableNode> localVars = classLocalVars.get(methodKey);
         if (localVars != null) {
+            Locals.lvtHits.incrementAndGet();
             return localVars;
         }
 
-        localVars = Locals.generateLocalVariableTable(classNode, method);
-        Locals.calculatedLocalVariables.put(methodId, localVars);
-        return Collections.<LocalVariableNode>unmodifiableList(localVars);
+        Locals.lvtMisses.incrementAndGet();
+        localVars = Collections.<LocalVariableNode>unmodifiableList(Locals.generateLocalVariableTable(classNode, method));
+        List<LocalVariableNode> existing = classLocalVars.putIfAbsent(methodKey, localVars);
+        return existing != null ? existing : localVars;
+    }
+
+    /**
+     * Discard any generated local variable tables for methods in the
+     * specified class. Called once a target class has been completed, since
+     * the tables will not be needed again.
+     * 
+     * @param className Name of the class to evict (internal name)
+     */
+    public static void evictGeneratedLocalVariableTables(String className) {
+        Map<MethodKey, List<LocalVariableNode>> classLocalVars = Locals.calculatedLocalVariables.remove(className);
+        if (classLocalVars != null) {
+            Locals.lvtEvictions.addAndGet(classLocalVars.size());
+        }
     }
 
     /**
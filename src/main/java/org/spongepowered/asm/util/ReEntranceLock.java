@@ -26,24 +26,43 @@ package org.spongepowered.asm.util;
 
 /**
  * Re-entrance semaphore used to share re-entrance data with the metadata
- * service
+ * service. Depth and semaphore state are tracked per-thread so that threads
+ * transforming unrelated classes concurrently do not observe each other as
+ * re-entrant.
  */
 public class ReEntranceLock {
     
     /**
-     * Max valid depth
+     * Per-thread lock state
      */
-    private final int maxDepth;
+    static final class State {
+        
+        /**
+         * Re-entrance depth
+         */
+        int depth = 0;
+        
+        /**
+         * Semaphore set when check exceeds a depth of 1
+         */
+        boolean semaphore = false;
+        
+    }
     
     /**
-     * Re-entrance depth
+     * Max valid depth
      */
-    private int depth = 0;
+    private final int maxDepth;
     
     /**
-     * Semaphore set when check exceeds a depth of 1
+     * Lock state for each thread
      */
-    private boolean semaphore = false;
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
     
     public ReEntranceLock(int maxDepth) {
         this.maxDepth = maxDepth;
@@ -57,10 +76,10 @@ public class ReEntranceLock {
     }
     
     /**
-     * Get current depth
+     * Get current depth for the calling thread
      */
     public int getDepth() {
-        return this.depth;
+        return this.state.get().depth;
     }
     
     /**
@@ -70,7 +89,7 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock push() {
-        this.depth++;
+        this.state.get().depth++;
         this.checkAndSet();
         return this;
     }
@@ -81,11 +100,12 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock pop() {
-        if (this.depth == 0) {
+        State state = this.state.get();
+        if (state.depth == 0) {
             throw new IllegalStateException("ReEntranceLock pop() with zero depth");
         }
         
-        this.depth--;
+        state.depth--;
         return this;
     }
     
@@ -95,7 +115,7 @@ public class ReEntranceLock {
      * @return true if depth has exceeded max
      */
     public boolean check() {
-        return this.depth > this.maxDepth;
+        return this.state.get().depth > this.maxDepth;
     }
     
     /**
@@ -104,7 +124,8 @@ public class ReEntranceLock {
      * @return true if semaphore is set
      */
     public boolean checkAndSet() {
-        return this.semaphore |= this.check();
+        State state = this.state.get();
+        return state.semaphore |= state.depth > this.maxDepth;
     }
     
     /**
@@ -113,7 +134,7 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock set() {
-        this.semaphore = true;
+        this.state.get().semaphore = true;
         return this;
     }
     
@@ -121,7 +142,7 @@ public class ReEntranceLock {
      * Get whether the semaphore is set
      */
     public boolean isSet() {
-        return this.semaphore;
+        return this.state.get().semaphore;
     }
     
     /**
@@ -130,7 +151,7 @@ public class ReEntranceLock {
      * @return fluent interface
      */
     public ReEntranceLock clear() {
-        this.semaphore = false;
+        this.state.get().semaphore = false;
         return this;
     }
 
@@ -37,8 +37,12 @@ public class MethodNodeEx extends MethodNode {
     private final String originalName;
     
     public MethodNodeEx(int access, String name, String descriptor, String signature, String[] exceptions, IMixinInfo owner) {
+        this(access, name, descriptor, signature, exceptions, name, owner);
+    }
+    
+    public MethodNodeEx(int access, String name, String descriptor, String signature, String[] exceptions, String originalName, IMixinInfo owner) {
         super(ASM.API_VERSION, access, name, descriptor, signature, exceptions);
-        this.originalName = name;
+        this.originalName = originalName;
         this.owner = owner;
     }
     
@@ -0,0 +1,315 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util.perf;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.service.MixinService;
+
+/**
+ * Custom Java Flight Recorder events for mixin operations, so that mixin work
+ * in a recording can be correlated with GC and class loading events. Mixin
+ * targets Java versions which do not include JFR, so the event types are
+ * created at runtime using <tt>jdk.jfr.EventFactory</tt> via reflection. When
+ * events are disabled, or the running platform does not provide the JFR API,
+ * {@link Type#begin} returns an event which does nothing.
+ * 
+ * <p>Events are enabled by the <tt>mixin.debug.jfr</tt> option and are only
+ * recorded when a recording which enables them is running.</p>
+ */
+public final class FlightRecorderEvents {
+    
+    /**
+     * An event in progress, values are set by index in the order the fields
+     * were declared on the event type
+     */
+    public static class Event {
+        
+        Event() {
+        }
+        
+        /**
+         * Set the value of a field on this event. Values for string fields may
+         * be any object, they are only converted to a string if the event is
+         * being recorded.
+         * 
+         * @param index field index
+         * @param value field value
+         * @return fluent
+         */
+        public Event set(int index, Object value) {
+            return this;
+        }
+        
+        /**
+         * End this event and write it to the recording
+         */
+        public void commit() {
+        }
+        
+    }
+    
+    /**
+     * Event backed by a <tt>jdk.jfr.Event</tt> created by an event factory
+     */
+    static final class LiveEvent extends Event {
+        
+        private final Object event;
+
+        LiveEvent(Object event) {
+            this.event = event;
+        }
+        
+        @Override
+        public Event set(int index, Object value) {
+            try {
+                boolean primitive = value == null || value instanceof String || value instanceof Number || value instanceof Boolean;
+                FlightRecorderEvents.mdSet.invoke(this.event, Integer.valueOf(index), primitive ? value : value.toString());
+            } catch (Exception ex) {
+                FlightRecorderEvents.disable(ex);
+            }
+            return this;
+        }
+        
+        @Override
+        public void commit() {
+            try {
+                FlightRecorderEvents.mdCommit.invoke(this.event);
+            } catch (Exception ex) {
+                FlightRecorderEvents.disable(ex);
+            }
+        }
+        
+    }
+    
+    /**
+     * A mixin event type. The underlying JFR event type is registered the
+     * first time an event of this type is begun while events are enabled.
+     */
+    public static final class Type {
+        
+        private final String name;
+        
+        private final String label;
+        
+        private final String description;
+        
+        private final Object[] fields;
+        
+        /**
+         * <tt>jdk.jfr.EventFactory</tt> for this type, created on demand
+         */
+        private volatile Object factory;
+        
+        /**
+         * <tt>jdk.jfr.EventType</tt> for this type, created on demand
+         */
+        private volatile Object eventType;
+
+        Type(String name, String label, String description, Object... fields) {
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.fields = fields;
+        }
+        
+        /**
+         * Begin a new event of this type. The returned event must be
+         * committed in order to be recorded.
+         * 
+         * @return new event, or an event which does nothing if events are not
+         *      enabled or this event type is not being recorded
+         */
+        public Event begin() {
+            if (!FlightRecorderEvents.enabled) {
+                return FlightRecorderEvents.NONE;
+            }
+            try {
+                Object factory = this.getFactory();
+                if (!((Boolean)FlightRecorderEvents.mdIsEnabled.invoke(this.eventType)).booleanValue()) {
+                    return FlightRecorderEvents.NONE;
+                }
+                Object event = FlightRecorderEvents.mdNewEvent.invoke(factory);
+                FlightRecorderEvents.mdBegin.invoke(event);
+                return new LiveEvent(event);
+            } catch (Exception ex) {
+                FlightRecorderEvents.disable(ex);
+                return FlightRecorderEvents.NONE;
+            }
+        }
+        
+        private Object getFactory() throws Exception {
+            Object factory = this.factory;
+            if (factory == null) {
+                synchronized (this) {
+                    if (this.factory == null) {
+                        List<Object> annotations = new ArrayList<Object>();
+                        annotations.add(FlightRecorderEvents.annotation("Name", FlightRecorderEvents.EVENT_PREFIX + this.name));
+                        annotations.add(FlightRecorderEvents.annotation("Label", this.label));
+                        annotations.add(FlightRecorderEvents.annotation("Description", this.description));
+                        annotations.add(FlightRecorderEvents.annotation("Category", new String[] { FlightRecorderEvents.CATEGORY }));
+                        
+                        List<Object> fields = new ArrayList<Object>();
+                        for (int i = 0; i < this.fields.length; i += 3) {
+                            List<Object> label = Collections.singletonList(FlightRecorderEvents.annotation("Label", this.fields[i + 2]));
+                            fields.add(FlightRecorderEvents.ctorValueDescriptor.newInstance(this.fields[i], this.fields[i + 1], label));
+                        }
+                        
+                        Object newFactory = FlightRecorderEvents.mdCreate.invoke(null, annotations, fields);
+                        this.eventType = FlightRecorderEvents.mdGetEventType.invoke(newFactory);
+                        this.factory = newFactory;
+                    }
+                    factory = this.factory;
+                }
+            }
+            return factory;
+        }
+        
+    }
+    
+    private static final String EVENT_PREFIX = "org.spongepowered.mixin.";
+    
+    private static final String CATEGORY = "Mixin";
+    
+    /**
+     * Preparation of a mixin config
+     */
+    public static final Type CONFIG_PREPARE = new Type("ConfigPrepare", "Mixin Config Prepare", "Preparation of a mixin config",
+            String.class, "config", "Config",
+            int.class, "mixinCount", "Mixin Count");
+    
+    /**
+     * Application of all mixins to a target class
+     */
+    public static final Type TARGET_APPLY = new Type("TargetApply", "Mixin Apply", "Application of mixins to a target class",
+            String.class, "className", "Class Name",
+            int.class, "mixinCount", "Mixin Count");
+    
+    /**
+     * Injection of a single injector into a target method
+     */
+    public static final Type INJECT = new Type("Inject", "Mixin Inject", "Injection of an injector into a target method",
+            String.class, "injectorType", "Injector Type",
+            String.class, "targetMethod", "Target Method",
+            int.class, "nodeCount", "Node Count");
+    
+    /**
+     * Creation of class metadata for a class
+     */
+    public static final Type CLASS_METADATA = new Type("ClassMetadata", "Mixin Class Metadata", "Creation of mixin class metadata",
+            String.class, "className", "Class Name");
+    
+    /**
+     * Writing of a transformed class
+     */
+    public static final Type CLASS_WRITE = new Type("ClassWrite", "Mixin Class Write", "Writing of a transformed class with computed frames",
+            String.class, "className", "Class Name");
+    
+    /**
+     * Event returned when events are disabled
+     */
+    static final Event NONE = new Event();
+    
+    /**
+     * True when events are enabled and the platform supports them
+     */
+    private static volatile boolean enabled;
+    
+    private static Constructor<?> ctorAnnotationElement;
+    private static Constructor<?> ctorValueDescriptor;
+    private static Method mdCreate;
+    private static Method mdGetEventType;
+    private static Method mdIsEnabled;
+    private static Method mdNewEvent;
+    private static Method mdBegin;
+    private static Method mdSet;
+    private static Method mdCommit;
+    
+    private FlightRecorderEvents() {
+    }
+    
+    /**
+     * Enable or disable mixin JFR events. Events are only enabled if the
+     * running platform provides the JFR API.
+     * 
+     * @param enabled true to enable events
+     * @return true if events are now enabled
+     */
+    public static synchronized boolean setEnabled(boolean enabled) {
+        if (enabled && FlightRecorderEvents.mdCreate == null) {
+            try {
+                Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+                Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+                Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+                Class<?> eventType = Class.forName("jdk.jfr.EventType");
+                Class<?> event = Class.forName("jdk.jfr.Event");
+                FlightRecorderEvents.ctorAnnotationElement = annotationElement.getConstructor(Class.class, Object.class);
+                FlightRecorderEvents.ctorValueDescriptor = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+                FlightRecorderEvents.mdGetEventType = eventFactory.getMethod("getEventType");
+                FlightRecorderEvents.mdNewEvent = eventFactory.getMethod("newEvent");
+                FlightRecorderEvents.mdIsEnabled = eventType.getMethod("isEnabled");
+                FlightRecorderEvents.mdBegin = event.getMethod("begin");
+                FlightRecorderEvents.mdSet = event.getMethod("set", int.class, Object.class);
+                FlightRecorderEvents.mdCommit = event.getMethod("commit");
+                FlightRecorderEvents.mdCreate = eventFactory.getMethod("create", List.class, List.class);
+            } catch (Exception ex) {
+                FlightRecorderEvents.getLogger().debug("JFR events are not available on this platform: {}", ex.toString());
+                return FlightRecorderEvents.enabled = false;
+            }
+        }
+        return FlightRecorderEvents.enabled = enabled;
+    }
+    
+    /**
+     * Get whether mixin JFR events are enabled
+     */
+    public static boolean isEnabled() {
+        return FlightRecorderEvents.enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object annotation(String type, Object value) throws Exception {
+        Class<? extends Annotation> annotationType = (Class<? extends Annotation>)Class.forName("jdk.jfr." + type);
+        return FlightRecorderEvents.ctorAnnotationElement.newInstance(annotationType, value);
+    }
+    
+    static void disable(Exception ex) {
+        if (FlightRecorderEvents.enabled) {
+            FlightRecorderEvents.enabled = false;
+            FlightRecorderEvents.getLogger().warn("Disabling mixin JFR events after an error: {}", ex.toString());
+        }
+    }
+    
+    private static ILogger getLogger() {
+        return MixinService.getService().getLogger("mixin");
+    }
+    
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.util.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size log-linear histogram of latencies in nanoseconds, used by the
+ * {@link Profiler} to report percentiles for sections. Values are grouped into
+ * power-of-two ranges which are each split into linear sub-buckets, so the
+ * value reported for a percentile is within about 6% of the recorded value
+ * regardless of its magnitude. Values are recorded without locking.
+ */
+public final class LatencyHistogram {
+    
+    /**
+     * Number of bits of precision within each power-of-two range
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    
+    /**
+     * Number of linear sub-buckets in each power-of-two range
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+    
+    /**
+     * Largest power of two which is tracked, values above 2^40 ns (about 18
+     * minutes) are recorded in the highest bucket
+     */
+    private static final int MAX_EXPONENT = 40;
+    
+    private static final int BUCKET_COUNT = (LatencyHistogram.MAX_EXPONENT - LatencyHistogram.SUB_BUCKET_BITS + 2)
+            * LatencyHistogram.SUB_BUCKET_COUNT;
+
+    /**
+     * Number of values recorded in each bucket
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+    
+    /**
+     * Largest value recorded
+     */
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Record a value
+     * 
+     * @param nanos value to record in nanoseconds
+     */
+    public void record(long nanos) {
+        this.buckets.incrementAndGet(LatencyHistogram.getBucket(nanos));
+        for (long max = this.max.get(); nanos > max; max = this.max.get()) {
+            if (this.max.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Add all values recorded in the specified histogram to this histogram
+     * 
+     * @param other histogram to add
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long count = other.buckets.get(i);
+            if (count != 0L) {
+                this.buckets.addAndGet(i, count);
+            }
+        }
+        for (long max = this.max.get(), otherMax = other.max.get(); otherMax > max; max = this.max.get()) {
+            if (this.max.compareAndSet(max, otherMax)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Discard all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            this.buckets.set(i, 0L);
+        }
+        this.max.set(0L);
+    }
+    
+    /**
+     * Get the number of values recorded
+     */
+    public long getCount() {
+        long count = 0L;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+    
+    /**
+     * Get the largest value recorded in nanoseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the value in nanoseconds at or below which the specified percentage
+     * of recorded values fall
+     * 
+     * @param percentile percentile to get, between 0 and 100
+     * @return value at the specified percentile, or 0 if no values have been
+     *      recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i] = this.buckets.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        
+        long rank = Math.max(1L, (long)Math.ceil((Math.min(Math.max(percentile, 0.0D), 100.0D) / 100.0D) * total));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.getHighestValue(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+    
+    private static int getBucket(long value) {
+        if (value < LatencyHistogram.SUB_BUCKET_COUNT) {
+            return value < 0L ? 0 : (int)value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), LatencyHistogram.MAX_EXPONENT);
+        int shift = exponent - LatencyHistogram.SUB_BUCKET_BITS;
+        int subBucket = exponent < LatencyHistogram.MAX_EXPONENT || value >>> (exponent + 1) == 0L
+                ? (int)(value >>> shift) & (LatencyHistogram.SUB_BUCKET_COUNT - 1) : LatencyHistogram.SUB_BUCKET_COUNT - 1;
+        return (shift + 1) * LatencyHistogram.SUB_BUCKET_COUNT + subBucket;
+    }
+    
+    private static long getHighestValue(int bucket) {
+        if (bucket < LatencyHistogram.SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / LatencyHistogram.SUB_BUCKET_COUNT - 1;
+        long subBucket = bucket % LatencyHistogram.SUB_BUCKET_COUNT;
+        return ((LatencyHistogram.SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+    
+}
@@ -24,18 +24,33 @@
  */
 package org.spongepowered.asm.util.perf;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.PrettyPrinter.Alignment;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 
 /**
  * Performance profiler for Mixin.
@@ -57,11 +72,19 @@ public final class Profiler {
      */
     public static final int FINE = 0x02;
     
+    static final long NANOS_PER_MILLI = 1000000L;
+    
     /**
      * Base abstract profiler section. When disabled, the profiler itself
      * returns {@link DisabledSection} so as to consume minimal resources
      * without needing to introduce nullability checks everwhere that sections
      * are used. When enabled, {@link LiveSection} is used to record timings.
+     * 
+     * <p>Sections are shared by all threads, the start time of each active
+     * section is held in the section stack of the thread which began it and
+     * elapsed times are accumulated atomically. Times are recorded in
+     * nanoseconds, the millisecond and second accessors are derived from the
+     * recorded nanoseconds.</p>
      */
     public abstract static class Section {
         
@@ -74,33 +97,42 @@ public final class Profiler {
          */
         private final String name;
         
+        /**
+         * Sections which have been begun while this section was at the head
+         * of the stack
+         */
+        final SectionCache children = new SectionCache();
+        
         /**
          * True if this is a ROOT section
          */
-        private boolean root;
+        private volatile boolean root;
 
         /**
          * True if this is a FINE section
          */
-        private boolean fine;
+        private volatile boolean fine;
         
         /**
          * True if this section has been invalidated by a call to Profiler#clear
          */
-        protected boolean invalidated;
+        protected volatile boolean invalidated;
         
         /**
          * Auxilliary info for this section, used for context
          */
-        private String info;
+        private volatile String info;
         
         Section(String name) {
             this.name = name;
             this.info = name;
         }
         
-        protected int getCursor() {
-            return 0;
+        /**
+         * Get whether this section records timings
+         */
+        boolean isLive() {
+            return false;
         }
         
         /**
@@ -181,21 +213,11 @@ public final class Profiler {
         }
 
         /**
-         * Start timing on this section
-         * 
-         * @return fluent
-         */
-        Section start() {
-            return this;
-        }
-        
-        /**
-         * Stop timing of this section
+         * Record one completed period of this section
          * 
-         * @return fluent
+         * @param nanos duration of the period in nanoseconds
          */
-        protected Section stop() {
-            return this;
+        void record(long nanos) {
         }
         
         /**
@@ -227,32 +249,46 @@ public final class Profiler {
         void mark() {
         }
 
+        /**
+         * Get the current time in nanoseconds in the current phase 
+         */
+        public long getNanos() {
+            return 0L;
+        }
+
+        /**
+         * Get the current time in nanoseconds in all phases
+         */
+        public long getTotalNanos() {
+            return this.getNanos() + this.getMarkedNanos();
+        }
+
         /**
          * Get the current time in milliseconds in the current phase 
          */
         public long getTime() {
-            return 0;
+            return this.getNanos() / Profiler.NANOS_PER_MILLI;
         }
 
         /**
          * Get the current time in milliseconds in all phases
          */
         public long getTotalTime() {
-            return 0;
+            return this.getTotalNanos() / Profiler.NANOS_PER_MILLI;
         }
 
         /**
          * Get the current time in seconds in the current phase 
          */
         public double getSeconds() {
-            return 0.0D;
+            return this.getNanos() * 1.0E-9D;
         }
 
         /**
          * Get the current time in seconds in all phases
          */
         public double getTotalSeconds() {
-            return 0.0D;
+            return this.getTotalNanos() * 1.0E-9D;
         }
 
         /**
@@ -260,7 +296,11 @@ public final class Profiler {
          * milliseconds
          */
         public long[] getTimes() {
-            return new long[1];
+            long[] times = this.getNanoTimes();
+            for (int i = 0; i < times.length; i++) {
+                times[i] /= Profiler.NANOS_PER_MILLI;
+            }
+            return times;
         }
         
         /**
@@ -270,11 +310,20 @@ public final class Profiler {
             return 0;
         }
         
+        /**
+         * Get the latency histogram for all periods recorded by this section,
+         * returns null if histograms were not enabled when this section was
+         * recorded
+         */
+        public LatencyHistogram getHistogram() {
+            return null;
+        }
+        
         /**
          * Get the number of total time periods recorded in the all slices
          */
         public int getTotalCount() {
-            return 0;
+            return this.getCount() + this.getMarkedCount();
         }
         
         /**
@@ -282,7 +331,8 @@ public final class Profiler {
          * the current slice
          */
         public double getAverageTime() {
-            return 0.0D;
+            int count = this.getCount();
+            return count > 0 ? ((double)this.getNanos() / Profiler.NANOS_PER_MILLI) / count : 0.0D;
         }
         
         /**
@@ -290,7 +340,8 @@ public final class Profiler {
          * the all slices
          */
         public double getTotalAverageTime() {
-            return 0.0D;
+            int count = this.getTotalCount();
+            return count > 0 ? ((double)this.getTotalNanos() / Profiler.NANOS_PER_MILLI) / count : 0.0D;
         }
         
         /* (non-Javadoc)
@@ -301,11 +352,19 @@ public final class Profiler {
             return this.name;
         }
         
+        /**
+         * Get all available time slices including the current one in
+         * nanoseconds, the returned array is a copy
+         */
+        protected long[] getNanoTimes() {
+            return new long[1];
+        }
+        
         /**
          * Internal accessor for markedTime from LiveSection, used by
          * ResultSection 
          */
-        protected long getMarkedTime() {
+        protected long getMarkedNanos() {
             return 0L;
         }
         
@@ -357,7 +416,8 @@ public final class Profiler {
     
     /**
      * Live profiler section. Actually records timings for when the profiler is
-     * active.
+     * active. Periods are accumulated without locking, so that sections can be
+     * recorded concurrently by multiple threads.
      */
     class LiveSection extends DisabledSection {
 
@@ -368,24 +428,33 @@ public final class Profiler {
         private int cursor = 0;
         
         /**
-         * Historical time slicess (times recorded by calls to {@link #mark}) 
+         * Historical time slices in nanoseconds (times recorded by calls to
+         * {@link #mark}) 
          */
         private long[] times = new long[0];
         
         /**
-         * Start time. Zero when not recording a time slice
+         * Accumulated time in nanoseconds in the current slice
+         */
+        private final AtomicLong time = new AtomicLong();
+        
+        /**
+         * Period count in the current slice
          */
-        private long start = 0L;
+        private final AtomicInteger count = new AtomicInteger();
         
         /**
-         * Current accumulated time and time in all previous slices
+         * Time in nanoseconds and period count in all previous slices
          */
-        private long time, markedTime;
+        private volatile long markedTime;
+        
+        private volatile int markedCount;
         
         /**
-         * Current period count and period count in all previous slices 
+         * Latency histogram, created when the first period is recorded with
+         * histograms enabled
          */
-        private int count, markedCount;
+        private volatile LatencyHistogram histogram;
         
         LiveSection(String name, int cursor) {
             super(name);
@@ -393,33 +462,26 @@ public final class Profiler {
         }
         
         @Override
-        protected int getCursor() {
-            return this.cursor;
-        }
-
-        @Override
-        Section start() {
-            this.start = System.currentTimeMillis();
-            return this;
+        boolean isLive() {
+            return true;
         }
 
         @Override
-        protected Section stop() {
-            if (this.start > 0L) {
-                this.time += System.currentTimeMillis() - this.start;
-            }
-            this.start = 0L;
-            this.count++;
-            return this;
-        }
-        
-        @Override
-        public Section end() {
-            this.stop();
-            if (!this.invalidated) {
-                Profiler.this.end(this);
+        void record(long nanos) {
+            this.time.addAndGet(nanos);
+            this.count.incrementAndGet();
+            if (Profiler.histograms) {
+                LatencyHistogram histogram = this.histogram;
+                if (histogram == null) {
+                    synchronized (this) {
+                        if (this.histogram == null) {
+                            this.histogram = new LatencyHistogram();
+                        }
+                        histogram = this.histogram;
+                    }
+                }
+                histogram.record(nanos);
             }
-            return this;
         }
         
         @Override
@@ -427,64 +489,38 @@ public final class Profiler {
             if (this.cursor >= this.times.length) {
                 this.times = Arrays.copyOf(this.times, this.cursor + 4);
             }
-            this.times[this.cursor] = this.time;
-            this.markedTime += this.time;
-            this.markedCount += this.count;
-            this.time = 0;
-            this.count = 0;
+            long time = this.time.getAndSet(0L);
+            this.times[this.cursor] = time;
+            this.markedTime += time;
+            this.markedCount += this.count.getAndSet(0);
             this.cursor++;
         }
         
         @Override
-        public long getTime() {
-            return this.time;
-        }
-        
-        @Override
-        public long getTotalTime() {
-            return this.time + this.markedTime;
-        }
-        
-        @Override
-        public double getSeconds() {
-            return this.time * 0.001D;
-        }
-        
-        @Override
-        public double getTotalSeconds() {
-            return (this.time + this.markedTime) * 0.001D;
+        public long getNanos() {
+            return this.time.get();
         }
         
         @Override
-        public long[] getTimes() {
+        protected long[] getNanoTimes() {
             long[] times = new long[this.cursor + 1];
             System.arraycopy(this.times, 0, times, 0, Math.min(this.times.length, this.cursor));
-            times[this.cursor] = this.time;
+            times[this.cursor] = this.time.get();
             return times;
         }
         
         @Override
         public int getCount() {
-            return this.count;
-        }
-        
-        @Override
-        public int getTotalCount() {
-            return this.count + this.markedCount;
-        }
-        
-        @Override
-        public double getAverageTime() {
-            return this.count > 0 ? (double)(this.time) / this.count : 0.0D;
+            return this.count.get();
         }
         
         @Override
-        public double getTotalAverageTime() {
-            return this.count > 0 ? (double)(this.time + this.markedTime) / (this.count + this.markedCount) : 0.0D;
+        public LatencyHistogram getHistogram() {
+            return this.histogram;
         }
         
         @Override
-        protected long getMarkedTime() {
+        protected long getMarkedNanos() {
             return this.markedTime;
         }
         
@@ -541,21 +577,9 @@ public final class Profiler {
         }
         
         @Override
-        Section start() {
-            this.root.start();
-            return super.start();
-        }
-        
-        @Override
-        public Section end() {
-            this.root.stop();
-            return super.end();
-        }
-        
-        @Override
-        public Section next(String name) {
-            super.stop();
-            return this.root.next(name);
+        void record(long nanos) {
+            this.root.record(nanos);
+            super.record(nanos);
         }
         
     }
@@ -580,51 +604,22 @@ public final class Profiler {
         }
         
         @Override
-        public long getTime() {
+        public long getNanos() {
             long time = 0L;
             for (Section section : this.sections) {
-                time += section.getTime();
+                time += section.getNanos();
             }
             return time;
         }
         
         @Override
-        public long getTotalTime() {
-            long totalTime = 0L;
+        protected long[] getNanoTimes() {
+            long[] times = new long[1];
             for (Section section : this.sections) {
-                totalTime += section.getTotalTime();
-            }
-            return totalTime;
-        }
-        
-        @Override
-        public double getSeconds() {
-            double seconds = 0.0D;
-            for (Section section : this.sections) {
-                seconds += section.getSeconds();
-            }
-            return seconds;
-        }
-        
-        @Override
-        public double getTotalSeconds() {
-            double totalSeconds = 0.0D;
-            for (Section section : this.sections) {
-                totalSeconds += section.getTotalSeconds();
-            }
-            return totalSeconds;
-        }
-        
-        @Override
-        public long[] getTimes() {
-            int cursor = 0;
-            for (Section section : this.sections) {
-                cursor = Math.max(cursor, section.getCursor());
-            }
-            
-            long[] times = new long[cursor + 1];
-            for (Section section : this.sections) {
-                long[] sectionTimes = section.getTimes();
+                long[] sectionTimes = section.getNanoTimes();
+                if (sectionTimes.length > times.length) {
+                    times = Arrays.copyOf(times, sectionTimes.length);
+                }
                 for (int i = 0; i < sectionTimes.length; i++) {
                     times[i] += sectionTimes[i];
                 }
@@ -643,19 +638,25 @@ public final class Profiler {
         }
         
         @Override
-        public int getTotalCount() {
-            int totalCount = 0;
+        public LatencyHistogram getHistogram() {
+            LatencyHistogram histogram = null;
             for (Section section : this.sections) {
-                totalCount += section.getTotalCount();
+                LatencyHistogram sectionHistogram = section.getHistogram();
+                if (sectionHistogram != null) {
+                    if (histogram == null) {
+                        histogram = new LatencyHistogram();
+                    }
+                    histogram.add(sectionHistogram);
+                }
             }
-            return totalCount;
+            return histogram;
         }
         
         @Override
-        protected long getMarkedTime() {
+        protected long getMarkedNanos() {
             long markedTime = 0L;
             for (Section section : this.sections) {
-                markedTime += section.getMarkedTime();
+                markedTime += section.getMarkedNanos();
             }
             return markedTime;
         }
@@ -668,21 +669,216 @@ public final class Profiler {
             }
             return markedCount;
         }
-
+        
+    }
+    
+    /**
+     * Lookup of child sections by name, used to resolve the section for a
+     * call to {@link Profiler#begin} without building the section path. There
+     * is one map for each combination of section flags and profiler state so
+     * that lookups do not need to allocate a key.
+     */
+    static final class SectionCache {
+        
+        private static final int SIZE = 8;
+        
+        private final AtomicReferenceArray<ConcurrentMap<String, Section>> sections
+                = new AtomicReferenceArray<ConcurrentMap<String, Section>>(SectionCache.SIZE);
+        
+        static int getKey(int flags) {
+            return (flags & (Profiler.ROOT | Profiler.FINE)) | (Profiler.active ? 0x04 : 0);
+        }
+        
+        Section get(int key, String name) {
+            ConcurrentMap<String, Section> sections = this.sections.get(key);
+            return sections != null ? sections.get(name) : null;
+        }
+        
+        void put(int key, String name, Section section) {
+            ConcurrentMap<String, Section> sections = this.sections.get(key);
+            if (sections == null) {
+                this.sections.compareAndSet(key, null, new ConcurrentHashMap<String, Section>());
+                sections = this.sections.get(key);
+            }
+            sections.put(name, section);
+        }
+        
+    }
+    
+    /**
+     * Node in the tree of section paths passed to {@link Profiler#begin(int,
+     * String...)}, each node holds the joined name of the path leading to it
+     * so that the name is only built the first time a path is begun.
+     */
+    static final class SectionPath {
+        
+        private final String name;
+        
+        private final ConcurrentMap<String, SectionPath> children = new ConcurrentHashMap<String, SectionPath>();
+        
+        SectionPath(String name) {
+            this.name = name;
+        }
+        
+        String getName() {
+            return this.name;
+        }
+        
+        SectionPath get(String part) {
+            SectionPath child = this.children.get(part);
+            if (child == null) {
+                child = new SectionPath(this.name != null ? this.name + Section.SEPARATOR_CHILD + part : part);
+                SectionPath existing = this.children.putIfAbsent(part, child);
+                if (existing != null) {
+                    child = existing;
+                }
+            }
+            return child;
+        }
+        
+    }
+    
+    /**
+     * Per-thread stack of active sections and their start times
+     */
+    static final class SectionStack {
+        
+        private Section[] sections = new Section[16];
+        
+        private long[] starts = new long[16];
+        
+        private int depth;
+        
+        /**
+         * Profiler reset count when this stack was last cleared
+         */
+        private int epoch;
+        
+        /**
+         * Clear this stack if the profiler has been reset since it was last
+         * used, sections begun before the reset have been invalidated
+         * 
+         * @return true if the stack was cleared
+         */
+        boolean checkEpoch(int epoch) {
+            if (this.epoch == epoch) {
+                return false;
+            }
+            this.clear();
+            this.epoch = epoch;
+            return true;
+        }
+        
+        Section peek() {
+            return this.depth > 0 ? this.sections[this.depth - 1] : null;
+        }
+        
+        void push(Section section, long start) {
+            if (this.depth == this.sections.length) {
+                this.sections = Arrays.copyOf(this.sections, this.depth * 2);
+                this.starts = Arrays.copyOf(this.starts, this.depth * 2);
+            }
+            this.sections[this.depth] = section;
+            this.starts[this.depth++] = start;
+        }
+        
+        /**
+         * Find the specified section, searching from the head of the stack
+         * 
+         * @return stack position or -1 if the section is not in the stack
+         */
+        int find(Section section) {
+            for (int pos = this.depth - 1; pos >= 0; pos--) {
+                if (this.sections[pos] == section) {
+                    return pos;
+                }
+            }
+            return -1;
+        }
+        
+        long getStart(int pos) {
+            return this.starts[pos];
+        }
+        
+        /**
+         * Pop the section at the specified position and all sections above it
+         */
+        void popTo(int pos) {
+            Arrays.fill(this.sections, pos, this.depth, null);
+            this.depth = pos;
+        }
+        
+        void clear() {
+            this.popTo(0);
+        }
+        
+        boolean isEmpty() {
+            return this.depth == 0;
+        }
+        
+    }
+    
+    /**
+     * Time spent applying mixins to a single target class, recorded for the
+     * slowest targets only
+     */
+    public static final class TargetTiming implements Comparable<TargetTiming> {
+        
+        private final String className;
+        
+        private final long nanos;
+        
+        private final List<String> mixins;
+        
+        TargetTiming(String className, long nanos, List<String> mixins) {
+            this.className = className;
+            this.nanos = nanos;
+            this.mixins = mixins;
+        }
+        
+        /**
+         * Get the name of the target class
+         */
+        public String getClassName() {
+            return this.className;
+        }
+        
+        /**
+         * Get the time spent applying mixins to the target in nanoseconds
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+        
+        /**
+         * Get the names of the mixins which were applied to the target
+         */
+        public List<String> getMixins() {
+            return this.mixins;
+        }
+        
         @Override
-        public double getAverageTime() {
-            int count = this.getCount();
-            return count > 0 ? (double)(this.getTime()) / count : 0.0D;
+        public int compareTo(TargetTiming other) {
+            return this.nanos < other.nanos ? 1 : this.nanos > other.nanos ? -1 : this.className.compareTo(other.className);
         }
         
         @Override
-        public double getTotalAverageTime() {
-            int count = this.getCount();
-            return count > 0 ? (double)(this.getTime() + this.getMarkedTime()) / (count + this.getMarkedCount()) : 0.0D;
+        public String toString() {
+            return this.className;
         }
         
     }
     
+    /**
+     * Number of target classes to retain for the slowest targets report
+     */
+    public static final int SLOWEST_TARGETS = 10;
+
+    /**
+     * Percentiles reported when histograms are enabled
+     */
+    private static final double[] PERCENTILES = { 50.0D, 90.0D, 99.0D };
+
     /**
      * All Profiler instances
      */
@@ -691,7 +887,12 @@ public final class Profiler {
     /**
      * True when profilers are active
      */
-    private static boolean active;
+    private static volatile boolean active;
+    
+    /**
+     * True when active sections should record latency histograms
+     */
+    private static volatile boolean histograms;
     
     /**
      * Profiler id 
@@ -703,15 +904,57 @@ public final class Profiler {
      */
     private final Map<String, Section> sections = new TreeMap<String, Profiler.Section>();
     
+    /**
+     * Event counters, used to record occurrences which are too frequent or too
+     * short-lived to be timed with a section, for example cache hits. Counters
+     * are always recorded, regardless of whether the profiler is active.
+     */
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    
     /**
      * Profiler phases, recorded by calling {@link #mark}
      */
     private final List<String> phases = new ArrayList<String>();
     
     /**
-     * Profiler section stack
+     * Slowest target classes recorded by {@link #recordTarget}, ordered
+     * slowest first
+     */
+    private final TreeSet<TargetTiming> slowestTargets = new TreeSet<TargetTiming>();
+    
+    /**
+     * Time of the fastest retained target once {@link #slowestTargets} is
+     * full, targets faster than this are discarded without locking
+     */
+    private volatile long slowTargetThreshold;
+    
+    /**
+     * Sections begun at the top level of the stack, keyed by flags and name
      */
-    private final Deque<Section> stack = new LinkedList<Section>();
+    private volatile SectionCache topLevel = new SectionCache();
+    
+    /**
+     * Joined names of section paths, the path parts come from a fixed set of
+     * begin sites so this does not need to be reset
+     */
+    private final SectionPath paths = new SectionPath(null);
+    
+    /**
+     * Profiler section stack, each thread maintains its own stack so that
+     * sections opened on different threads do not unwind each other
+     */
+    private final ThreadLocal<SectionStack> stack = new ThreadLocal<SectionStack>() {
+        @Override
+        protected SectionStack initialValue() {
+            return new SectionStack();
+        }
+    };
+    
+    /**
+     * Number of times this profiler has been reset, each thread's stack is
+     * cleared the next time it is used after a reset
+     */
+    private volatile int epoch;
     
     public Profiler(String id) {
         this.id = id;
@@ -733,7 +976,27 @@ public final class Profiler {
     }
     
     /**
-     * Reset all profiler state
+     * Get whether profilers are currently active
+     */
+    public static boolean isActive() {
+        return Profiler.active;
+    }
+    
+    /**
+     * Set whether active profiler sections record a latency histogram in
+     * addition to their total time and count. Histograms use a fixed amount of
+     * memory per section and allow percentiles to be reported.
+     * 
+     * @param histograms new histogram state
+     */
+    public static void setHistograms(boolean histograms) {
+        Profiler.histograms = histograms;
+    }
+    
+    /**
+     * Reset all profiler state. Section stacks of all threads are cleared, a
+     * stack belonging to another thread is cleared the next time that thread
+     * begins or ends a section.
      */
     public synchronized void reset() {
         for (Section section : this.sections.values()) {
@@ -741,9 +1004,19 @@ public final class Profiler {
         }
         
         this.sections.clear();
+        this.topLevel = new SectionCache();
+        synchronized (this.slowestTargets) {
+            this.slowestTargets.clear();
+            this.slowTargetThreshold = 0L;
+        }
         this.phases.clear();
         this.phases.add("Initial");
-        this.stack.clear();
+        this.epoch++;
+        this.stack.get().checkEpoch(this.epoch);
+        
+        for (AtomicLong counter : this.counters.values()) {
+            counter.set(0L);
+        }
     }
 
     /**
@@ -761,6 +1034,83 @@ public final class Profiler {
         return section;
     }
     
+    /**
+     * Get whether a target class which took the specified time to process
+     * would be retained by {@link #recordTarget}. Callers can use this to
+     * avoid collecting the mixin names for targets which will be discarded.
+     * 
+     * @param nanos time spent processing the target in nanoseconds
+     * @return true if the target should be recorded
+     */
+    public boolean isSlowTarget(long nanos) {
+        return Profiler.active && nanos > this.slowTargetThreshold;
+    }
+    
+    /**
+     * Record the time spent applying mixins to a target class. Only the
+     * {@link #SLOWEST_TARGETS slowest} targets are retained for the summary.
+     * 
+     * @param className target class name
+     * @param nanos time spent applying mixins in nanoseconds
+     * @param mixins names of the mixins applied to the target
+     */
+    public void recordTarget(String className, long nanos, List<String> mixins) {
+        if (!this.isSlowTarget(nanos)) {
+            return;
+        }
+        synchronized (this.slowestTargets) {
+            this.slowestTargets.add(new TargetTiming(className, nanos, Collections.<String>unmodifiableList(new ArrayList<String>(mixins))));
+            if (this.slowestTargets.size() > Profiler.SLOWEST_TARGETS) {
+                this.slowestTargets.pollLast();
+            }
+            if (this.slowestTargets.size() == Profiler.SLOWEST_TARGETS) {
+                this.slowTargetThreshold = this.slowestTargets.last().getNanos();
+            }
+        }
+    }
+    
+    /**
+     * Get the slowest target classes recorded by this profiler, slowest first
+     */
+    public List<TargetTiming> getSlowestTargets() {
+        synchronized (this.slowestTargets) {
+            return new ArrayList<TargetTiming>(this.slowestTargets);
+        }
+    }
+    
+    /**
+     * Get the specified event counter. Callers should retain the returned
+     * counter rather than looking it up for each event, since the same counter
+     * instance is returned for the lifetime of the profiler.
+     * 
+     * @param name counter name
+     * @return counter
+     */
+    public AtomicLong getCounter(String name) {
+        AtomicLong counter = this.counters.get(name);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = this.counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+    
+    /**
+     * Get a snapshot of all event counters in this profiler
+     * 
+     * @return map of counter names to current values
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<String, Long>();
+        for (Entry<String, AtomicLong> counter : this.counters.entrySet()) {
+            counters.put(counter.getKey(), Long.valueOf(counter.getValue().get()));
+        }
+        return counters;
+    }
+    
     private synchronized Section getSubSection(String name, String baseName, Section root) {
         Section section = this.sections.get(name);
         if (section == null) {
@@ -771,10 +1121,6 @@ public final class Profiler {
         return section;
     }
     
-    boolean isHead(Section section) {
-        return this.stack.peek() == section;
-    }
-    
     /**
      * Begin a new profiler section using the specified path
      * 
@@ -793,7 +1139,14 @@ public final class Profiler {
      * @return new profiler section
      */
     public Section begin(int flags, String... path) {
-        return this.begin(flags, Joiner.on('.').join(path));
+        if (path.length < 2) {
+            return this.begin(flags, path.length > 0 ? path[0] : "");
+        }
+        SectionPath name = this.paths;
+        for (String part : path) {
+            name = name.get(part);
+        }
+        return this.begin(flags, name.getName());
     }
 
     /**
@@ -813,12 +1166,41 @@ public final class Profiler {
      * @param name section name
      * @return new profiler section
      */
-    public synchronized Section begin(int flags, String name) {
-        boolean root = (flags & Profiler.ROOT) != 0;
+    public Section begin(int flags, String name) {
+        SectionStack stack = this.stack.get();
+        stack.checkEpoch(this.epoch);
+        Section head = stack.peek();
+        SectionCache cache = head != null ? head.children : this.topLevel;
+        int key = SectionCache.getKey(flags);
         boolean fine = (flags & Profiler.FINE) != 0;
+        boolean root = (flags & Profiler.ROOT) != 0 || (head != null && head.isRoot());
+        Section section = cache.get(key, name);
+        if (section == null) {
+            section = this.resolve(flags, name, head);
+            cache.put(key, name, section);
+        } else if (section.isFine() != fine || section.isRoot() != root) {
+            this.configure(section, fine, root);
+        }
+        
+        stack.push(section, section.isLive() ? System.nanoTime() : 0L);
+        return section;
+    }
+    
+    /**
+     * Resolve the section to begin for the specified name and flags, called
+     * the first time a name is begun under a particular head section. The
+     * FINE and ROOT state of the section is set here, under the lock, rather
+     * than each time the section is begun.
+     * 
+     * @param flags section flags
+     * @param name section name
+     * @param head current head of the section stack
+     * @return resolved section
+     */
+    private synchronized Section resolve(int flags, String name, Section head) {
+        boolean root = (flags & Profiler.ROOT) != 0;
         
         String path = name;
-        Section head = this.stack.peek();
         if (head != null) {
             path = head.getName() + (root ? Section.SEPARATOR_ROOT : Section.SEPARATOR_CHILD) + path;
             if (head.isRoot() && !root) {
@@ -833,33 +1215,52 @@ public final class Profiler {
             section = this.getSubSection(path, head.getName(), section);
         }
         
+        return section.setFine((flags & Profiler.FINE) != 0).setRoot(root);
+    }
+    
+    /**
+     * Update the FINE and ROOT state of a section which was resolved
+     * previously but is now being begun with a different state, which happens
+     * when the same section is shared by more than one begin site
+     * 
+     * @param section section to update
+     * @param fine new FINE state
+     * @param root new ROOT state
+     */
+    private synchronized void configure(Section section, boolean fine, boolean root) {
         section.setFine(fine).setRoot(root);
-        this.stack.push(section);
-        
-        return section.start();
     }
     
     /**
-     * Callback from section when {@link Section#end} is called, pops the
-     * section from the profiler stack
+     * Callback from section when {@link Section#end} is called, records the
+     * elapsed time and pops the section from the profiler stack
      * 
      * @param section section ending
      */
-    synchronized void end(Section section) {
-        try {
-            for (Section head = this.stack.pop(), next = head; next != section; next = this.stack.pop()) {
-                if (next == null && Profiler.active) {
-                    if (head == null) {
-                        throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");
-                    }
-                    throw new IllegalStateException("Attempted to pop " + section + " which was not in the stack, head was " + head);
-                }
-            }
-        } catch (NoSuchElementException ex) {
+    void end(Section section) {
+        long now = System.nanoTime();
+        SectionStack stack = this.stack.get();
+        if (stack.checkEpoch(this.epoch)) {
+            return;
+        }
+        int pos = stack.find(section);
+        if (pos < 0) {
             if (Profiler.active) {
-                throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");
+                Section head = stack.peek();
+                stack.clear();
+                if (head == null) {
+                    throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");
+                }
+                throw new IllegalStateException("Attempted to pop " + section + " which was not in the stack, head was " + head);
             }
+            stack.clear();
+            return;
+        }
+        
+        if (section.isLive()) {
+            section.record(now - stack.getStart(pos));
         }
+        stack.popTo(pos);
     }
     
     /**
@@ -872,7 +1273,7 @@ public final class Profiler {
     public synchronized void mark(String phase) {
         long currentPhaseTime = 0L;
         for (Section section : this.sections.values()) {
-            currentPhaseTime += section.getTime();
+            currentPhaseTime += section.getNanos();
         }
         
         // If no accumulated time in the current phase, just discard it
@@ -910,13 +1311,16 @@ public final class Profiler {
     private static PrettyPrinter printer(boolean includeFine, boolean group, List<String> phases, Map<String, Section> sections) {
         PrettyPrinter printer = new PrettyPrinter();
         
-        // 4 extra columns, name, total, count, avg
-        int colCount = phases.size() + 4;
+        // 4 extra columns, name, total, count, avg, plus percentiles and max
+        // if any section recorded a histogram
+        int percentileCount = Profiler.hasHistograms(sections) ? Profiler.PERCENTILES.length + 1 : 0;
+        int colCount = phases.size() + 4 + percentileCount;
+        int extra = percentileCount;
         
         //                Which columns go where
-        //                Name  Total  Phases  Count         Average
-        //                |     |      |       |             |
-        int[] columns = { 0,    1,     2,      colCount - 2, colCount - 1 };
+        //                Name  Total  Phases  Count                 Average               Percentiles
+        //                |     |      |       |                     |                     |
+        int[] columns = { 0,    1,     2,      colCount - 2 - extra, colCount - 1 - extra, colCount - extra };
         
         Object[] headers = new Object[(colCount) * 2];
         for (int col = 0, pos = 0; col < colCount; col++, pos = col * 2) {
@@ -930,6 +1334,9 @@ public final class Profiler {
                 headers[pos] = "    Count";
             } else if (col == columns[4]) {
                 headers[pos] = "Avg. ";
+            } else if (col >= columns[5]) {
+                int percentile = col - columns[5];
+                headers[pos] = percentile < Profiler.PERCENTILES.length ? "p" + (int)Profiler.PERCENTILES[percentile] + " " : "Max ";
             } else if (col - columns[2] < phases.size()) {
                 headers[pos] = phases.get(col - columns[2]);
             } else {
@@ -963,6 +1370,15 @@ public final class Profiler {
         return printer.add();
     }
 
+    private static boolean hasHistograms(Map<String, Section> sections) {
+        for (Section section : sections.values()) {
+            if (section.getHistogram() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void printSectionRow(PrettyPrinter printer, int colCount, int[] columns, Section section, boolean group) {
         boolean isDelegate = section.getDelegate() != section;
         Object[] values = new Object[colCount];
@@ -978,13 +1394,22 @@ public final class Profiler {
             if (col == columns[1]) {
                 values[col++] = section.getTotalTime() + " ms";
             }
-            if (col >= columns[2] && col < values.length) {
+            if (col >= columns[2] && col < columns[3]) {
                 values[col++] = time + " ms";
             }
         }
         
+        DecimalFormat msFormat = new DecimalFormat("   ###0.000 ms");
         values[columns[3]] = section.getTotalCount();
-        values[columns[4]] = new DecimalFormat("   ###0.000 ms").format(section.getTotalAverageTime());
+        values[columns[4]] = msFormat.format(section.getTotalAverageTime());
+        
+        LatencyHistogram histogram = columns[5] < colCount ? section.getHistogram() : null;
+        if (histogram != null) {
+            for (int i = 0; i < Profiler.PERCENTILES.length; i++) {
+                values[columns[5] + i] = msFormat.format((double)histogram.getPercentile(Profiler.PERCENTILES[i]) / Profiler.NANOS_PER_MILLI);
+            }
+            values[colCount - 1] = msFormat.format((double)histogram.getMax() / Profiler.NANOS_PER_MILLI);
+        }
 
         for (int i = 0; i < values.length; i++) {
             if (values[i] == null) {
@@ -999,7 +1424,7 @@ public final class Profiler {
      * Print summary of this profiler's recorded performance to the console
      */
     public void printSummary() {
-        Profiler.printSummary(this.id, this.phases, this.sections);
+        Profiler.printSummary(new Summary(this.id, this.phases, this.sections, this.getCounters(), this.getSlowestTargets()));
     }
 
     /**
@@ -1007,11 +1432,94 @@ public final class Profiler {
      * console
      */
     public static void printAuditSummary() {
+        Profiler.printSummary(Profiler.collectAuditSummary());
+    }
+    
+    /**
+     * Write a machine-readable (JSON) summary of mixin performance from all
+     * active profilers to the specified file. The summary contains the same
+     * sections, counters and slowest targets as {@link #printAuditSummary},
+     * with all times in nanoseconds.
+     * 
+     * @param file file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void dumpAuditSummary(File file) throws IOException {
+        Summary summary = Profiler.collectAuditSummary();
+        
+        JsonObject json = new JsonObject();
+        json.addProperty("id", summary.id);
+        JsonArray phases = new JsonArray();
+        for (String phase : summary.phases) {
+            phases.add(new JsonPrimitive(phase));
+        }
+        json.add("phases", phases);
+        
+        JsonObject sections = new JsonObject();
+        for (Section section : summary.sections.values()) {
+            JsonObject sectionJson = new JsonObject();
+            sectionJson.addProperty("root", Boolean.valueOf(section.isRoot()));
+            sectionJson.addProperty("fine", Boolean.valueOf(section.isFine()));
+            sectionJson.addProperty("count", Integer.valueOf(section.getTotalCount()));
+            sectionJson.addProperty("totalNanos", Long.valueOf(section.getTotalNanos()));
+            JsonArray times = new JsonArray();
+            for (long time : section.getNanoTimes()) {
+                times.add(new JsonPrimitive(Long.valueOf(time)));
+            }
+            sectionJson.add("phaseNanos", times);
+            LatencyHistogram histogram = section.getHistogram();
+            if (histogram != null) {
+                for (double percentile : Profiler.PERCENTILES) {
+                    sectionJson.addProperty("p" + (int)percentile + "Nanos", Long.valueOf(histogram.getPercentile(percentile)));
+                }
+                sectionJson.addProperty("maxNanos", Long.valueOf(histogram.getMax()));
+            }
+            sections.add(section.getName(), sectionJson);
+        }
+        json.add("sections", sections);
+        
+        JsonObject counters = new JsonObject();
+        for (Entry<String, Long> counter : summary.counters.entrySet()) {
+            counters.addProperty(counter.getKey(), counter.getValue());
+        }
+        json.add("counters", counters);
+        
+        JsonArray targets = new JsonArray();
+        for (TargetTiming target : summary.targets) {
+            JsonObject targetJson = new JsonObject();
+            targetJson.addProperty("className", target.getClassName());
+            targetJson.addProperty("nanos", Long.valueOf(target.getNanos()));
+            JsonArray mixins = new JsonArray();
+            for (String mixin : target.getMixins()) {
+                mixins.add(new JsonPrimitive(mixin));
+            }
+            targetJson.add("mixins", mixins);
+            targets.add(targetJson);
+        }
+        json.add("slowestTargets", targets);
+        
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
+        try {
+            new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+        } finally {
+            writer.close();
+        }
+    }
+    
+    /**
+     * Collect sections from all profilers into ResultSections
+     */
+    private static Summary collectAuditSummary() {
         String id;
         Set<String> allPhases; 
         Map<String, Section> allSections;
+        Map<String, Long> allCounters = new TreeMap<String, Long>();
+        TreeSet<TargetTiming> allTargets = new TreeSet<TargetTiming>();
 
-        // Collect sections from all profilers into ResultSections
         synchronized (Profiler.profilers) {
             id = Joiner.on(',').join(Profiler.profilers.values());
             allPhases = new LinkedHashSet<String>();
@@ -1036,13 +1544,52 @@ public final class Profiler {
                 for (Entry<String, Section> section : profiler.sections.entrySet()) {
                     ((ResultSection)allSections.get(section.getKey())).add(section.getValue());
                 }
+                
+                for (Entry<String, Long> counter : profiler.getCounters().entrySet()) {
+                    Long total = allCounters.get(counter.getKey());
+                    allCounters.put(counter.getKey(), (total != null ? total.longValue() : 0L) + counter.getValue().longValue());
+                }
+                
+                allTargets.addAll(profiler.getSlowestTargets());
             }
         }
         
-        Profiler.printSummary(id, new ArrayList<String>(allPhases), allSections);
+        List<TargetTiming> targets = new ArrayList<TargetTiming>(allTargets);
+        return new Summary(id, new ArrayList<String>(allPhases), allSections, allCounters,
+                targets.subList(0, Math.min(targets.size(), Profiler.SLOWEST_TARGETS)));
     }
     
-    private static void printSummary(String id, List<String> phases, Map<String, Section> sections) {
+    /**
+     * Data for a printed or dumped summary
+     */
+    private static final class Summary {
+        
+        final String id;
+        
+        final List<String> phases;
+        
+        final Map<String, Section> sections;
+        
+        final Map<String, Long> counters;
+        
+        final List<TargetTiming> targets;
+
+        Summary(String id, List<String> phases, Map<String, Section> sections, Map<String, Long> counters, List<TargetTiming> targets) {
+            this.id = id;
+            this.phases = phases;
+            this.sections = sections;
+            this.counters = counters;
+            this.targets = targets;
+        }
+        
+    }
+    
+    private static void printSummary(Summary summary) {
+        String id = summary.id;
+        List<String> phases = summary.phases;
+        Map<String, Section> sections = summary.sections;
+        Map<String, Long> counters = summary.counters;
+        
         
         DecimalFormat threedp = new DecimalFormat("(###0.000");
         DecimalFormat onedp = new DecimalFormat("(###0.0");
@@ -1102,6 +1649,26 @@ public final class Profiler {
         }
         printer.add();
         
+        if (!counters.isEmpty()) {
+            printer.hr().add("Counters").hr().add();
+            for (Entry<String, Long> counter : counters.entrySet()) {
+                printer.kv(counter.getKey(), "%12d", counter.getValue());
+            }
+            printer.add();
+        }
+        
+        if (!summary.targets.isEmpty()) {
+            DecimalFormat msFormat = new DecimalFormat("###0.000");
+            printer.hr().add("Slowest Targets").hr().add();
+            for (TargetTiming target : summary.targets) {
+                printer.kv(target.getClassName(), "%12s ms", msFormat.format((double)target.getNanos() / Profiler.NANOS_PER_MILLI));
+                for (String mixin : target.getMixins()) {
+                    printer.kv("", "%s", mixin);
+                }
+            }
+            printer.add();
+        }
+        
         try {
             Class<?> agent = MixinService.getService().getClassProvider().findAgentClass(Profiler.METRONOME_AGENT_CLASS, false);
             Method mdGetTimes = agent.getDeclaredMethod("getTimes");